@@ -0,0 +1,113 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+// The admin account search, first page and the last rankable page, over
+// DatasetSeeder accounts (names drawn from a short list, so name queries match
+// a large share of them). The like variant is the '%x%' scan it replaced.
+// Templates are built once under java.io.tmpdir like SeededDatabase's.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountSearchBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"10000", "1000000"})
+    public int accounts;
+
+    // A common surname, two name parts, a phone/NID fragment, a whole account
+    // number and a term too short for the index
+    @Param({"rahman", "amina rahman", "4567", "account", "ra"})
+    public String query;
+
+    private Path file;
+    private ConnectionPool pool;
+    private AccountService service;
+    private String searchFor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("bms-search-", ".db");
+        Files.copy(template(accounts), file, StandardCopyOption.REPLACE_EXISTING);
+        pool = new ConnectionPool("jdbc:sqlite:" + file);
+        service = new AccountService(pool, new Authenticator(pool, Sha256PasswordKdf.INSTANCE));
+        searchFor = query.equals("account") ? seeder(accounts).accountNumber(accounts / 2) : query;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public AccountService.AccountSearchPage firstPage() throws SQLException {
+        return service.search(searchFor, PAGE, 0);
+    }
+
+    @Benchmark
+    public AccountService.AccountSearchPage lastPage() throws SQLException {
+        return service.search(searchFor, PAGE, AccountService.SEARCH_CANDIDATES - PAGE);
+    }
+
+    @Benchmark
+    public int like() throws SQLException {
+        String pattern = "%" + searchFor + "%";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare("SELECT account_number FROM accounts WHERE account_number LIKE ? " +
+                    "OR name LIKE ? OR phone_number LIKE ? OR nid_number LIKE ? LIMIT " + PAGE);
+            for (int i = 1; i <= 4; i++) {
+                pstmt.setString(i, pattern);
+            }
+            int rows = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static DatasetSeeder seeder(int accounts) {
+        return new DatasetSeeder(accounts, 0, 0, 1, 42, DatasetSeeder.DEFAULT_PASSWORD);
+    }
+
+    private static synchronized Path template(int accounts) throws IOException, SQLException {
+        Path template = Paths.get(System.getProperty("java.io.tmpdir"),
+                "bms-search-v" + SchemaMigrator.latestVersion() + "-" + accounts + ".db");
+        if (Files.exists(template)) {
+            return template;
+        }
+        Path partial = template.resolveSibling(template.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + partial)) {
+            seeder(accounts).seed(conn);
+        }
+        Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+        return template;
+    }
+}
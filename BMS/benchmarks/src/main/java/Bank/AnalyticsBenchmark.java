@@ -0,0 +1,88 @@
+package Bank;
+
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The admin analytics charts: five years of money moved, downsampled to the
+// chart's width, and the balance distribution, each read on its own and read
+// then drawn into an off-screen image the size of the chart. rawFlows is the
+// same five years grouped from the ledger rows instead of the rollups.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnalyticsBenchmark {
+    private static final DateRange FIVE_YEARS = DateRange.between(LocalDate.of(2020, 1, 1), LocalDate.of(2024, 12, 31)); // Covers every seeded size's span
+    private static final int HEIGHT = 360;
+
+    @State(Scope.Benchmark)
+    public static class Charts {
+        @Param({"1000"})
+        public int width;
+
+        BankAnalytics analytics;
+
+        @Setup
+        public void setUp(SeededDatabase db) {
+            analytics = new BankAnalytics(db.pool);
+        }
+    }
+
+    @Benchmark
+    public BankAnalytics.Flows flows(Charts charts) throws SQLException {
+        return charts.analytics.flows(FIVE_YEARS, charts.width);
+    }
+
+    @Benchmark
+    public BufferedImage flowChart(Charts charts) throws SQLException {
+        JFreeChart chart = AnalyticsCharts.flowChart(charts.analytics.flows(FIVE_YEARS, charts.width));
+        return chart.createBufferedImage(charts.width, HEIGHT);
+    }
+
+    @Benchmark
+    public List<BankAnalytics.BalanceBin> balanceDistribution(Charts charts) throws SQLException {
+        return charts.analytics.balanceDistribution();
+    }
+
+    @Benchmark
+    public BufferedImage balanceChart(Charts charts) throws SQLException {
+        JFreeChart chart = AnalyticsCharts.balanceChart(charts.analytics.balanceDistribution());
+        return chart.createBufferedImage(charts.width, HEIGHT);
+    }
+
+    @Benchmark
+    public long rawFlows(SeededDatabase db) throws SQLException {
+        try (PooledConnection pc = db.pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare("SELECT substr(timestamp, 1, 10), type, SUM(amount_cents) FROM transactions " +
+                    "WHERE " + DateRange.CONDITION + " GROUP BY 1, 2");
+            pstmt.setString(1, FIVE_YEARS.getLowerBound());
+            pstmt.setString(2, FIVE_YEARS.getUpperBound());
+            long total = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    total += rs.getLong(3);
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// The queries behind updateDashboard and updateAdminDashboard. The cold variant
+// drops the account from the state cache first, so it always reads the database.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DashboardBenchmark {
+    @Benchmark
+    public BankManagementSystem.UserDashboard userDashboard(SeededDatabase db) throws SQLException {
+        return BankManagementSystem.loadUserDashboard(db.pool, db.ledger, db.randomAccount());
+    }
+
+    @Benchmark
+    public BankManagementSystem.UserDashboard userDashboardCold(SeededDatabase db) throws SQLException {
+        String accountNumber = db.randomAccount();
+        db.ledger.getAccountCache().invalidate(accountNumber);
+        return BankManagementSystem.loadUserDashboard(db.pool, db.ledger, accountNumber);
+    }
+
+    @Benchmark
+    public BankAggregates.Totals adminTotals(SeededDatabase db) throws SQLException {
+        return new BankAggregates(db.pool).read();
+    }
+}
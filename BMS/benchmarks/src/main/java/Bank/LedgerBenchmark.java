@@ -0,0 +1,37 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The single-account and two-account money paths, each a complete call through
+// LedgerService including its ledger row
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+    private static final long AMOUNT = 25 * Money.CENTS_PER_UNIT;
+
+    @Benchmark
+    public LedgerResult deposit(SeededDatabase db) {
+        return db.ledger.deposit(db.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public LedgerResult withdraw(SeededDatabase db) {
+        return db.ledger.withdraw(db.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public LedgerResult transfer(SeededDatabase db) {
+        return db.ledger.transfer(db.randomAccount(), db.randomAccount(), AMOUNT);
+    }
+}
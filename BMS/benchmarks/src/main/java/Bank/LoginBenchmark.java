@@ -0,0 +1,59 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+// Logins per second at each password cost: every seeded account is given a hash
+// made with the scheme under test, so no login triggers a rehash. hash is the
+// scheme on its own, without the query.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+    @State(Scope.Benchmark)
+    public static class Credentials {
+        @Param({"sha256", "pbkdf2:10000", "pbkdf2:100000", "pbkdf2:600000"})
+        public String kdf;
+
+        Authenticator authenticator;
+
+        @Setup(Level.Trial)
+        public void setUp(SeededDatabase db) throws SQLException {
+            authenticator = new Authenticator(db.pool, Authenticator.parseKdf(kdf));
+            try (PooledConnection conn = db.pool.borrow()) {
+                PreparedStatement pstmt = conn.prepare("UPDATE accounts SET password = ?");
+                pstmt.setString(1, authenticator.hash(SeededDatabase.PASSWORD));
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    @Benchmark
+    public String hash(Credentials credentials) {
+        return credentials.authenticator.hash(SeededDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public String login(SeededDatabase db, Credentials credentials) throws SQLException {
+        String failure = credentials.authenticator.login(db.randomAccount(), SeededDatabase.PASSWORD);
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        return failure;
+    }
+}
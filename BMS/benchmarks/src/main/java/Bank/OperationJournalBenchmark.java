@@ -0,0 +1,65 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Acknowledged appends to the operation journal under each sync policy, from
+// eight threads so group commits form. Compare with LedgerBenchmark.deposit
+// for the SQLite group-commit path. Written operations are only counted, so
+// segments are rolled and released as they fill.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class OperationJournalBenchmark {
+    private static final long AMOUNT = 25 * Money.CENTS_PER_UNIT;
+
+    @Param({"always", "interval:10", "bytes:1048576"})
+    public String sync;
+
+    private Path directory;
+    private OperationJournal journal;
+    private final AtomicLong written = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bms-bench-journal-");
+        journal = new OperationJournal(directory, 0, 16L << 20, JournalSyncPolicy.parse(sync), operations -> {
+            journal.release(written.addAndGet(operations.size()));
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        OperationJournal.clear(directory);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void append() throws SQLException {
+        OperationJournal.await(journal.append(OperationJournal.Kind.DEPOSIT, "ACC0000001", "", AMOUNT));
+    }
+}
@@ -0,0 +1,102 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Bank-wide and per-account counts and sums by type over a day, a month and
+// seven months with ragged ends, read from the rollups and, for comparison,
+// aggregated from the raw ledger rows with the same range seek. The cost of
+// keeping the rollups on every write shows in LedgerBenchmark.deposit.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollupBenchmark {
+    private static final LocalDate DAY = LocalDate.of(2023, 6, 14); // Inside every seeded size's span
+    private static final String RAW_SQL = "SELECT type, COUNT(*), SUM(amount_cents) FROM transactions " +
+            "WHERE " + DateRange.CONDITION + " GROUP BY type";
+    private static final String RAW_ACCOUNT_SQL = "SELECT type, COUNT(*), SUM(amount_cents) FROM transactions " +
+            "WHERE account_number = ? AND " + DateRange.CONDITION + " GROUP BY type";
+
+    @State(Scope.Benchmark)
+    public static class Range {
+        @Param({"day", "month", "months"})
+        public String span;
+
+        DateRange range;
+        TransactionRollups rollups;
+
+        @Setup
+        public void setUp(SeededDatabase db) {
+            switch (span) {
+                case "day":
+                    range = DateRange.day(DAY);
+                    break;
+                case "month":
+                    range = DateRange.month(DAY);
+                    break;
+                default:
+                    range = DateRange.between(LocalDate.of(2022, 11, 15), DAY);
+            }
+            rollups = new TransactionRollups(db.pool);
+        }
+    }
+
+    @Benchmark
+    public Map<String, TransactionRollups.Totals> bankRollup(Range range) throws SQLException {
+        return range.rollups.totals(null, range.range);
+    }
+
+    @Benchmark
+    public long bankRaw(SeededDatabase db, Range range) throws SQLException {
+        try (PooledConnection pc = db.pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(RAW_SQL);
+            pstmt.setString(1, range.range.getLowerBound());
+            pstmt.setString(2, range.range.getUpperBound());
+            return sum(pstmt);
+        }
+    }
+
+    @Benchmark
+    public Map<String, TransactionRollups.Totals> accountRollup(SeededDatabase db, Range range) throws SQLException {
+        return range.rollups.totals(db.randomAccount(), range.range);
+    }
+
+    @Benchmark
+    public long accountRaw(SeededDatabase db, Range range) throws SQLException {
+        try (PooledConnection pc = db.pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(RAW_ACCOUNT_SQL);
+            pstmt.setString(1, db.randomAccount());
+            pstmt.setString(2, range.range.getLowerBound());
+            pstmt.setString(3, range.range.getUpperBound());
+            return sum(pstmt);
+        }
+    }
+
+    private static long sum(PreparedStatement pstmt) throws SQLException {
+        long total = 0;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                total += rs.getLong(3);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,142 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A temporary SQLite file seeded with the given number of ledger rows, shared by
+// every benchmark. Seeding millions of rows takes minutes, so each size is built
+// once as a template under java.io.tmpdir (named after the schema version) and
+// every trial works on a fresh copy of it. For a quick run pass -p rows=10000.
+@State(Scope.Benchmark)
+public class SeededDatabase {
+    static final String PASSWORD = "benchmark";
+    static final long OPENING_BALANCE = 1000000 * Money.CENTS_PER_UNIT;
+    static final long LOAN = 5000 * Money.CENTS_PER_UNIT;
+
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER_IN", "TRANSFER_OUT", "LOAN", "INTEREST"};
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int COMMIT_EVERY = 100000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    Path file;
+    ConnectionPool pool;
+    LedgerService ledger;
+    InterestPostingEngine interestEngine;
+    int accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        accounts = accountsFor(rows);
+        file = Files.createTempFile("bms-bench-", ".db");
+        Files.copy(template(rows), file, StandardCopyOption.REPLACE_EXISTING);
+        pool = new ConnectionPool("jdbc:sqlite:" + file);
+        ledger = new LedgerService(pool);
+        interestEngine = new InterestPostingEngine(pool, ledger.getAccountCache());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ledger.close();
+        pool.close();
+        Files.deleteIfExists(file);
+    }
+
+    String randomAccount() {
+        return accountNumber(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    static int accountsFor(int rows) {
+        return Math.max(100, rows / 100);
+    }
+
+    static String accountNumber(int index) {
+        return String.format("BENCH%08d", index);
+    }
+
+    static synchronized Path template(int rows) throws IOException, SQLException {
+        Path template = Paths.get(System.getProperty("java.io.tmpdir"),
+                "bms-bench-v" + SchemaMigrator.latestVersion() + "-" + rows + ".db");
+        if (Files.exists(template)) {
+            return template;
+        }
+        Path partial = template.resolveSibling(template.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+        seed(partial, rows);
+        Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+        return template;
+    }
+
+    private static void seed(Path file, int rows) throws SQLException {
+        int accounts = accountsFor(rows);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            new SchemaMigrator().migrate(conn);
+            conn.setAutoCommit(false);
+
+            String hashed = new Pbkdf2PasswordKdf().hash(PASSWORD);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO accounts (account_number, name, password, balance_cents) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < accounts; i++) {
+                    pstmt.setString(1, accountNumber(i));
+                    pstmt.setString(2, "Benchmark Holder " + i);
+                    pstmt.setString(3, hashed);
+                    pstmt.setLong(4, OPENING_BALANCE);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            // Every tenth account carries an outstanding loan
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO loans (account_number, loan_amount_cents, remaining_cents) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < accounts; i += 10) {
+                    pstmt.setString(1, accountNumber(i));
+                    pstmt.setLong(2, LOAN);
+                    pstmt.setLong(3, LOAN);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            // Ledger rows spread over the accounts and a few years, oldest first
+            LocalDateTime start = LocalDateTime.of(2022, 1, 1, 0, 0);
+            long spanSeconds = 3L * 365 * 24 * 3600;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO transactions (account_number, type, amount_cents, timestamp) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    pstmt.setString(1, accountNumber(i % accounts));
+                    pstmt.setString(2, TYPES[i % TYPES.length]);
+                    pstmt.setLong(3, 100 + (i * 7919L) % 100000);
+                    pstmt.setString(4, start.plusSeconds(i * spanSeconds / rows).format(TIMESTAMP));
+                    pstmt.addBatch();
+                    if ((i + 1) % COMMIT_EVERY == 0) {
+                        pstmt.executeBatch();
+                        conn.commit();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+    }
+}
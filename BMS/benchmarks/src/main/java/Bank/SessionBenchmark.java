@@ -0,0 +1,57 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Session lookups and sign-in/sign-out churn from eight threads with
+// SessionManager.EXPECTED_SESSIONS sessions open
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SessionBenchmark {
+    private SessionManager sessions;
+    private String[] tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessions = new SessionManager();
+        tokens = new String[SessionManager.EXPECTED_SESSIONS];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = sessions.open(SeededDatabase.accountNumber(i), false).getToken();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessions.close();
+    }
+
+    @Benchmark
+    public Session get() {
+        return sessions.get(tokens[ThreadLocalRandom.current().nextInt(tokens.length)]);
+    }
+
+    @Benchmark
+    public void openAndClose() {
+        Session session = sessions.open(SeededDatabase.accountNumber(ThreadLocalRandom.current().nextInt(tokens.length)), false);
+        sessions.close(session.getToken());
+    }
+}
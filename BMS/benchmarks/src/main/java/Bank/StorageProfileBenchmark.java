@@ -0,0 +1,111 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Concurrent reader and writer throughput under each storage profile. In the
+// readWrite group four threads read recent activity straight from the database
+// while one deposits; under the rollback journal a committing writer locks the
+// readers out, under WAL it doesn't. The writers group is deposits alone, which
+// shows the cost of each profile's sync policy.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageProfileBenchmark {
+    private static final long AMOUNT = 25 * Money.CENTS_PER_UNIT;
+    private static final String ACTIVITY_SQL =
+            "SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC LIMIT 10";
+
+    @State(Scope.Benchmark)
+    public static class ProfiledDatabase {
+        @Param({"legacy", "balanced", "durable"})
+        public String profile;
+
+        @Param({"10000"})
+        public int rows;
+
+        Path file;
+        ConnectionPool pool;
+        LedgerService ledger;
+        int accounts;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            accounts = SeededDatabase.accountsFor(rows);
+            file = Files.createTempFile("bms-bench-profile-", ".db");
+            Files.copy(SeededDatabase.template(rows), file, StandardCopyOption.REPLACE_EXISTING);
+            pool = new ConnectionPool("jdbc:sqlite:" + file, StorageProfile.named(profile));
+            try (PooledConnection conn = pool.borrow()) {
+                System.out.println("Storage: " + pool.getProfile().report(conn.getConnection()));
+            }
+            ledger = new LedgerService(pool);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            ledger.close();
+            pool.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+        }
+
+        String randomAccount() {
+            return SeededDatabase.accountNumber(ThreadLocalRandom.current().nextInt(accounts));
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(4)
+    public int read(ProfiledDatabase db) throws SQLException {
+        try (PooledConnection conn = db.pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(ACTIVITY_SQL);
+            pstmt.setString(1, db.randomAccount());
+            int count = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public LedgerResult write(ProfiledDatabase db) {
+        return db.ledger.deposit(db.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    @Group("writers")
+    @GroupThreads(4)
+    public LedgerResult deposit(ProfiledDatabase db) {
+        return db.ledger.deposit(db.randomAccount(), AMOUNT);
+    }
+}
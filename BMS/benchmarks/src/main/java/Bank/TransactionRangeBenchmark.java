@@ -0,0 +1,81 @@
+package Bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Pages of the admin transaction search filtered to a day, week or month: the
+// first page, a page from the middle of the range (keyset, as when scrolling),
+// and the first page with a type filter on top. dateFunction is the single-day
+// date(timestamp) = date(?) filter the range replaced.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionRangeBenchmark {
+    private static final int PAGE = TransactionTableModel.DEFAULT_PAGE_SIZE;
+    private static final LocalDate DAY = LocalDate.of(2023, 6, 14); // Inside every seeded size's span
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @State(Scope.Benchmark)
+    public static class Range {
+        @Param({"day", "week", "month"})
+        public String span;
+
+        DateRange range;
+        TransactionTableModel.TransactionRow middle;
+
+        @Setup
+        public void setUp() {
+            switch (span) {
+                case "day":
+                    range = DateRange.day(DAY);
+                    break;
+                case "week":
+                    range = DateRange.week(DAY);
+                    break;
+                default:
+                    range = DateRange.month(DAY);
+            }
+            long days = range.getTo().toEpochDay() - range.getFrom().toEpochDay() + 1;
+            LocalDateTime midpoint = range.getFrom().atStartOfDay().plusSeconds(days * 24 * 3600 / 2);
+            middle = new TransactionTableModel.TransactionRow(Long.MAX_VALUE, null, null, 0, midpoint.format(TIMESTAMP));
+        }
+    }
+
+    @Benchmark
+    public List<TransactionTableModel.TransactionRow> firstPage(SeededDatabase db, Range range) throws SQLException {
+        return TransactionTableModel.fetchPage(db.pool, "", List.of(), range.range, null, PAGE);
+    }
+
+    @Benchmark
+    public List<TransactionTableModel.TransactionRow> middlePage(SeededDatabase db, Range range) throws SQLException {
+        return TransactionTableModel.fetchPage(db.pool, "", List.of(), range.range, range.middle, PAGE);
+    }
+
+    @Benchmark
+    public List<TransactionTableModel.TransactionRow> firstPageOfType(SeededDatabase db, Range range) throws SQLException {
+        return TransactionTableModel.fetchPage(db.pool, "(type LIKE ?)", List.of("%DEPOSIT%"), range.range, null, PAGE);
+    }
+
+    @Benchmark
+    public List<TransactionTableModel.TransactionRow> dateFunction(SeededDatabase db) throws SQLException {
+        return TransactionTableModel.fetchPage(db.pool, "(date(timestamp) = date(?))", List.of(DAY.toString()), null, null, PAGE);
+    }
+}
@@ -0,0 +1,100 @@
+package Bank;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped in-process locks keyed by account number. Multi-account operations
+// always take their stripes in ascending index order, so two transfers touching
+// the same accounts queue behind each other instead of deadlocking or
+// retrying against SQLite's busy handler. Time spent waiting for a stripe is
+// reported to ContentionMetrics against the accounts being locked.
+public class AccountLocks {
+    private static final int DEFAULT_STRIPES = 256;
+
+    private final ReentrantLock[] stripes;
+    private final ContentionMetrics metrics; // May be null
+
+    public AccountLocks() {
+        this(DEFAULT_STRIPES, null);
+    }
+
+    public AccountLocks(ContentionMetrics metrics) {
+        this(DEFAULT_STRIPES, metrics);
+    }
+
+    public AccountLocks(int stripeCount, ContentionMetrics metrics) {
+        this.metrics = metrics;
+        // Round up to a power of two so the stripe can be picked with a mask
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Held lock(String... accountNumbers) {
+        int[] indexes = new int[accountNumbers.length];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            indexes[i] = stripeFor(accountNumbers[i]);
+        }
+        Arrays.sort(indexes);
+
+        // Drop duplicates so an account (or a shared stripe) is only locked once
+        int count = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                indexes[count++] = indexes[i];
+            }
+        }
+
+        ReentrantLock[] held = new ReentrantLock[count];
+        long waitedNanos = 0;
+        for (int i = 0; i < count; i++) {
+            held[i] = stripes[indexes[i]];
+            if (!held[i].tryLock()) {
+                long start = System.nanoTime();
+                held[i].lock();
+                waitedNanos += System.nanoTime() - start;
+            }
+        }
+        if (waitedNanos > 0 && metrics != null) {
+            for (String accountNumber : accountNumbers) {
+                metrics.recordLockWait(accountNumber, waitedNanos);
+            }
+        }
+        return new Held(held);
+    }
+
+    // Every stripe, for work that must exclude all account operations
+    public Held lockAll() {
+        ReentrantLock[] held = new ReentrantLock[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            held[i] = stripes[i];
+            held[i].lock();
+        }
+        return new Held(held);
+    }
+
+    private int stripeFor(String accountNumber) {
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    // Releases the stripes in reverse acquisition order. Callers only close it, so
+    // methods holding one in a try-with-resources suppress javac's "try" lint.
+    public static final class Held implements AutoCloseable {
+        private final ReentrantLock[] locks;
+
+        private Held(ReentrantLock[] locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
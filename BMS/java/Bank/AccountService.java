@@ -0,0 +1,381 @@
+package Bank;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+// Opening customer accounts, finding them and paging through their history,
+// shared by the Swing screens and the HTTP API. History pages are keyset-paged
+// newest first on (timestamp, id), which the account/time index serves directly
+// however deep the page; the cursor is opaque to callers.
+//
+// Search matches substrings of the account number, name, phone and NID through
+// the accounts_search trigram index, and needs a term of at least three
+// characters to look up there. The index gives up its first SEARCH_CANDIDATES
+// hits unranked; the whole query is also looked up as an exact account number,
+// phone or NID through the primary key and their indexes, and only that merged
+// set is ranked: exact matches first, then prefixes, then the rest, shorter
+// names first. A search costs at most SEARCH_CANDIDATES index hits however
+// broad the query, so an exact identifier is found at once, but a broad query
+// ranks an arbitrary slice of its hits and should be narrowed to find the rest.
+public class AccountService {
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int SEARCH_CANDIDATES = 500;
+
+    public static final int MIN_SEARCH_TERM = 3; // Shorter terms can't use the trigram index
+
+    private static final String INSERT_ACCOUNT_SQL = "INSERT INTO accounts (account_number, name, password, date_of_birth, address, nationality, nid_number, phone_number, is_blocked) VALUES (?, ?, ?, ?, ?, ?, ?, ?, FALSE)";
+    private static final String FIRST_PAGE_SQL = "SELECT id, type, amount_cents, timestamp FROM transactions " +
+            "WHERE account_number = ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String NEXT_PAGE_SQL = "SELECT id, type, amount_cents, timestamp FROM transactions " +
+            "WHERE account_number = ? AND (timestamp, id) < (?, ?) ORDER BY timestamp DESC, id DESC LIMIT ?";
+
+    private static final String SEARCH_ORDER = "tier, length(name), name, account_number";
+    private static final String SEARCH_RANK = "CASE " +
+            "WHEN lower(account_number) = ?1 OR phone_number = ?1 OR nid_number = ?1 OR lower(name) = ?1 THEN 0 " +
+            "WHEN instr(lower(account_number), ?1) = 1 OR instr(phone_number, ?1) = 1 " +
+            "OR instr(nid_number, ?1) = 1 OR instr(lower(name), ?1) = 1 THEN 1 " +
+            "ELSE 2 END";
+
+    private final ConnectionPool pool;
+    private final Authenticator authenticator;
+
+    public AccountService(ConnectionPool pool, Authenticator authenticator) {
+        this.pool = pool;
+        this.authenticator = authenticator;
+    }
+
+    // Create the account and return its new number. Hashes the password, so keep
+    // it off the EDT.
+    public String open(String name, String password, String dateOfBirth, String address, String nationality,
+                       String nidNumber, String phoneNumber) throws SQLException {
+        for (String field : new String[]{name, password, dateOfBirth, address, nationality, nidNumber, phoneNumber}) {
+            if (field == null || field.isEmpty()) {
+                throw new IllegalArgumentException("All fields are required.");
+            }
+        }
+        String accountNumber = generateAccountNumber();
+        String hashedPassword = authenticator.hash(password);
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(INSERT_ACCOUNT_SQL);
+            pstmt.setString(1, accountNumber);
+            pstmt.setString(2, name);
+            pstmt.setString(3, hashedPassword);
+            pstmt.setString(4, dateOfBirth);
+            pstmt.setString(5, address);
+            pstmt.setString(6, nationality);
+            pstmt.setString(7, nidNumber);
+            pstmt.setString(8, phoneNumber);
+            pstmt.executeUpdate();
+        }
+        return accountNumber;
+    }
+
+    private static String generateAccountNumber() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 10); // Generates a 10-character unique ID
+    }
+
+    // Up to limit rows older than cursor (null for the newest)
+    public TransactionPage transactions(String accountNumber, String cursor, int limit) throws SQLException {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt;
+            if (cursor == null) {
+                pstmt = pc.prepare(FIRST_PAGE_SQL);
+                pstmt.setString(1, accountNumber);
+                pstmt.setInt(2, limit + 1);
+            } else {
+                String[] position = decodeCursor(cursor);
+                pstmt = pc.prepare(NEXT_PAGE_SQL);
+                pstmt.setString(1, accountNumber);
+                pstmt.setString(2, position[0]);
+                pstmt.setLong(3, Long.parseLong(position[1]));
+                pstmt.setInt(4, limit + 1);
+            }
+            List<TransactionRow> rows = new ArrayList<>(limit);
+            boolean more = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rows.size() == limit) {
+                        more = true; // The extra row only says another page exists
+                        break;
+                    }
+                    rows.add(new TransactionRow(rs.getLong("id"), rs.getString("type"),
+                            rs.getLong("amount_cents"), rs.getString("timestamp")));
+                }
+            }
+            String next = null;
+            if (more) {
+                TransactionRow last = rows.get(rows.size() - 1);
+                next = encodeCursor(last.getTimestamp(), last.getId());
+            }
+            return new TransactionPage(rows, next);
+        }
+    }
+
+    // Whether query has a term the index can look up; anything else is refused
+    // by search() rather than scanning accounts
+    public static boolean isSearchable(String query) {
+        if (query == null) {
+            return false;
+        }
+        for (String term : query.trim().split("\\s+")) {
+            if (term.codePointCount(0, term.length()) >= MIN_SEARCH_TERM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One page of accounts matching every whitespace-separated term of query,
+    // best first. Terms of MIN_SEARCH_TERM characters or more are looked up in
+    // the index and shorter ones only filter its hits.
+    public AccountSearchPage search(String query, int limit, int offset) throws SQLException {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Page offset must not be negative");
+        }
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Enter something to search for.");
+        }
+        if (!isSearchable(normalized)) {
+            throw new IllegalArgumentException("Enter at least " + MIN_SEARCH_TERM + " characters to search for.");
+        }
+
+        StringBuilder match = new StringBuilder();
+        List<String> shortTerms = new ArrayList<>();
+        for (String term : normalized.split("\\s+")) {
+            if (term.codePointCount(0, term.length()) >= MIN_SEARCH_TERM) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(term.replace("\"", "\"\"")).append('"'); // A phrase matches it as a substring
+            } else {
+                shortTerms.add(term);
+            }
+        }
+
+        // ?1 is the whole query for the exact lookups and ranking; numbered
+        // throughout because SQLite numbers a bare ? after the highest ?N it has
+        // already seen
+        List<Object> params = new ArrayList<>();
+        params.add(normalized);
+        params.add(match.toString());
+        StringBuilder hits = new StringBuilder("SELECT account_number, name, phone_number, nid_number " +
+                "FROM accounts_search WHERE accounts_search MATCH ?2");
+        for (String term : shortTerms) {
+            params.add("%" + escapeLike(term) + "%");
+            String placeholder = "?" + params.size();
+            hits.append(" AND (lower(account_number) LIKE ").append(placeholder).append(" ESCAPE '\\' OR lower(name) LIKE ")
+                    .append(placeholder).append(" ESCAPE '\\' OR phone_number LIKE ").append(placeholder).append(" ESCAPE '\\' OR nid_number LIKE ")
+                    .append(placeholder).append(" ESCAPE '\\')");
+        }
+        hits.append(" LIMIT ").append(SEARCH_CANDIDATES);
+        String candidates = "SELECT account_number, name, phone_number, nid_number FROM (" + hits + ") " +
+                "UNION SELECT account_number, name, phone_number, nid_number FROM accounts " +
+                "WHERE account_number = ?1 OR phone_number = ?1 OR nid_number = ?1";
+        params.add(limit + 1); // The extra row only says another page exists
+        params.add(offset);
+
+        // Rank the candidates and page through them, then read the page's rows
+        String sql = "SELECT a.account_number, a.name, a.date_of_birth, a.address, a.nationality, a.nid_number, " +
+                "a.phone_number, a.balance_cents, a.is_blocked " +
+                "FROM (SELECT account_number, name, " + SEARCH_RANK + " AS tier FROM (" + candidates + ") " +
+                "ORDER BY " + SEARCH_ORDER + " " +
+                "LIMIT ?" + (params.size() - 1) + " OFFSET ?" + params.size() + ") r " +
+                "JOIN accounts a ON a.account_number = r.account_number " +
+                "ORDER BY r.tier, length(r.name), r.name, r.account_number";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            List<AccountSummary> accounts = new ArrayList<>(limit);
+            boolean more = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (accounts.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    accounts.add(new AccountSummary(rs.getString("account_number"), rs.getString("name"),
+                            rs.getString("date_of_birth"), rs.getString("address"), rs.getString("nationality"),
+                            rs.getString("nid_number"), rs.getString("phone_number"),
+                            rs.getLong("balance_cents"), rs.getBoolean("is_blocked")));
+                }
+            }
+            return new AccountSearchPage(accounts, offset, more);
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String encodeCursor(String timestamp, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (position.length == 2) {
+                Long.parseLong(position[1]);
+                return position;
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below; NumberFormatException is one too
+        }
+        throw new IllegalArgumentException("Invalid page cursor");
+    }
+
+    public static final class TransactionPage {
+        private final List<TransactionRow> rows;
+        private final String nextCursor;
+
+        TransactionPage(List<TransactionRow> rows, String nextCursor) {
+            this.rows = rows;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<TransactionRow> getRows() {
+            return rows;
+        }
+
+        // Null on the last page
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    public static final class TransactionRow {
+        private final long id;
+        private final String type;
+        private final long amount; // Cents
+        private final String timestamp;
+
+        TransactionRow(long id, String type, long amount, String timestamp) {
+            this.id = id;
+            this.type = type;
+            this.amount = amount;
+            this.timestamp = timestamp;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    public static final class AccountSearchPage {
+        private final List<AccountSummary> accounts;
+        private final int offset;
+        private final boolean more;
+
+        AccountSearchPage(List<AccountSummary> accounts, int offset, boolean more) {
+            this.accounts = accounts;
+            this.offset = offset;
+            this.more = more;
+        }
+
+        public List<AccountSummary> getAccounts() {
+            return accounts;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public boolean hasNext() {
+            return more;
+        }
+
+        // The last page of a query that may have matched more than can be listed,
+        // so it should be narrowed to find the rest
+        public boolean isTruncated() {
+            return !more && offset + accounts.size() >= SEARCH_CANDIDATES;
+        }
+    }
+
+    public static final class AccountSummary {
+        private final String accountNumber;
+        private final String name;
+        private final String dateOfBirth;
+        private final String address;
+        private final String nationality;
+        private final String nidNumber;
+        private final String phoneNumber;
+        private final long balance; // Cents
+        private final boolean blocked;
+
+        AccountSummary(String accountNumber, String name, String dateOfBirth, String address, String nationality,
+                       String nidNumber, String phoneNumber, long balance, boolean blocked) {
+            this.accountNumber = accountNumber;
+            this.name = name;
+            this.dateOfBirth = dateOfBirth;
+            this.address = address;
+            this.nationality = nationality;
+            this.nidNumber = nidNumber;
+            this.phoneNumber = phoneNumber;
+            this.balance = balance;
+            this.blocked = blocked;
+        }
+
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDateOfBirth() {
+            return dateOfBirth;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public String getNationality() {
+            return nationality;
+        }
+
+        public String getNidNumber() {
+            return nidNumber;
+        }
+
+        public String getPhoneNumber() {
+            return phoneNumber;
+        }
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+    }
+}
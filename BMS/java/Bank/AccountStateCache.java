@@ -0,0 +1,151 @@
+package Bank;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// Bounded LRU cache of per-account state read by the dashboards, keyed by account
+// number. LedgerService writes every committed mutation through to it while it
+// holds the account's lock; anything else that changes an account behind the
+// ledger's back (admin actions, interest posting) invalidates it instead.
+//
+// A load races with an invalidation that lands while the row is being read, so
+// every invalidation bumps an epoch and a load that saw an older epoch is returned
+// to its caller but never stored.
+public class AccountStateCache {
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    public interface Loader {
+        AccountState load(String accountNumber) throws SQLException;
+    }
+
+    private final Map<String, AccountState> entries; // Guarded by this
+    private long epoch = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public AccountStateCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AccountStateCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        // Access-ordered so the least recently used account is evicted first
+        this.entries = new LinkedHashMap<String, AccountState>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AccountState> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // The cached state, or the loader's answer on a miss; null if there is no such account
+    public AccountState get(String accountNumber, Loader loader) throws SQLException {
+        long loadEpoch;
+        synchronized (this) {
+            AccountState state = entries.get(accountNumber);
+            if (state != null) {
+                hits++;
+                return state;
+            }
+            misses++;
+            loadEpoch = epoch;
+        }
+
+        AccountState loaded = loader.load(accountNumber);
+        synchronized (this) {
+            if (loaded != null && loadEpoch == epoch) {
+                entries.put(accountNumber, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    // Apply a committed change to the cached entry, if the account is cached
+    public synchronized void update(String accountNumber, UnaryOperator<AccountState> change) {
+        entries.computeIfPresent(accountNumber, (key, state) -> change.apply(state));
+    }
+
+    public synchronized void invalidate(String accountNumber) {
+        epoch++;
+        entries.remove(accountNumber);
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("accounts cached=%d, hits=%d, misses=%d, hit rate=%.1f%%, evictions=%d",
+                entries.size(), hits, misses, getHitRate() * 100, evictions);
+    }
+
+    public static final class AccountState {
+        private final String name;
+        private final long balance; // Cents
+        private final boolean blocked;
+        private final long outstandingLoans; // Cents
+
+        public AccountState(String name, long balance, boolean blocked, long outstandingLoans) {
+            this.name = name;
+            this.balance = balance;
+            this.blocked = blocked;
+            this.outstandingLoans = outstandingLoans;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+
+        public long getOutstandingLoans() {
+            return outstandingLoans;
+        }
+
+        public AccountState withBalanceChange(long delta) {
+            return new AccountState(name, balance + delta, blocked, outstandingLoans);
+        }
+
+        public AccountState withLoanChange(long delta) {
+            return new AccountState(name, balance, blocked, outstandingLoans + delta);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package Bank;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+// Builds the admin analytics charts from BankAnalytics series. The series are
+// already downsampled, so a chart holds at most one point per pixel per line.
+public final class AnalyticsCharts {
+    private AnalyticsCharts() {
+    }
+
+    public static JFreeChart flowChart(BankAnalytics.Flows flows) {
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        for (Map.Entry<String, long[]> entry : flows.getAmounts().entrySet()) {
+            XYSeries series = new XYSeries(entry.getKey(), false, true); // Points arrive in order
+            long[] amounts = entry.getValue();
+            for (int i = 0; i < amounts.length; i++) {
+                series.add(flows.getStart(i), amounts[i] / (double) Money.CENTS_PER_UNIT, false);
+            }
+            dataset.addSeries(series);
+        }
+        JFreeChart chart = ChartFactory.createTimeSeriesChart("Money Moved", "Date (UTC)",
+                "$ per " + flows.getPeriodName(), dataset);
+        ((DateAxis) ((XYPlot) chart.getPlot()).getDomainAxis()).setTimeZone(TimeZone.getTimeZone("UTC"));
+        return chart;
+    }
+
+    public static JFreeChart balanceChart(List<BankAnalytics.BalanceBin> bins) {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (BankAnalytics.BalanceBin bin : bins) {
+            dataset.addValue(bin.getAccounts(), "Accounts", bin.getLabel());
+        }
+        JFreeChart chart = ChartFactory.createBarChart("Balance Distribution", "Balance", "Accounts", dataset);
+        chart.removeLegend();
+        ((CategoryPlot) chart.getPlot()).getDomainAxis().setCategoryLabelPositions(CategoryLabelPositions.UP_45);
+        return chart;
+    }
+}
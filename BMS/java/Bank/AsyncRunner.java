@@ -0,0 +1,100 @@
+package Bank;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs database work on a background pool and delivers the outcome on the EDT.
+// run() is latest-wins: starting a new request cancels the one in flight and its
+// result is discarded even if it still arrives. submit() is for writes, which
+// must never be cancelled or dropped. All methods must be called on the EDT.
+public class AsyncRunner {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(ConnectionPool.DEFAULT_POOL_SIZE, r -> {
+        Thread thread = new Thread(r, "db-worker-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Work<T> {
+        T call() throws Exception;
+    }
+
+    private long generation = 0; // Only read and written on the EDT
+    private Future<?> running;
+    private Consumer<Boolean> loadingListener = loading -> { };
+
+    // Called on the EDT with true when a request starts and false when the latest one ends
+    public AsyncRunner onLoading(Consumer<Boolean> listener) {
+        this.loadingListener = listener;
+        return this;
+    }
+
+    public <T> void run(Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        cancel();
+        long requestGeneration = ++generation;
+        loadingListener.accept(true);
+        running = EXECUTOR.submit(() -> {
+            Outcome<T> outcome = Outcome.of(work);
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration != generation) {
+                    return; // Superseded or cancelled while running
+                }
+                running = null;
+                loadingListener.accept(false);
+                outcome.deliver(onSuccess, onFailure);
+            });
+        });
+    }
+
+    // Cancel the request in flight, if any; its result will never be delivered
+    public void cancel() {
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+            generation++;
+            loadingListener.accept(false);
+        }
+    }
+
+    public boolean isLoading() {
+        return running != null;
+    }
+
+    // Run work that must complete, such as a ledger write, and deliver its outcome on the EDT
+    public static <T> void submit(Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        EXECUTOR.execute(() -> {
+            Outcome<T> outcome = Outcome.of(work);
+            SwingUtilities.invokeLater(() -> outcome.deliver(onSuccess, onFailure));
+        });
+    }
+
+    private static final class Outcome<T> {
+        private final T result;
+        private final Exception error;
+
+        private Outcome(T result, Exception error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        static <T> Outcome<T> of(Work<T> work) {
+            try {
+                return new Outcome<>(work.call(), null);
+            } catch (Exception e) {
+                return new Outcome<>(null, e);
+            }
+        }
+
+        void deliver(Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+            if (error != null) {
+                onFailure.accept(error);
+            } else {
+                onSuccess.accept(result);
+            }
+        }
+    }
+}
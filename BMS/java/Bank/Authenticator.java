@@ -0,0 +1,169 @@
+package Bank;
+
+import java.sql.*;
+import java.util.List;
+
+// Checks and stores account and admin passwords. New passwords are hashed with
+// the configured PasswordKdf; hashes from any known scheme or cost are still
+// accepted, and one that isn't current is replaced on a successful login, so
+// raising the cost upgrades users as they sign in. Each check is one narrow
+// query, and the slow hashing happens after its connection is back in the pool.
+//
+// A failed check always costs at least one hash at the configured cost: an
+// unknown account is checked against a decoy, and so is a wrong password whose
+// stored hash is cheaper (legacy SHA-256 verifies in microseconds), so the time
+// taken doesn't tell whether the account exists.
+//
+// The scheme is -Dbank.auth.kdf: pbkdf2 (the default), pbkdf2:<iterations>, or
+// sha256 for the unsalted legacy hash.
+public class Authenticator {
+    public static final String KDF_PROPERTY = "bank.auth.kdf";
+    // The same for an unknown account and a wrong password, so neither can be told apart
+    public static final String INVALID_CREDENTIALS = "Invalid account number or password.";
+
+    private static final String ACCOUNT_SQL = "SELECT password, is_blocked FROM accounts WHERE account_number = ?";
+    private static final String ADMIN_SQL = "SELECT password FROM admins WHERE account_number = ?";
+    // Only if the password is still the one just checked
+    private static final String REHASH_ACCOUNT_SQL = "UPDATE accounts SET password = ?, version = version + 1 WHERE account_number = ? AND password = ?";
+    private static final String REHASH_ADMIN_SQL = "UPDATE admins SET password = ? WHERE account_number = ? AND password = ?";
+
+    private final ConnectionPool pool;
+    private final PasswordKdf kdf;
+    private final List<PasswordKdf> known; // The configured scheme first
+    private volatile String decoyHash; // Checked against so failures take as long as a current hash
+
+    public Authenticator(ConnectionPool pool) {
+        this(pool, new Pbkdf2PasswordKdf());
+    }
+
+    public Authenticator(ConnectionPool pool, PasswordKdf kdf) {
+        this.pool = pool;
+        this.kdf = kdf;
+        this.known = List.of(kdf, new Pbkdf2PasswordKdf(), Sha256PasswordKdf.INSTANCE);
+    }
+
+    public static Authenticator fromSystemProperties(ConnectionPool pool) {
+        return new Authenticator(pool, parseKdf(System.getProperty(KDF_PROPERTY, "pbkdf2")));
+    }
+
+    public static PasswordKdf parseKdf(String spec) {
+        String trimmed = spec.trim().toLowerCase();
+        if (trimmed.equals("sha256")) {
+            return Sha256PasswordKdf.INSTANCE;
+        }
+        if (trimmed.equals("pbkdf2")) {
+            return new Pbkdf2PasswordKdf();
+        }
+        if (trimmed.startsWith("pbkdf2:")) {
+            try {
+                return new Pbkdf2PasswordKdf(Integer.parseInt(trimmed.substring("pbkdf2:".length())));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        throw new IllegalArgumentException("Unknown password scheme '" + spec + "', expected pbkdf2, pbkdf2:<iterations> or sha256");
+    }
+
+    public PasswordKdf getKdf() {
+        return kdf;
+    }
+
+    // The stored form of a new password
+    public String hash(String password) {
+        return kdf.hash(password);
+    }
+
+    public boolean verify(String password, String stored) {
+        for (PasswordKdf candidate : known) {
+            if (candidate.recognizes(stored)) {
+                return candidate.verify(password, stored);
+            }
+        }
+        return false;
+    }
+
+    // Returns null when the credentials are valid, otherwise the reason login failed
+    public String login(String accountNumber, String password) throws SQLException {
+        String stored;
+        boolean blocked = false;
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(ACCOUNT_SQL);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    stored = null;
+                } else {
+                    stored = rs.getString("password");
+                    blocked = rs.getBoolean("is_blocked");
+                }
+            }
+        }
+        if (stored == null) {
+            verify(password, decoyHash());
+            return INVALID_CREDENTIALS;
+        }
+        if (!verify(password, stored)) {
+            padStaleFailure(password, stored);
+            return INVALID_CREDENTIALS;
+        }
+        // Only after the password, so it says nothing about accounts the caller can't open
+        if (blocked) {
+            return "Your account is blocked. Please contact the admin.";
+        }
+        rehashIfStale(REHASH_ACCOUNT_SQL, accountNumber, password, stored);
+        return null;
+    }
+
+    public boolean adminLogin(String accountNumber, String password) throws SQLException {
+        String stored;
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(ADMIN_SQL);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                stored = rs.next() ? rs.getString("password") : null;
+            }
+        }
+        if (stored == null) {
+            verify(password, decoyHash());
+            return false;
+        }
+        if (!verify(password, stored)) {
+            padStaleFailure(password, stored);
+            return false;
+        }
+        rehashIfStale(REHASH_ADMIN_SQL, accountNumber, password, stored);
+        return true;
+    }
+
+    private String decoyHash() {
+        String hash = decoyHash;
+        if (hash == null) {
+            hash = kdf.hash("decoy");
+            decoyHash = hash;
+        }
+        return hash;
+    }
+
+    // A wrong password against a cheaper hash would fail faster than an unknown account
+    private void padStaleFailure(String password, String stored) {
+        if (!kdf.isCurrent(stored)) {
+            verify(password, decoyHash());
+        }
+    }
+
+    private void rehashIfStale(String sql, String accountNumber, String password, String stored) {
+        if (kdf.isCurrent(stored)) {
+            return;
+        }
+        String rehashed = kdf.hash(password);
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setString(1, rehashed);
+            pstmt.setString(2, accountNumber);
+            pstmt.setString(3, stored);
+            pstmt.executeUpdate(); // No row if the password changed meanwhile; that one stays
+        } catch (SQLException e) {
+            // The login itself succeeded; the next one tries the upgrade again
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package Bank;
+
+import java.sql.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Bank-wide running totals kept in the single-row bank_totals table. Triggers on
+// accounts and loans (schema migration 3) adjust the row inside the same
+// transaction as every balance or loan change, whoever makes it, so reading the
+// totals is one primary-key lookup however many accounts there are. A periodic
+// reconciliation recomputes the real sums and repairs the row if they disagree.
+public class BankAggregates implements AutoCloseable {
+    public static final long DEFAULT_RECONCILE_INTERVAL_MINUTES = 15;
+
+    private static final String READ_SQL = "SELECT total_balance_cents, total_loans_cents, account_count FROM bank_totals WHERE id = 1";
+    private static final String MARK_RECONCILED_SQL = "UPDATE bank_totals SET reconciled_at = CURRENT_TIMESTAMP WHERE id = 1";
+    private static final String ACTUAL_SQL = "SELECT (SELECT COALESCE(SUM(balance_cents), 0) FROM accounts), " +
+            "(SELECT COALESCE(SUM(remaining_cents), 0) FROM loans), (SELECT COUNT(*) FROM accounts)";
+    private static final String REPAIR_SQL = "UPDATE bank_totals SET total_balance_cents = ?, total_loans_cents = ?, account_count = ? WHERE id = 1";
+
+    private final ConnectionPool pool;
+    private ScheduledExecutorService reconciler;
+
+    public BankAggregates(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public Totals read() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            return readTotals(conn);
+        }
+    }
+
+    // Compare the running totals with the real sums and overwrite them if they drifted
+    public Reconciliation reconcile() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.begin();
+            // Write first so the transaction holds the write lock from the start and
+            // no ledger change can commit between reading the totals and the sums
+            conn.prepare(MARK_RECONCILED_SQL).executeUpdate();
+
+            Totals recorded = readTotals(conn);
+            Totals actual;
+            try (ResultSet rs = conn.prepare(ACTUAL_SQL).executeQuery()) {
+                rs.next();
+                actual = new Totals(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+            }
+
+            Reconciliation result = new Reconciliation(recorded, actual);
+            if (!result.isConsistent()) {
+                PreparedStatement repair = conn.prepare(REPAIR_SQL);
+                repair.setLong(1, actual.getTotalBalance());
+                repair.setLong(2, actual.getTotalLoans());
+                repair.setLong(3, actual.getAccountCount());
+                repair.executeUpdate();
+            }
+            conn.commit();
+            return result;
+        }
+    }
+
+    // Run reconcile() on a background thread every interval until close()
+    public synchronized void startPeriodicReconciliation(long interval, TimeUnit unit) {
+        if (reconciler != null) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bank-aggregates-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                Reconciliation result = reconcile();
+                if (!result.isConsistent()) {
+                    System.err.println("Bank totals drifted and were repaired: " + result);
+                }
+            } catch (SQLException e) {
+                System.err.println("Bank totals reconciliation failed: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+
+    private static Totals readTotals(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare(READ_SQL).executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("bank_totals row is missing");
+            }
+            return new Totals(rs.getLong("total_balance_cents"), rs.getLong("total_loans_cents"), rs.getLong("account_count"));
+        }
+    }
+
+    public static final class Totals {
+        private final long totalBalance; // Cents
+        private final long totalLoans; // Cents
+        private final long accountCount;
+
+        Totals(long totalBalance, long totalLoans, long accountCount) {
+            this.totalBalance = totalBalance;
+            this.totalLoans = totalLoans;
+            this.accountCount = accountCount;
+        }
+
+        public long getTotalBalance() {
+            return totalBalance;
+        }
+
+        public long getTotalLoans() {
+            return totalLoans;
+        }
+
+        public long getAccountCount() {
+            return accountCount;
+        }
+
+        @Override
+        public String toString() {
+            return "balance=" + Money.format(totalBalance) + ", loans=" + Money.format(totalLoans) + ", accounts=" + accountCount;
+        }
+    }
+
+    public static final class Reconciliation {
+        private final Totals recorded;
+        private final Totals actual;
+
+        Reconciliation(Totals recorded, Totals actual) {
+            this.recorded = recorded;
+            this.actual = actual;
+        }
+
+        public Totals getRecorded() {
+            return recorded;
+        }
+
+        public Totals getActual() {
+            return actual;
+        }
+
+        public boolean isConsistent() {
+            return recorded.getTotalBalance() == actual.getTotalBalance()
+                    && recorded.getTotalLoans() == actual.getTotalLoans()
+                    && recorded.getAccountCount() == actual.getAccountCount();
+        }
+
+        @Override
+        public String toString() {
+            return "recorded [" + recorded + "], actual [" + actual + "]";
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package Bank;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Series for the admin analytics charts, read from pre-aggregated tables only:
+// money moved per period from the bank-wide transaction rollups, and accounts
+// per balance bin from balance_histogram (schema migration 9). Flows are
+// downsampled to the chart's width by adding whole buckets together, so five
+// years of daily rollups become a few hundred points without reading a single
+// ledger row.
+public class BankAnalytics {
+    // Series label and the ledger type it charts; transfers count once, outgoing
+    public static final Map<String, String> FLOW_TYPES = new LinkedHashMap<>();
+
+    static {
+        FLOW_TYPES.put("Deposits", "DEPOSIT");
+        FLOW_TYPES.put("Withdrawals", "WITHDRAWAL");
+        FLOW_TYPES.put("Transfers", "TRANSFER_OUT");
+        FLOW_TYPES.put("Loans", "LOAN");
+        FLOW_TYPES.put("Interest", "INTEREST");
+    }
+
+    // The finest rollup is used whose bucket count is at most this many times the
+    // points asked for; more would only be read to be added together
+    private static final int MAX_BUCKETS_PER_POINT = 4;
+
+    private static final String HISTOGRAM_SQL = "SELECT bin, accounts FROM balance_histogram WHERE accounts > 0 ORDER BY bin";
+
+    private final ConnectionPool pool;
+
+    public BankAnalytics(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Amount moved per type over the range in at most maxPoints points, each the
+    // sum of the same whole number of rollup buckets (the last may hold fewer)
+    public Flows flows(DateRange range, int maxPoints) throws SQLException {
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("At least one point is needed");
+        }
+        TransactionRollups.Granularity granularity = TransactionRollups.Granularity.MONTHLY;
+        for (TransactionRollups.Granularity finer : new TransactionRollups.Granularity[]{
+                TransactionRollups.Granularity.HOURLY, TransactionRollups.Granularity.DAILY}) {
+            if (bucketCount(finer, range) <= (long) maxPoints * MAX_BUCKETS_PER_POINT) {
+                granularity = finer;
+                break;
+            }
+        }
+        long buckets = bucketCount(granularity, range);
+        int bucketsPerPoint = (int) ((buckets + maxPoints - 1) / maxPoints);
+        int points = (int) ((buckets + bucketsPerPoint - 1) / bucketsPerPoint);
+
+        Map<String, Integer> seriesOfType = new LinkedHashMap<>();
+        for (String type : FLOW_TYPES.values()) {
+            seriesOfType.put(type, seriesOfType.size());
+        }
+        long[][] amounts = new long[FLOW_TYPES.size()][points];
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(TransactionRollups.seriesSql(granularity, false));
+            pstmt.setString(1, granularity.bucketOf(range.getLowerBound()));
+            pstmt.setString(2, range.getUpperBound());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Integer series = seriesOfType.get(rs.getString("type"));
+                    if (series == null) {
+                        continue;
+                    }
+                    long index = bucketIndex(granularity, range.getFrom(), rs.getString("bucket"));
+                    amounts[series][(int) (index / bucketsPerPoint)] += rs.getLong("amount_cents");
+                }
+            }
+        }
+
+        long[] starts = new long[points];
+        for (int i = 0; i < points; i++) {
+            starts[i] = bucketStart(granularity, range.getFrom(), (long) i * bucketsPerPoint);
+        }
+        Map<String, long[]> series = new LinkedHashMap<>();
+        int i = 0;
+        for (String label : FLOW_TYPES.keySet()) {
+            series.put(label, amounts[i++]);
+        }
+        return new Flows(granularity, bucketsPerPoint, starts, series);
+    }
+
+    // Accounts per 1-2-5 balance bin, lowest first; a handful of rows
+    public List<BalanceBin> balanceDistribution() throws SQLException {
+        try (PooledConnection pc = pool.borrow()) {
+            List<BalanceBin> bins = new ArrayList<>();
+            try (ResultSet rs = pc.prepare(HISTOGRAM_SQL).executeQuery()) {
+                while (rs.next()) {
+                    bins.add(BalanceBin.of(rs.getInt("bin"), rs.getLong("accounts")));
+                }
+            }
+            return bins;
+        }
+    }
+
+    // Buckets from the range's first to its last, partial months included
+    static long bucketCount(TransactionRollups.Granularity granularity, DateRange range) {
+        long days = range.getTo().toEpochDay() - range.getFrom().toEpochDay() + 1;
+        switch (granularity) {
+            case HOURLY:
+                return days * 24;
+            case DAILY:
+                return days;
+            default:
+                return monthIndex(range.getTo()) - monthIndex(range.getFrom()) + 1;
+        }
+    }
+
+    // Position of a bucket ("2024-03-05 14", "2024-03-05" or "2024-03") from the range's first
+    static long bucketIndex(TransactionRollups.Granularity granularity, LocalDate from, String bucket) {
+        switch (granularity) {
+            case HOURLY:
+                return (LocalDate.parse(bucket.substring(0, 10)).toEpochDay() - from.toEpochDay()) * 24
+                        + Integer.parseInt(bucket.substring(11, 13));
+            case DAILY:
+                return LocalDate.parse(bucket).toEpochDay() - from.toEpochDay();
+            default:
+                return Integer.parseInt(bucket.substring(0, 4)) * 12L + Integer.parseInt(bucket.substring(5, 7)) - 1 - monthIndex(from);
+        }
+    }
+
+    // Start of the index'th bucket as UTC epoch milliseconds
+    private static long bucketStart(TransactionRollups.Granularity granularity, LocalDate from, long index) {
+        switch (granularity) {
+            case HOURLY:
+                return from.atStartOfDay().plusHours(index).toInstant(ZoneOffset.UTC).toEpochMilli();
+            case DAILY:
+                return from.plusDays(index).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            default:
+                return from.withDayOfMonth(1).plusMonths(index).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+
+    private static long monthIndex(LocalDate day) {
+        return day.getYear() * 12L + day.getMonthValue() - 1;
+    }
+
+    public static final class Flows {
+        private final TransactionRollups.Granularity granularity;
+        private final int bucketsPerPoint;
+        private final long[] starts; // UTC epoch milliseconds
+        private final Map<String, long[]> amounts; // Cents per point, by series label
+
+        Flows(TransactionRollups.Granularity granularity, int bucketsPerPoint, long[] starts, Map<String, long[]> amounts) {
+            this.granularity = granularity;
+            this.bucketsPerPoint = bucketsPerPoint;
+            this.starts = starts;
+            this.amounts = Collections.unmodifiableMap(amounts);
+        }
+
+        public TransactionRollups.Granularity getGranularity() {
+            return granularity;
+        }
+
+        public int getBucketsPerPoint() {
+            return bucketsPerPoint;
+        }
+
+        public int getPointCount() {
+            return starts.length;
+        }
+
+        public long getStart(int point) {
+            return starts[point];
+        }
+
+        public Map<String, long[]> getAmounts() {
+            return amounts;
+        }
+
+        // "3 days", "hour", "month"
+        public String getPeriodName() {
+            String unit = granularity == TransactionRollups.Granularity.HOURLY ? "hour"
+                    : granularity == TransactionRollups.Granularity.DAILY ? "day" : "month";
+            return bucketsPerPoint == 1 ? unit : bucketsPerPoint + " " + unit + "s";
+        }
+    }
+
+    public static final class BalanceBin {
+        private final long lowerBound; // Cents, inclusive
+        private final long upperBound; // Cents, exclusive
+        private final long accounts;
+
+        BalanceBin(long lowerBound, long upperBound, long accounts) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.accounts = accounts;
+        }
+
+        // Bin 0 holds empty and overdrawn accounts; see SchemaMigrator.balanceBin
+        static BalanceBin of(int bin, long accounts) {
+            if (bin == 0) {
+                return new BalanceBin(Long.MIN_VALUE, 1, accounts);
+            }
+            long decade = 1;
+            for (int digits = bin / 10; digits > 1; digits--) {
+                decade *= 10;
+            }
+            int lead = bin % 10;
+            return new BalanceBin(lead * decade, (lead == 1 ? 2 : lead == 2 ? 5 : 10) * decade, accounts);
+        }
+
+        public long getLowerBound() {
+            return lowerBound;
+        }
+
+        public long getUpperBound() {
+            return upperBound;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        // "$100 to $200", or "$0 or less"
+        public String getLabel() {
+            if (lowerBound == Long.MIN_VALUE) {
+                return "$0 or less";
+            }
+            return dollars(lowerBound) + " to " + dollars(upperBound);
+        }
+
+        private static String dollars(long cents) {
+            return cents % Money.CENTS_PER_UNIT == 0 ? "$" + cents / Money.CENTS_PER_UNIT : "$" + Money.format(cents);
+        }
+    }
+}
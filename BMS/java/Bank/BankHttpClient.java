@@ -0,0 +1,122 @@
+package Bank;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Drives a BankHttpServer as a LoadReplayer target, so the replay measures the
+// whole HTTP path. Sessions are opened up front, one per account, and reused;
+// only accounts that signed in are replayed against.
+public class BankHttpClient implements LoadReplayer.Target {
+    private final HttpClient client;
+    private final URI base;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    public BankHttpClient(String baseUrl) {
+        this.base = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    // Sign the accounts in with concurrency parallel logins and return those that
+    // succeeded. Logins run the password KDF on the server, so this can take a while.
+    public List<String> login(List<String> accountNumbers, String password, int concurrency)
+            throws InterruptedException {
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor(concurrency, "http-login");
+        try {
+            List<Future<?>> logins = new ArrayList<>(accountNumbers.size());
+            for (String accountNumber : accountNumbers) {
+                logins.add(executor.submit(() -> {
+                    HttpResponse<String> response = send("POST", "sessions", null, Json.object()
+                            .put("accountNumber", accountNumber)
+                            .put("password", password)
+                            .toString());
+                    if (response.statusCode() == 200) {
+                        tokens.put(accountNumber, (String) Json.parseObject(response.body()).get("token"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> login : logins) {
+                try {
+                    login.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Login failed: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        List<String> signedIn = new ArrayList<>(tokens.size());
+        for (String accountNumber : accountNumbers) {
+            if (tokens.containsKey(accountNumber)) {
+                signedIn.add(accountNumber);
+            }
+        }
+        return signedIn;
+    }
+
+    @Override
+    public LedgerResult apply(LoadReplayer.Operation operation, String account, String otherAccount, long amount) {
+        String token = tokens.get(account);
+        if (token == null) {
+            return LedgerResult.failure("Account " + account + " is not signed in.");
+        }
+        Json.ObjectBuilder body = Json.object().put("amountCents", amount);
+        String path;
+        switch (operation) {
+            case DEPOSIT:
+                path = "account/deposits";
+                break;
+            case WITHDRAW:
+                path = "account/withdrawals";
+                break;
+            case TRANSFER:
+                path = "account/transfers";
+                body.put("targetAccountNumber", otherAccount);
+                break;
+            case LOAN:
+                path = "account/loans";
+                break;
+            default:
+                path = "account/loan-repayments";
+        }
+        try {
+            HttpResponse<String> response = send("POST", path, token, body.toString());
+            Map<String, Object> json = Json.parseObject(response.body());
+            if (response.statusCode() == 200) {
+                return LedgerResult.ok((String) json.get("message"));
+            }
+            return LedgerResult.failure(response.statusCode() + ": " + json.get("error"));
+        } catch (IOException | IllegalArgumentException e) {
+            return LedgerResult.failure("HTTP error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return LedgerResult.failure("Interrupted");
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String token, String json)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,365 @@
+package Bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+// JSON over HTTP for front-ends that aren't the Swing window, on the same
+// services. Each request runs on its own virtual thread where the JVM has them.
+// Amounts are whole cents. Signed-in requests carry "Authorization: Bearer
+// <token>" from POST /sessions.
+//
+//     POST   /accounts                  {name, password, dateOfBirth, address, nationality, nidNumber, phoneNumber}
+//     POST   /sessions                  {accountNumber, password} -> {token}
+//     DELETE /sessions
+//     GET    /account                   balance, loans and holder
+//     POST   /account/deposits          {amountCents}
+//     POST   /account/withdrawals       {amountCents}
+//     POST   /account/transfers         {targetAccountNumber, amountCents}
+//     POST   /account/loans             {amountCents}
+//     POST   /account/loan-repayments   {amountCents}
+//     GET    /account/transactions?limit=50&cursor=...   newest first; pass back "next" for the following page
+//
+// Errors are {"error": message}: 400 for bad input, 401 without a live session
+// or for wrong credentials, 404 and 405 for unknown routes, 422 when the ledger
+// refuses an operation, 429 with Retry-After once a client has failed to sign in
+// or been refused by the ledger too often, and 500 when the database fails.
+// Refusals are throttled because they say whether a target account exists. Database errors are logged here
+// and never sent to the client.
+public class BankHttpServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int MAX_BODY_BYTES = 1 << 16;
+    private static final int PLATFORM_THREADS = 64; // Without virtual threads
+
+    static {
+        // The JDK server leaves Nagle on, which with delayed ACKs stalls every
+        // request after the first on a kept-alive connection by ~40 ms. Must be
+        // set before the server reads its configuration.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LedgerService ledger;
+    private final Authenticator authenticator;
+    private final SessionManager sessions;
+    private final AccountService accounts;
+    private final LoginThrottle loginThrottle = new LoginThrottle();
+    private final LoginThrottle refusalThrottle = new LoginThrottle(); // Ledger refusals, counted apart from logins
+
+    public BankHttpServer(InetSocketAddress address, LedgerService ledger, Authenticator authenticator,
+                          SessionManager sessions, AccountService accounts) throws IOException {
+        this.ledger = ledger;
+        this.authenticator = authenticator;
+        this.sessions = sessions;
+        this.accounts = accounts;
+        this.server = HttpServer.create(address, 0);
+        this.executor = VirtualThreads.newPerTaskExecutor(PLATFORM_THREADS, "http-worker");
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::dispatch);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Headless mode: open the database the way the Swing window does and serve
+    // until the JVM is stopped
+    static void serve(String dbUrl, int port) throws SQLException, IOException {
+        ConnectionPool pool = new ConnectionPool(dbUrl, StorageProfile.fromSystemProperties());
+        try (PooledConnection pc = pool.borrow()) {
+            new SchemaMigrator().migrate(pc.getConnection());
+            System.out.println("Storage: " + pool.getProfile().report(pc.getConnection()));
+        }
+        MemoryLedger memoryLedger = MemoryLedger.fromSystemProperties(pool);
+        LedgerService ledger = new LedgerService(pool, new TransactionJournal(pool), new AccountStateCache(), RetryPolicy.DEFAULT, memoryLedger);
+        Authenticator authenticator = Authenticator.fromSystemProperties(pool);
+        SessionManager sessions = new SessionManager();
+        TransactionRollups rollups = new TransactionRollups(pool);
+        rollups.startBackfill(TransactionRollups.DEFAULT_BACKFILL_CHUNK, TransactionRollups.DEFAULT_BACKFILL_PAUSE_MILLIS);
+        BankHttpServer server = new BankHttpServer(new InetSocketAddress(port), ledger, authenticator, sessions,
+                new AccountService(pool, authenticator));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            sessions.close();
+            rollups.close();
+            ledger.close();
+            pool.close();
+        }));
+        server.start();
+        System.out.println("Serving the bank API on port " + server.getPort());
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            switch (path) {
+                case "/accounts":
+                    requireMethod(method, "POST");
+                    Map<String, Object> account = readBody(exchange);
+                    String accountNumber = accounts.open(text(account, "name"), text(account, "password"),
+                            text(account, "dateOfBirth"), text(account, "address"), text(account, "nationality"),
+                            text(account, "nidNumber"), text(account, "phoneNumber"));
+                    respond(exchange, 201, Json.object().put("accountNumber", accountNumber).toString());
+                    break;
+                case "/sessions":
+                    if (method.equals("DELETE")) {
+                        sessions.close(session(exchange).getToken());
+                        respond(exchange, 204, null);
+                        break;
+                    }
+                    requireMethod(method, "POST");
+                    login(exchange);
+                    break;
+                case "/account":
+                    requireMethod(method, "GET");
+                    balance(exchange);
+                    break;
+                case "/account/transactions":
+                    requireMethod(method, "GET");
+                    transactions(exchange);
+                    break;
+                case "/account/deposits":
+                    requireMethod(method, "POST");
+                    ledgerOperation(exchange, (session, body) -> ledger.deposit(session, cents(body)));
+                    break;
+                case "/account/withdrawals":
+                    requireMethod(method, "POST");
+                    ledgerOperation(exchange, (session, body) -> ledger.withdraw(session, cents(body)));
+                    break;
+                case "/account/transfers":
+                    requireMethod(method, "POST");
+                    ledgerOperation(exchange, (session, body) ->
+                            ledger.transfer(session, text(body, "targetAccountNumber"), cents(body)));
+                    break;
+                case "/account/loans":
+                    requireMethod(method, "POST");
+                    ledgerOperation(exchange, (session, body) -> ledger.applyForLoan(session, cents(body)));
+                    break;
+                case "/account/loan-repayments":
+                    requireMethod(method, "POST");
+                    ledgerOperation(exchange, (session, body) -> ledger.repayLoan(session, cents(body)));
+                    break;
+                default:
+                    throw new ApiException(404, "No such endpoint");
+            }
+        } catch (ApiException e) {
+            respondError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 400, e.getMessage());
+        } catch (SQLException e) {
+            logDatabaseError(exchange, e);
+            respondError(exchange, 500, "Database error");
+        } catch (RuntimeException e) {
+            respondError(exchange, 500, "Internal error");
+            e.printStackTrace();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException, SQLException, ApiException {
+        Map<String, Object> body = readBody(exchange);
+        String accountNumber = text(body, "accountNumber");
+        String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        long retryAfter = loginThrottle.retryAfterSeconds(client);
+        if (retryAfter > 0) {
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter));
+            throw new ApiException(429, "Too many failed logins. Try again later.");
+        }
+        String failure = authenticator.login(accountNumber, text(body, "password"));
+        if (failure != null) {
+            loginThrottle.recordFailure(client);
+            throw new ApiException(401, failure);
+        }
+        Session session = sessions.open(accountNumber, false);
+        respond(exchange, 200, Json.object().put("token", session.getToken()).toString());
+    }
+
+    private void balance(HttpExchange exchange) throws IOException, SQLException, ApiException {
+        Session session = session(exchange);
+        AccountStateCache.AccountState state = ledger.getAccountState(session.getAccountNumber());
+        if (state == null) {
+            throw new ApiException(404, "Account not found.");
+        }
+        respond(exchange, 200, Json.object()
+                .put("accountNumber", session.getAccountNumber())
+                .put("name", state.getName())
+                .put("balanceCents", state.getBalance())
+                .put("loansCents", state.getOutstandingLoans())
+                .put("blocked", state.isBlocked())
+                .toString());
+    }
+
+    private void transactions(HttpExchange exchange) throws IOException, SQLException, ApiException {
+        Session session = session(exchange);
+        Map<String, String> query = query(exchange);
+        int limit = DEFAULT_PAGE_SIZE;
+        if (query.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(query.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+        }
+        AccountService.TransactionPage page = accounts.transactions(session.getAccountNumber(), query.get("cursor"), limit);
+        List<String> rows = new ArrayList<>(page.getRows().size());
+        for (AccountService.TransactionRow row : page.getRows()) {
+            rows.add(Json.object()
+                    .put("id", row.getId())
+                    .put("type", row.getType())
+                    .put("amountCents", row.getAmount())
+                    .put("timestamp", row.getTimestamp())
+                    .toString());
+        }
+        respond(exchange, 200, Json.object()
+                .putEncoded("transactions", Json.array(rows))
+                .put("next", page.getNextCursor())
+                .toString());
+    }
+
+    private interface LedgerCall {
+        LedgerResult apply(Session session, Map<String, Object> body);
+    }
+
+    private void ledgerOperation(HttpExchange exchange, LedgerCall call) throws IOException, ApiException {
+        Session session = session(exchange);
+        String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        long retryAfter = refusalThrottle.retryAfterSeconds(client);
+        if (retryAfter > 0) {
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter));
+            throw new ApiException(429, "Too many refused operations. Try again later.");
+        }
+        LedgerResult result = call.apply(session, readBody(exchange));
+        if (result.getCause() != null) {
+            logDatabaseError(exchange, result.getCause());
+            throw new ApiException(500, "Database error");
+        }
+        if (!result.isSuccess()) {
+            refusalThrottle.recordFailure(client);
+            throw new ApiException(422, result.getMessage());
+        }
+        respond(exchange, 200, Json.object().put("message", result.getMessage()).toString());
+    }
+
+    private Session session(HttpExchange exchange) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new ApiException(401, "Log in first: send Authorization: Bearer <token>");
+        }
+        Session session = sessions.get(header.substring("Bearer ".length()).trim());
+        if (session == null || session.isAdmin()) {
+            throw new ApiException(401, "Your session has expired. Please log in again.");
+        }
+        return session;
+    }
+
+    private static void requireMethod(String method, String expected) throws ApiException {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "Use " + expected);
+        }
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body is too large");
+            }
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String text(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static long cents(Map<String, Object> body) {
+        Object value = body.get("amountCents");
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException("amountCents must be a whole number of cents");
+        }
+        return (Long) value;
+    }
+
+    private static void logDatabaseError(HttpExchange exchange, SQLException e) {
+        System.err.println("Database error on " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+        e.printStackTrace();
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, Json.object().put("error", message).toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Stop accepting requests, give those in flight a second, then stop the workers
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -3,15 +3,26 @@ package Bank;
 import javax.swing.*;
 import java.awt.*;
 import java.sql.*;
-import java.util.UUID;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 public class BankManagementSystem extends JFrame {
     private static final String DB_URL = "jdbc:sqlite:bank.db";
-    private Connection conn;
-    private String loggedInAccountNumber; // Track the logged-in user
-    private boolean isAdmin = false; // Track if the user is an admin
+    private static final int ACCOUNT_SEARCH_PAGE_SIZE = 50;
+    private static final int ACCOUNT_SEARCH_DELAY_MILLIS = 250; // Typing pause before searching
+    private static final String ALL_DATES = "All dates";
+    private static final String CUSTOM_RANGE = "Custom range";
+    private static final int ANALYTICS_MIN_POINTS = 100; // Before the chart has been laid out
+    private ConnectionPool pool; // Shared pooled connections with cached statements
+    private LedgerService ledgerService; // Headless money operations
+    private InterestPostingEngine interestEngine; // Chunked, resumable interest posting
+    private BankAggregates bankAggregates; // Trigger-maintained bank-wide totals
+    private TransactionRollups transactionRollups; // Trigger-maintained transaction counts and sums by period
+    private BankAnalytics bankAnalytics; // Chart series from the rollups and balance histogram
+    private CsvExporter csvExporter; // Streams whole tables to CSV files
+    private Authenticator authenticator; // Password checks, hashing and rehash-on-login
+    private AccountService accountService; // Registration and account search, shared with the HTTP API
+    private SessionManager sessions; // Logged-in users by token
+    private Session session; // This window's user or admin; null when logged out
+    private String startupStatus = "Opening database..."; // Shown on the login screen until the services exist
 
     // GUI Components
     private JTextField accountNumberField, nameField, amountField;
@@ -22,7 +33,9 @@ public class BankManagementSystem extends JFrame {
     // Dashboard Components
     private JPanel dashboardPanel;
     private JLabel balanceLabel, loanLabel, activityLabel;
+    private JLabel totalMoneyValueLabel, totalLoanValueLabel;
     private JTextArea activityArea;
+    private AsyncRunner dashboardLoader = new AsyncRunner(); // Latest-wins dashboard refreshes
 
     public BankManagementSystem() {
         // Set up the main window
@@ -31,44 +44,89 @@ public class BankManagementSystem extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        // Initialize database connection
-        try {
-            conn = DriverManager.getConnection(DB_URL);
-            createTables();
-            setupAdminAccount(); // Set up the admin account
-        } catch (SQLException e) {
-            showMessage("Database error: " + e.getMessage());
-        }
-
-        // Show login screen first
+        // Show login screen first; it stays disabled while the database opens, which
+        // can take a while when a migration rebuilds tables or the memory ledger loads
         showLoginScreen();
+        AsyncRunner.submit(BankManagementSystem::openServices, services -> {
+            pool = services.pool;
+            ledgerService = services.ledgerService;
+            interestEngine = services.interestEngine;
+            authenticator = services.authenticator;
+            sessions = services.sessions;
+            accountService = services.accountService;
+            bankAggregates = services.bankAggregates;
+            transactionRollups = services.transactionRollups;
+            bankAnalytics = services.bankAnalytics;
+            csvExporter = services.csvExporter;
+            startupStatus = null;
+            String typedAccountNumber = accountNumberField.getText();
+            showLoginScreen();
+            accountNumberField.setText(typedAccountNumber);
+        }, ex -> {
+            startupStatus = "Database error: " + ex.getMessage();
+            passwordErrorLabel.setText(startupStatus);
+        });
+    }
+
+    // Runs off the EDT: open, upgrade and load the database and build the services on it
+    private static Services openServices() throws SQLException, java.io.IOException {
+        Services services = new Services();
+        ConnectionPool pool = new ConnectionPool(DB_URL, StorageProfile.fromSystemProperties());
+        services.pool = pool;
+        try (PooledConnection pc = pool.borrow()) {
+            new SchemaMigrator().migrate(pc.getConnection()); // Create or upgrade the schema
+            System.out.println("Storage: " + pool.getProfile().report(pc.getConnection())); // Effective pragmas
+        }
+        MemoryLedger memoryLedger = MemoryLedger.fromSystemProperties(pool); // Null unless enabled
+        services.ledgerService = new LedgerService(pool, new TransactionJournal(pool), new AccountStateCache(), RetryPolicy.DEFAULT, memoryLedger);
+        Runtime.getRuntime().addShutdownHook(new Thread(services.ledgerService::close)); // Flush pending ledger rows on exit
+        services.interestEngine = new InterestPostingEngine(pool, services.ledgerService);
+        services.authenticator = Authenticator.fromSystemProperties(pool);
+        services.sessions = new SessionManager();
+        services.accountService = new AccountService(pool, services.authenticator);
+        services.bankAggregates = new BankAggregates(pool);
+        services.bankAggregates.startPeriodicReconciliation(BankAggregates.DEFAULT_RECONCILE_INTERVAL_MINUTES, java.util.concurrent.TimeUnit.MINUTES);
+        services.transactionRollups = new TransactionRollups(pool);
+        services.transactionRollups.startBackfill(TransactionRollups.DEFAULT_BACKFILL_CHUNK, TransactionRollups.DEFAULT_BACKFILL_PAUSE_MILLIS); // Sums pre-rollup history, if any
+        services.bankAnalytics = new BankAnalytics(pool);
+        services.csvExporter = new CsvExporter(pool);
+        setupAdminAccount(pool, services.authenticator); // Set up the admin account
+        return services;
     }
 
-    private void setupAdminAccount() {
+    private static void setupAdminAccount(ConnectionPool pool, Authenticator authenticator) throws SQLException {
         String adminAccountNumber = "admin123";
         String adminPassword = "Groza345";
-        String hashedPassword = hashPassword(adminPassword);
 
         // Check if the admin account already exists
-        String checkAdminSql = "SELECT * FROM admins WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(checkAdminSql)) {
+        String checkAdminSql = "SELECT 1 FROM admins WHERE account_number = ?";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(checkAdminSql);
             pstmt.setString(1, adminAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (!rs.next()) {
+            boolean exists;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                exists = rs.next();
+            }
+            if (!exists) {
                 // Admin account does not exist, so create it
                 String insertAdminSql = "INSERT INTO admins (account_number, password) VALUES (?, ?)";
-                try (PreparedStatement insertStmt = conn.prepareStatement(insertAdminSql)) {
-                    insertStmt.setString(1, adminAccountNumber);
-                    insertStmt.setString(2, hashedPassword);
-                    insertStmt.executeUpdate();
-                    System.out.println("Admin account created successfully!");
-                }
+                PreparedStatement insertStmt = pc.prepare(insertAdminSql);
+                insertStmt.setString(1, adminAccountNumber);
+                insertStmt.setString(2, authenticator.hash(adminPassword));
+                insertStmt.executeUpdate();
+                System.out.println("Admin account created successfully!");
             }
-        } catch (SQLException e) {
-            showMessage("Error setting up admin account: " + e.getMessage());
         }
     }
 
+    private void logout() {
+        if (session != null) {
+            sessions.close(session.getToken());
+            session = null;
+        }
+        showLoginScreen();
+    }
+
     private void showLoginScreen() {
         // Clear the window
         getContentPane().removeAll();
@@ -156,17 +214,27 @@ public class BankManagementSystem extends JFrame {
         // Add login panel to the window
         add(loginPanel, BorderLayout.CENTER);
 
+        // Nothing to log in to until startup has finished
+        if (startupStatus != null) {
+            loginButton.setEnabled(false);
+            registerButton.setEnabled(false);
+            adminLoginButton.setEnabled(false);
+            passwordErrorLabel.setText(startupStatus);
+        }
+
         // Login button action
         loginButton.addActionListener(e -> {
             String accountNumber = accountNumberField.getText();
             String password = new String(passwordField.getPassword());
 
-            if (login(accountNumber, password)) {
-                loggedInAccountNumber = accountNumber;
-                showMainScreen();
-            } else {
-                passwordErrorLabel.setText("Invalid account number or password.");
-            }
+            AsyncRunner.submit(() -> authenticator.login(accountNumber, password), error -> {
+                if (error == null) {
+                    session = sessions.open(accountNumber, false);
+                    showMainScreen();
+                } else {
+                    passwordErrorLabel.setText(error);
+                }
+            }, ex -> passwordErrorLabel.setText("Error logging in: " + ex.getMessage()));
         });
 
         // Register button action
@@ -177,12 +245,14 @@ public class BankManagementSystem extends JFrame {
             String accountNumber = accountNumberField.getText();
             String password = new String(passwordField.getPassword());
 
-            if (adminLogin(accountNumber, password)) {
-                isAdmin = true;
-                showAdminPanel();
-            } else {
-                passwordErrorLabel.setText("Invalid admin credentials.");
-            }
+            AsyncRunner.submit(() -> authenticator.adminLogin(accountNumber, password), valid -> {
+                if (valid) {
+                    session = sessions.open(accountNumber, true);
+                    showAdminPanel();
+                } else {
+                    passwordErrorLabel.setText("Invalid admin credentials.");
+                }
+            }, ex -> passwordErrorLabel.setText("Error logging in as admin: " + ex.getMessage()));
         });
 
         // Refresh the window
@@ -190,61 +260,6 @@ public class BankManagementSystem extends JFrame {
         repaint();
     }
 
-    private boolean login(String accountNumber, String password) {
-        String hashedPassword = hashPassword(password);
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                // Check if the account is blocked
-                boolean isBlocked = rs.getBoolean("is_blocked");
-                if (isBlocked) {
-                    passwordErrorLabel.setText("Your account is blocked. Please contact the admin.");
-                    return false;
-                }
-
-                // Check password
-                if (rs.getString("password").equals(hashedPassword)) {
-                    // Double-check account status before allowing login
-                    String checkStatusSql = "SELECT is_blocked FROM accounts WHERE account_number = ?";
-                    try (PreparedStatement checkStmt = conn.prepareStatement(checkStatusSql)) {
-                        checkStmt.setString(1, accountNumber);
-                        ResultSet statusRs = checkStmt.executeQuery();
-                        if (statusRs.next() && statusRs.getBoolean("is_blocked")) {
-                            passwordErrorLabel.setText("Your account is blocked. Please contact the admin.");
-                            return false;
-                        }
-                    }
-                    return true;
-                } else {
-                    passwordErrorLabel.setText("Invalid password.");
-                    return false;
-                }
-            } else {
-                passwordErrorLabel.setText("Account not found.");
-                return false;
-            }
-        } catch (SQLException e) {
-            showMessage("Error logging in: " + e.getMessage());
-            return false;
-        }
-    }
-
-    private boolean adminLogin(String accountNumber, String password) {
-        String hashedPassword = hashPassword(password);
-        String sql = "SELECT * FROM admins WHERE account_number = ? AND password = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            pstmt.setString(2, hashedPassword);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
-        } catch (SQLException e) {
-            showMessage("Error logging in as admin: " + e.getMessage());
-            return false;
-        }
-    }
-
     private void showRegistrationScreen() {
         // Clear the window
         getContentPane().removeAll();
@@ -418,27 +433,20 @@ public class BankManagementSystem extends JFrame {
                 return;
             }
 
-            // Generate account number
-            String accountNumber = generateAccountNumber();
-            System.out.println("Generated Account Number: " + accountNumber);
-
-            // Create the account
-            boolean isCreated = createAccount(accountNumber, name, password, dob, address, nationality, nidNumber, phoneNumber);
-            System.out.println("Account creation status: " + isCreated);
+            // Create the account under a newly generated number
+            AsyncRunner.submit(() -> accountService.open(name, password, dob, address, nationality, nidNumber, phoneNumber), created -> {
+                System.out.println("Account creation status: true");
 
-            if (isCreated) {
                 // Display account number and password to the user
                 String message = "Account created successfully!\n" +
-                        "Account Number: " + accountNumber + "\n" +
+                        "Account Number: " + created + "\n" +
                         "Password: " + password + "\n\n" +
                         "Please note these credentials.";
                 JOptionPane.showMessageDialog(this, message, "Registration Successful", JOptionPane.INFORMATION_MESSAGE);
 
                 // Go back to the login screen
                 showLoginScreen();
-            } else {
-                showMessage("Error creating account.");
-            }
+            }, ex -> showMessage("Error creating account: " + ex.getMessage()));
         });
 
         // Back button action
@@ -449,27 +457,6 @@ public class BankManagementSystem extends JFrame {
         repaint();
     }
 
-    private boolean createAccount(String accountNumber, String name, String password, String dob, String address, String nationality, String nidNumber, String phoneNumber) {
-        String hashedPassword = hashPassword(password);
-
-        String sql = "INSERT INTO accounts (account_number, name, password, date_of_birth, address, nationality, nid_number, phone_number, is_blocked) VALUES (?, ?, ?, ?, ?, ?, ?, ?, FALSE)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            pstmt.setString(2, name);
-            pstmt.setString(3, hashedPassword);
-            pstmt.setString(4, dob);
-            pstmt.setString(5, address);
-            pstmt.setString(6, nationality);
-            pstmt.setString(7, nidNumber);
-            pstmt.setString(8, phoneNumber);
-            pstmt.executeUpdate();
-            return true;
-        } catch (SQLException e) {
-            showMessage("Error creating account: " + e.getMessage());
-            return false;
-        }
-    }
-
     private void showMainScreen() {
         // Clear the window
         getContentPane().removeAll();
@@ -540,35 +527,23 @@ public class BankManagementSystem extends JFrame {
         add(dashboardPanel, BorderLayout.EAST);
 
         // Initialize Dashboard
+        dashboardLoader.cancel();
+        dashboardLoader = new AsyncRunner().onLoading(loading -> dashboardPanel.setCursor(
+                Cursor.getPredefinedCursor(loading ? Cursor.WAIT_CURSOR : Cursor.DEFAULT_CURSOR)));
         initUserDashboard();
 
-        // Button actions
-        depositButton.addActionListener(e -> {
-            depositMoney();
-            updateDashboard(); // Update dashboard after deposit
-        });
-        withdrawButton.addActionListener(e -> {
-            withdrawMoney();
-            updateDashboard(); // Update dashboard after withdrawal
-        });
+        // Button actions; ledger operations refresh the dashboard when they finish
+        depositButton.addActionListener(e -> depositMoney());
+        withdrawButton.addActionListener(e -> withdrawMoney());
         checkBalanceButton.addActionListener(e -> checkBalance());
         viewHistoryButton.addActionListener(e -> viewTransactionHistory());
-        transferButton.addActionListener(e -> {
-            transferFunds();
-            updateDashboard(); // Update dashboard after transfer
-        });
+        transferButton.addActionListener(e -> transferFunds());
         editProfileButton.addActionListener(e -> editProfile());
-        loanButton.addActionListener(e -> {
-            applyForLoan();
-            updateDashboard(); // Update dashboard after loan
-        });
-        loanRepaymentButton.addActionListener(e -> {
-            repayLoan();
-            updateDashboard(); // Update dashboard after loan repayment
-        });
+        loanButton.addActionListener(e -> applyForLoan());
+        loanRepaymentButton.addActionListener(e -> repayLoan());
         logoutButton.addActionListener(e -> {
-            loggedInAccountNumber = null;
-            showLoginScreen();
+            dashboardLoader.cancel();
+            logout();
         });
 
         // Refresh the window
@@ -608,48 +583,42 @@ public class BankManagementSystem extends JFrame {
     }
 
     private void updateDashboard() {
-        // Update Balance
-        String balanceSql = "SELECT balance FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(balanceSql)) {
-            pstmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double balance = rs.getDouble("balance");
-                balanceLabel.setText("Balance: $" + String.format("%.2f", balance));
-            }
-        } catch (SQLException e) {
-            showMessage("Error fetching balance: " + e.getMessage());
-        }
+        String accountNumber = session.getAccountNumber();
+        dashboardLoader.run(() -> loadUserDashboard(pool, ledgerService, accountNumber), dashboard -> {
+            balanceLabel.setText("Balance: $" + Money.format(dashboard.balance));
+            loanLabel.setText("Loan: $" + Money.format(dashboard.totalLoans));
+            activityArea.setText(dashboard.activity);
+        }, ex -> showMessage("Error refreshing dashboard: " + ex.getMessage()));
+    }
 
-        // Update Loan
-        String loanSql = "SELECT SUM(remaining_amount) AS total_loans FROM loans WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(loanSql)) {
-            pstmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double totalLoans = rs.getDouble("total_loans");
-                loanLabel.setText("Loan: $" + String.format("%.2f", totalLoans));
-            }
-        } catch (SQLException e) {
-            showMessage("Error fetching loan data: " + e.getMessage());
+    // Runs off the EDT; static and package-private so the benchmarks can drive it
+    static UserDashboard loadUserDashboard(ConnectionPool pool, LedgerService ledgerService, String accountNumber) throws SQLException {
+        String activitySql = "SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC LIMIT 5";
+        UserDashboard dashboard = new UserDashboard();
+
+        // Balance and loan, served from the account cache
+        AccountStateCache.AccountState state = ledgerService.getAccountState(accountNumber);
+        if (state != null) {
+            dashboard.balance = state.getBalance();
+            dashboard.totalLoans = state.getOutstandingLoans();
         }
 
-        // Update User Activity
-        String activitySql = "SELECT type, amount, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC LIMIT 5";
-        try (PreparedStatement pstmt = conn.prepareStatement(activitySql)) {
-            pstmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            StringBuilder activity = new StringBuilder();
-            while (rs.next()) {
-                String type = rs.getString("type");
-                double amount = rs.getDouble("amount");
-                String timestamp = rs.getString("timestamp");
-                activity.append(type).append(": $").append(amount).append(" on ").append(timestamp).append("\n");
+        try (PooledConnection pc = pool.borrow()) {
+            // User Activity
+            PreparedStatement pstmt = pc.prepare(activitySql);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                StringBuilder activity = new StringBuilder();
+                while (rs.next()) {
+                    String type = rs.getString("type");
+                    long amount = rs.getLong("amount_cents");
+                    String timestamp = rs.getString("timestamp");
+                    Money.appendTo(activity.append(type).append(": $"), amount).append(" on ").append(timestamp).append("\n");
+                }
+                dashboard.activity = activity.toString();
             }
-            activityArea.setText(activity.toString());
-        } catch (SQLException e) {
-            showMessage("Error fetching activity: " + e.getMessage());
         }
+        return dashboard;
     }
 
     private void showAdminPanel() {
@@ -666,6 +635,7 @@ public class BankManagementSystem extends JFrame {
         JButton viewAllAccountsButton = createStyledButton("View Accounts", new Color(0, 120, 215));
         JButton blockUnblockButton = createStyledButton("Block/Unblock", new Color(50, 205, 50));
         JButton viewAllTransactionsButton = createStyledButton("View Transactions", new Color(255, 140, 0));
+        JButton analyticsButton = createStyledButton("Analytics", new Color(0, 128, 128));
         JButton setInterestRateButton = createStyledButton("Interest Rate", new Color(147, 112, 219));
         JButton deleteAccountButton = createStyledButton("Delete Account", new Color(255, 0, 0));
         JButton changeAdminCredentialsButton = createStyledButton("Reset Admin", new Color(75, 0, 130));
@@ -674,6 +644,7 @@ public class BankManagementSystem extends JFrame {
         topPanel.add(viewAllAccountsButton);
         topPanel.add(blockUnblockButton);
         topPanel.add(viewAllTransactionsButton);
+        topPanel.add(analyticsButton);
         topPanel.add(setInterestRateButton);
         topPanel.add(deleteAccountButton);
         topPanel.add(changeAdminCredentialsButton);
@@ -701,13 +672,11 @@ public class BankManagementSystem extends JFrame {
         viewAllAccountsButton.addActionListener(e -> viewAllAccounts());
         blockUnblockButton.addActionListener(e -> blockUnblockAccount());
         viewAllTransactionsButton.addActionListener(e -> viewAllTransactions());
+        analyticsButton.addActionListener(e -> viewAnalytics());
         setInterestRateButton.addActionListener(e -> setInterestRate());
         deleteAccountButton.addActionListener(e -> deleteAccount());
         changeAdminCredentialsButton.addActionListener(e -> changeAdminCredentials());
-        logoutButton.addActionListener(e -> {
-            isAdmin = false;
-            showLoginScreen();
-        });
+        logoutButton.addActionListener(e -> logout());
 
         // Refresh the window
         revalidate();
@@ -722,59 +691,57 @@ public class BankManagementSystem extends JFrame {
         totalMoneyLabel.setFont(new Font("Consolas", Font.BOLD, 18));
         dashboardPanel.add(totalMoneyLabel);
     
-        JLabel totalMoneyValue = new JLabel("$0.00");
-        totalMoneyValue.setFont(new Font("Consolas", Font.BOLD, 16));
-        totalMoneyValue.setName("totalMoneyValue"); // Set a unique name for reference
-        dashboardPanel.add(totalMoneyValue);
+        totalMoneyValueLabel = new JLabel("$0.00");
+        totalMoneyValueLabel.setFont(new Font("Consolas", Font.BOLD, 16));
+        dashboardPanel.add(totalMoneyValueLabel);
     
         // Total Loan Amount
         JLabel totalLoanLabel = new JLabel("Total Loan Amount");
         totalLoanLabel.setFont(new Font("Consolas", Font.BOLD, 18));
         dashboardPanel.add(totalLoanLabel);
     
-        JLabel totalLoanValue = new JLabel("$0.00");
-        totalLoanValue.setFont(new Font("Consolas", Font.BOLD, 16));
-        totalLoanValue.setName("totalLoanValue"); // Set a unique name for reference
-        dashboardPanel.add(totalLoanValue);
+        totalLoanValueLabel = new JLabel("$0.00");
+        totalLoanValueLabel.setFont(new Font("Consolas", Font.BOLD, 16));
+        dashboardPanel.add(totalLoanValueLabel);
+
+        // This month's transactions by type
+        JLabel monthActivityLabel = new JLabel("This Month's Activity");
+        monthActivityLabel.setFont(new Font("Consolas", Font.BOLD, 18));
+        dashboardPanel.add(monthActivityLabel);
+
+        activityArea = new JTextArea(8, 20);
+        activityArea.setFont(new Font("Consolas", Font.BOLD, 14));
+        activityArea.setEditable(false);
+        dashboardPanel.add(new JScrollPane(activityArea));
     
         // Update Admin Dashboard
         updateAdminDashboard();
     }
     
     private void updateAdminDashboard() {
-        // Update Total Money in Bank
-        String totalMoneySql = "SELECT SUM(balance) AS total_money FROM accounts";
-        try (PreparedStatement pstmt = conn.prepareStatement(totalMoneySql)) {
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double totalMoney = rs.getDouble("total_money");
-                // Find the label by name and update its text
-                for (Component comp : dashboardPanel.getComponents()) {
-                    if (comp instanceof JLabel && "totalMoneyValue".equals(comp.getName())) {
-                        ((JLabel) comp).setText("$" + String.format("%.2f", totalMoney));
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            showMessage("Error fetching total money: " + e.getMessage());
+        dashboardLoader.run(() -> loadAdminDashboard(bankAggregates, transactionRollups, DateRange.Preset.THIS_MONTH.resolve(java.time.Clock.systemUTC())), dashboard -> {
+            totalMoneyValueLabel.setText("$" + Money.format(dashboard.totals.getTotalBalance()));
+            totalLoanValueLabel.setText("$" + Money.format(dashboard.totals.getTotalLoans()));
+            activityArea.setText(dashboard.activity);
+        }, ex -> showMessage("Error fetching bank totals: " + ex.getMessage()));
+    }
+
+    // Runs off the EDT. One primary-key read of the running totals and a handful
+    // of monthly rollup rows, not a scan of every account or transaction.
+    static AdminDashboard loadAdminDashboard(BankAggregates aggregates, TransactionRollups rollups, DateRange period) throws SQLException {
+        AdminDashboard dashboard = new AdminDashboard();
+        dashboard.totals = aggregates.read();
+        StringBuilder activity = new StringBuilder();
+        for (java.util.Map.Entry<String, TransactionRollups.Totals> entry : rollups.totals(null, period).entrySet()) {
+            Money.appendTo(activity.append(entry.getKey()).append(": ").append(entry.getValue().getCount()).append(" for $"),
+                    entry.getValue().getAmount()).append("\n");
         }
-    
-        // Update Total Loan Amount
-        String totalLoanSql = "SELECT SUM(remaining_amount) AS total_loans FROM loans";
-        try (PreparedStatement pstmt = conn.prepareStatement(totalLoanSql)) {
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double totalLoans = rs.getDouble("total_loans");
-                // Find the label by name and update its text
-                for (Component comp : dashboardPanel.getComponents()) {
-                    if (comp instanceof JLabel && "totalLoanValue".equals(comp.getName())) {
-                        ((JLabel) comp).setText("$" + String.format("%.2f", totalLoans));
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            showMessage("Error fetching total loans: " + e.getMessage());
+        TransactionRollups.BackfillProgress progress = rollups.progress();
+        if (!progress.isComplete()) {
+            activity.append("(Still summing older history: ").append(progress).append(")\n");
         }
+        dashboard.activity = activity.toString();
+        return dashboard;
     }
 
     private void depositMoney() {
@@ -785,26 +752,9 @@ public class BankManagementSystem extends JFrame {
             return;
         }
 
-        double amount = Double.parseDouble(amountText);
-        if (amount <= 0) {
-            showMessage("Invalid amount. Please enter a positive value.");
-            return;
-        }
-
-        String sql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setDouble(1, amount);
-            pstmt.setString(2, loggedInAccountNumber);
-            int rowsUpdated = pstmt.executeUpdate();
-            if (rowsUpdated > 0) {
-                logTransaction(loggedInAccountNumber, "DEPOSIT", amount);
-                showMessage("Deposit successful!");
-            } else {
-                showMessage("Account not found.");
-            }
-        } catch (SQLException e) {
-            showMessage("Error depositing money: " + e.getMessage());
-        }
+        long amount = Money.parse(amountText);
+        Session current = session;
+        runLedgerOperation(() -> ledgerService.deposit(current, amount));
     }
 
     private void withdrawMoney() {
@@ -815,44 +765,20 @@ public class BankManagementSystem extends JFrame {
             return;
         }
 
-        double amount = Double.parseDouble(amountText);
-        if (amount <= 0) {
-            showMessage("Invalid amount. Please enter a positive value.");
-            return;
-        }
-
-        String sql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ? AND balance >= ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setDouble(1, amount);
-            pstmt.setString(2, loggedInAccountNumber);
-            pstmt.setDouble(3, amount);
-            int rowsUpdated = pstmt.executeUpdate();
-            if (rowsUpdated > 0) {
-                logTransaction(loggedInAccountNumber, "WITHDRAWAL", amount);
-                showMessage("Withdrawal successful!");
-            } else {
-                showMessage("Insufficient balance or account not found.");
-            }
-        } catch (SQLException e) {
-            showMessage("Error withdrawing money: " + e.getMessage());
-        }
+        long amount = Money.parse(amountText);
+        Session current = session;
+        runLedgerOperation(() -> ledgerService.withdraw(current, amount));
     }
 
     private void checkBalance() {
-        String sql = "SELECT name, balance FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                String name = rs.getString("name");
-                double balance = rs.getDouble("balance");
-                showMessage("Account Holder: " + name + "\nBalance: $" + balance);
-            } else {
-                showMessage("Account not found.");
+        String accountNumber = session.getAccountNumber();
+        AsyncRunner.submit(() -> {
+            AccountStateCache.AccountState state = ledgerService.getAccountState(accountNumber);
+            if (state != null) {
+                return "Account Holder: " + state.getName() + "\nBalance: $" + Money.format(state.getBalance());
             }
-        } catch (SQLException e) {
-            showMessage("Error checking balance: " + e.getMessage());
-        }
+            return "Account not found.";
+        }, this::showMessage, ex -> showMessage("Error checking balance: " + ex.getMessage()));
     }
 
     private void viewTransactionHistory() {
@@ -903,34 +829,32 @@ public class BankManagementSystem extends JFrame {
         transactionsDialog.add(scrollPane, BorderLayout.CENTER);
         transactionsDialog.add(buttonPanel, BorderLayout.SOUTH);
 
+        // Queries run in the background; a newer search discards an older one's results
+        AsyncRunner loader = new AsyncRunner().onLoading(loading -> {
+            if (loading) {
+                resultArea.setText("Loading...");
+            }
+        });
+        cancelOnClose(transactionsDialog, loader);
+        String accountNumber = session.getAccountNumber();
+        RowFormatter formatTransaction = (rs, out) -> out.append("Type: ").append(rs.getString("type"))
+                .append("\nAmount: $").append(Money.format(rs.getLong("amount_cents")))
+                .append("\nTimestamp: ").append(rs.getString("timestamp"))
+                .append("\n\n");
+
         // Function to display all transactions for the current user
         Runnable displayAllTransactions = () -> {
-            try {
-                String sql = "SELECT type, amount, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC";
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-                pstmt.setString(1, loggedInAccountNumber);
-                ResultSet rs = pstmt.executeQuery();
-                StringBuilder transactions = new StringBuilder("Your Transaction History:\n\n");
-                while (rs.next()) {
-                    String type = rs.getString("type");
-                    double amount = rs.getDouble("amount");
-                    String timestamp = rs.getString("timestamp");
-                    transactions.append("Type: ").append(type)
-                            .append("\nAmount: $").append(String.format("%.2f", amount))
-                            .append("\nTimestamp: ").append(timestamp)
-                            .append("\n\n");
-                }
-                resultArea.setText(transactions.toString());
-            } catch (SQLException e) {
-                resultArea.setText("Error fetching transactions: " + e.getMessage());
-            }
+            String sql = "SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC";
+            loader.run(() -> queryAsText(sql, java.util.List.of(accountNumber), "Your Transaction History:\n\n", formatTransaction),
+                    resultArea::setText,
+                    ex -> resultArea.setText("Error fetching transactions: " + ex.getMessage()));
         };
 
         // Search button action
         searchButton.addActionListener(e -> {
-            StringBuilder sql = new StringBuilder("SELECT type, amount, timestamp FROM transactions WHERE account_number = ?");
+            StringBuilder sql = new StringBuilder("SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ?");
             java.util.List<Object> params = new java.util.ArrayList<>();
-            params.add(loggedInAccountNumber);
+            params.add(accountNumber);
 
             if (!typeField.getText().isEmpty()) {
                 sql.append(" AND type LIKE ?");
@@ -939,25 +863,9 @@ public class BankManagementSystem extends JFrame {
 
             sql.append(" ORDER BY timestamp DESC");
 
-            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-                for (int i = 0; i < params.size(); i++) {
-                    pstmt.setObject(i + 1, params.get(i));
-                }
-                ResultSet rs = pstmt.executeQuery();
-                StringBuilder transactions = new StringBuilder("Search Results:\n\n");
-                while (rs.next()) {
-                    String type = rs.getString("type");
-                    double amount = rs.getDouble("amount");
-                    String timestamp = rs.getString("timestamp");
-                    transactions.append("Type: ").append(type)
-                            .append("\nAmount: $").append(String.format("%.2f", amount))
-                            .append("\nTimestamp: ").append(timestamp)
-                            .append("\n\n");
-                }
-                resultArea.setText(transactions.toString());
-            } catch (SQLException ex) {
-                resultArea.setText("Error searching transactions: " + ex.getMessage());
-            }
+            loader.run(() -> queryAsText(sql.toString(), params, "Search Results:\n\n", formatTransaction),
+                    resultArea::setText,
+                    ex -> resultArea.setText("Error searching transactions: " + ex.getMessage()));
         });
 
         // Reset button action
@@ -981,135 +889,94 @@ public class BankManagementSystem extends JFrame {
         String amountText = amountField.getText();
         String targetAccountNumber = JOptionPane.showInputDialog(this, "Enter Target Account Number:");
 
-        if (amountText.isEmpty() || targetAccountNumber.isEmpty()) {
+        if (amountText.isEmpty() || targetAccountNumber == null || targetAccountNumber.isEmpty()) {
             showMessage("Amount and target account number cannot be empty.");
             return;
         }
 
-        double amount = Double.parseDouble(amountText);
-        if (amount <= 0) {
-            showMessage("Invalid amount. Please enter a positive value.");
-            return;
-        }
-
-        // Check if the target account exists
-        String checkAccountSql = "SELECT * FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(checkAccountSql)) {
-            pstmt.setString(1, targetAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (!rs.next()) {
-                showMessage("Target account not found.");
-                return;
-            }
-        } catch (SQLException e) {
-            showMessage("Error checking target account: " + e.getMessage());
-            return;
-        }
-
-        // Withdraw from the logged-in account
-        String withdrawSql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ? AND balance >= ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(withdrawSql)) {
-            pstmt.setDouble(1, amount);
-            pstmt.setString(2, loggedInAccountNumber);
-            pstmt.setDouble(3, amount);
-            int rowsUpdated = pstmt.executeUpdate();
-            if (rowsUpdated == 0) {
-                showMessage("Insufficient balance.");
-                return;
-            }
-        } catch (SQLException e) {
-            showMessage("Error withdrawing money: " + e.getMessage());
-            return;
-        }
-
-        // Deposit into the target account
-        String depositSql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(depositSql)) {
-            pstmt.setDouble(1, amount);
-            pstmt.setString(2, targetAccountNumber);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            showMessage("Error depositing money: " + e.getMessage());
-            return;
-        }
-
-        // Log the transaction
-        try {
-            logTransaction(loggedInAccountNumber, "TRANSFER_OUT", amount);
-            logTransaction(targetAccountNumber, "TRANSFER_IN", amount);
-            showMessage("Transfer successful!");
-        } catch (SQLException e) {
-            showMessage("Error logging transaction: " + e.getMessage());
-        }
+        long amount = Money.parse(amountText);
+        Session current = session;
+        runLedgerOperation(() -> ledgerService.transfer(current, targetAccountNumber, amount));
     }
 
     private void editProfile() {
         // Fetch current user details
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                String currentName = rs.getString("name");
-                String currentDob = rs.getString("date_of_birth");
-                String currentAddress = rs.getString("address");
-                String currentNationality = rs.getString("nationality");
-                String currentNid = rs.getString("nid_number");
-                String currentPhone = rs.getString("phone_number");
-
-                // Create a dialog box for editing profile
-                JPanel editPanel = new JPanel(new GridLayout(7, 2, 10, 10));
-                JTextField nameField = new JTextField(currentName);
-                JTextField dobField = new JTextField(currentDob);
-                JTextField addressField = new JTextField(currentAddress);
-                JTextField nationalityField = new JTextField(currentNationality);
-                JTextField nidField = new JTextField(currentNid);
-                JTextField phoneField = new JTextField(currentPhone);
-                JPasswordField passwordField = new JPasswordField();
-
-                editPanel.add(new JLabel("Name:"));
-                editPanel.add(nameField);
-                editPanel.add(new JLabel("Date of Birth (YYYY-MM-DD):"));
-                editPanel.add(dobField);
-                editPanel.add(new JLabel("Address:"));
-                editPanel.add(addressField);
-                editPanel.add(new JLabel("Nationality:"));
-                editPanel.add(nationalityField);
-                editPanel.add(new JLabel("NID Number:"));
-                editPanel.add(nidField);
-                editPanel.add(new JLabel("Phone Number:"));
-                editPanel.add(phoneField);
-                editPanel.add(new JLabel("New Password:"));
-                editPanel.add(passwordField);
-
-                int result = JOptionPane.showConfirmDialog(this, editPanel, "Edit Profile", JOptionPane.OK_CANCEL_OPTION);
-                if (result == JOptionPane.OK_OPTION) {
-                    String newName = nameField.getText();
-                    String newDob = dobField.getText();
-                    String newAddress = addressField.getText();
-                    String newNationality = nationalityField.getText();
-                    String newNid = nidField.getText();
-                    String newPhone = phoneField.getText();
-                    String newPassword = new String(passwordField.getPassword());
-
-                    // Update the database
-                    String updateSql = "UPDATE accounts SET name = ?, date_of_birth = ?, address = ?, nationality = ?, nid_number = ?, phone_number = ?, password = ? WHERE account_number = ?";
-                    try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                        updateStmt.setString(1, newName);
-                        updateStmt.setString(2, newDob);
-                        updateStmt.setString(3, newAddress);
-                        updateStmt.setString(4, newNationality);
-                        updateStmt.setString(5, newNid);
-                        updateStmt.setString(6, newPhone);
-                        updateStmt.setString(7, hashPassword(newPassword));
-                        updateStmt.setString(8, loggedInAccountNumber);
-                        updateStmt.executeUpdate();
-                        showMessage("Profile updated successfully!");
+        String accountNumber = session.getAccountNumber();
+        AsyncRunner.submit(() -> {
+            String sql = "SELECT name, date_of_birth, address, nationality, nid_number, phone_number FROM accounts WHERE account_number = ?";
+            try (PooledConnection pc = pool.borrow()) {
+                PreparedStatement pstmt = pc.prepare(sql);
+                pstmt.setString(1, accountNumber);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
                     }
+                    return new String[]{rs.getString("name"), rs.getString("date_of_birth"), rs.getString("address"),
+                            rs.getString("nationality"), rs.getString("nid_number"), rs.getString("phone_number")};
                 }
             }
-        } catch (SQLException e) {
-            showMessage("Error updating profile: " + e.getMessage());
+        }, current -> {
+            if (current != null) {
+                showEditProfileDialog(accountNumber, current);
+            }
+        }, ex -> showMessage("Error updating profile: " + ex.getMessage()));
+    }
+
+    private void showEditProfileDialog(String accountNumber, String[] current) {
+        // Create a dialog box for editing profile
+        JPanel editPanel = new JPanel(new GridLayout(7, 2, 10, 10));
+        JTextField nameField = new JTextField(current[0]);
+        JTextField dobField = new JTextField(current[1]);
+        JTextField addressField = new JTextField(current[2]);
+        JTextField nationalityField = new JTextField(current[3]);
+        JTextField nidField = new JTextField(current[4]);
+        JTextField phoneField = new JTextField(current[5]);
+        JPasswordField passwordField = new JPasswordField();
+
+        editPanel.add(new JLabel("Name:"));
+        editPanel.add(nameField);
+        editPanel.add(new JLabel("Date of Birth (YYYY-MM-DD):"));
+        editPanel.add(dobField);
+        editPanel.add(new JLabel("Address:"));
+        editPanel.add(addressField);
+        editPanel.add(new JLabel("Nationality:"));
+        editPanel.add(nationalityField);
+        editPanel.add(new JLabel("NID Number:"));
+        editPanel.add(nidField);
+        editPanel.add(new JLabel("Phone Number:"));
+        editPanel.add(phoneField);
+        editPanel.add(new JLabel("New Password:"));
+        editPanel.add(passwordField);
+
+        int result = JOptionPane.showConfirmDialog(this, editPanel, "Edit Profile", JOptionPane.OK_CANCEL_OPTION);
+        if (result == JOptionPane.OK_OPTION) {
+            String newName = nameField.getText();
+            String newDob = dobField.getText();
+            String newAddress = addressField.getText();
+            String newNationality = nationalityField.getText();
+            String newNid = nidField.getText();
+            String newPhone = phoneField.getText();
+            String newPassword = new String(passwordField.getPassword());
+
+            // Update the database
+            AsyncRunner.submit(() -> {
+                String updateSql = "UPDATE accounts SET name = ?, date_of_birth = ?, address = ?, nationality = ?, nid_number = ?, phone_number = ?, password = ?, version = version + 1 WHERE account_number = ?";
+                try (PooledConnection pc = pool.borrow()) {
+                    PreparedStatement updateStmt = pc.prepare(updateSql);
+                    updateStmt.setString(1, newName);
+                    updateStmt.setString(2, newDob);
+                    updateStmt.setString(3, newAddress);
+                    updateStmt.setString(4, newNationality);
+                    updateStmt.setString(5, newNid);
+                    updateStmt.setString(6, newPhone);
+                    updateStmt.setString(7, authenticator.hash(newPassword));
+                    updateStmt.setString(8, accountNumber);
+                    return updateStmt.executeUpdate();
+                } finally {
+                    ledgerService.getAccountCache().invalidate(accountNumber); // The cached state carries the name
+                }
+            }, rows -> showMessage("Profile updated successfully!"),
+                    ex -> showMessage("Error updating profile: " + ex.getMessage()));
         }
     }
 
@@ -1120,44 +987,9 @@ public class BankManagementSystem extends JFrame {
             return;
         }
 
-        double loanAmount = Double.parseDouble(amountText);
-        if (loanAmount <= 0) {
-            showMessage("Invalid loan amount. Please enter a positive value.");
-            return;
-        }
-
-        // Check if the loan amount is within the limit (e.g., $10,000)
-        double loanLimit = 10000.0;
-        if (loanAmount > loanLimit) {
-            showMessage("Loan amount exceeds the maximum limit of $" + loanLimit);
-            return;
-        }
-
-        // Add the loan amount to the user's balance
-        String updateBalanceSql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
-        String insertLoanSql = "INSERT INTO loans (account_number, loan_amount, remaining_amount) VALUES (?, ?, ?)";
-        try (PreparedStatement updateStmt = conn.prepareStatement(updateBalanceSql);
-             PreparedStatement insertStmt = conn.prepareStatement(insertLoanSql)) {
-            // Update balance
-            updateStmt.setDouble(1, loanAmount);
-            updateStmt.setString(2, loggedInAccountNumber);
-            int rowsUpdated = updateStmt.executeUpdate();
-
-            if (rowsUpdated > 0) {
-                // Insert loan record
-                insertStmt.setString(1, loggedInAccountNumber);
-                insertStmt.setDouble(2, loanAmount);
-                insertStmt.setDouble(3, loanAmount); // Initially, remaining amount = loan amount
-                insertStmt.executeUpdate();
-
-                logTransaction(loggedInAccountNumber, "LOAN", loanAmount);
-                showMessage("Loan of $" + loanAmount + " approved and added to your account.");
-            } else {
-                showMessage("Error processing loan.");
-            }
-        } catch (SQLException e) {
-            showMessage("Error processing loan: " + e.getMessage());
-        }
+        long loanAmount = Money.parse(amountText);
+        Session current = session;
+        runLedgerOperation(() -> ledgerService.applyForLoan(current, loanAmount));
     }
 
     private void repayLoan() {
@@ -1167,61 +999,17 @@ public class BankManagementSystem extends JFrame {
             return;
         }
 
-        double repaymentAmount = Double.parseDouble(amountText);
-        if (repaymentAmount <= 0) {
-            showMessage("Invalid repayment amount. Please enter a positive value.");
-            return;
-        }
-
-        // Check if the user has an active loan
-        String checkLoanSql = "SELECT id, remaining_amount FROM loans WHERE account_number = ? AND remaining_amount > 0";
-        try (PreparedStatement checkStmt = conn.prepareStatement(checkLoanSql)) {
-            checkStmt.setString(1, loggedInAccountNumber);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next()) {
-                int loanId = rs.getInt("id");
-                double remainingAmount = rs.getDouble("remaining_amount");
-
-                if (repaymentAmount > remainingAmount) {
-                    showMessage("Repayment amount exceeds the remaining loan amount.");
-                    return;
-                }
-
-                // Deduct the repayment amount from the user's balance
-                String updateBalanceSql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ? AND balance >= ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateBalanceSql)) {
-                    updateStmt.setDouble(1, repaymentAmount);
-                    updateStmt.setString(2, loggedInAccountNumber);
-                    updateStmt.setDouble(3, repaymentAmount);
-                    int rowsUpdated = updateStmt.executeUpdate();
-
-                    if (rowsUpdated > 0) {
-                        // Update the remaining loan amount
-                        String updateLoanSql = "UPDATE loans SET remaining_amount = remaining_amount - ? WHERE id = ?";
-                        try (PreparedStatement updateLoanStmt = conn.prepareStatement(updateLoanSql)) {
-                            updateLoanStmt.setDouble(1, repaymentAmount);
-                            updateLoanStmt.setInt(2, loanId);
-                            updateLoanStmt.executeUpdate();
-                        }
-
-                        logTransaction(loggedInAccountNumber, "LOAN_REPAYMENT", repaymentAmount);
-                        showMessage("Loan repayment of $" + repaymentAmount + " successful!");
+        long repaymentAmount = Money.parse(amountText);
+        Session current = session;
+        runLedgerOperation(() -> ledgerService.repayLoan(current, repaymentAmount));
+    }
 
-                        // Check if the loan is fully repaid
-                        if (remainingAmount - repaymentAmount <= 0) {
-                            showMessage("Congratulations! Your loan has been fully repaid.");
-                        }
-                    } else {
-                        showMessage("Insufficient balance for repayment.");
-                    }
-                }
-            } else {
-                showMessage("No active loan found.");
-            }
-        } catch (SQLException e) {
-            showMessage("Error processing loan repayment: " + e.getMessage());
-        }
+    // Run a ledger operation off the EDT, then show its result and refresh the dashboard
+    private void runLedgerOperation(AsyncRunner.Work<LedgerResult> operation) {
+        AsyncRunner.submit(operation, result -> {
+            showMessage(result.getMessage());
+            updateDashboard();
+        }, ex -> showMessage("Error: " + ex.getMessage()));
     }
 
     private void viewAllAccounts() {
@@ -1237,36 +1025,40 @@ public class BankManagementSystem extends JFrame {
         gbc.insets = new Insets(5, 5, 5, 5);
         gbc.fill = GridBagConstraints.HORIZONTAL;
 
-        // Search fields
-        JTextField accountNumberField = new JTextField(20);
-        accountNumberField.setFont(new Font("Consolas", Font.BOLD, 14));
-        JTextField nameField = new JTextField(20);
-        nameField.setFont(new Font("Consolas", Font.BOLD, 14));
+        // Search field: account number, name, phone or NID, or any part of them
+        JTextField queryField = new JTextField(20);
+        queryField.setFont(new Font("Consolas", Font.BOLD, 14));
 
         // Add components to search panel with Consolas font
-        JLabel accountNumberLabel = new JLabel("Account Number:");
-        accountNumberLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        JLabel queryLabel = new JLabel("Search:");
+        queryLabel.setFont(new Font("Consolas", Font.BOLD, 14));
         gbc.gridx = 0; gbc.gridy = 0;
-        searchPanel.add(accountNumberLabel, gbc);
+        searchPanel.add(queryLabel, gbc);
         gbc.gridx = 1; gbc.gridy = 0;
-        searchPanel.add(accountNumberField, gbc);
+        searchPanel.add(queryField, gbc);
 
-        JLabel nameLabel = new JLabel("Name:");
-        nameLabel.setFont(new Font("Consolas", Font.BOLD, 14));
-        gbc.gridx = 0; gbc.gridy = 1;
-        searchPanel.add(nameLabel, gbc);
+        JLabel hintLabel = new JLabel("Account number, name, phone or NID");
+        hintLabel.setFont(new Font("Consolas", Font.PLAIN, 12));
         gbc.gridx = 1; gbc.gridy = 1;
-        searchPanel.add(nameField, gbc);
+        searchPanel.add(hintLabel, gbc);
 
         // Buttons panel with padding
         JPanel buttonPanel = new JPanel();
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         JButton searchButton = createStyledButton("Search", new Color(0, 120, 215));
+        JButton previousButton = createStyledButton("Previous", new Color(0, 120, 215));
+        JButton nextButton = createStyledButton("Next", new Color(0, 120, 215));
         JButton resetButton = createStyledButton("Reset", new Color(220, 20, 60));
+        JButton exportButton = createStyledButton("Export", new Color(0, 150, 136));
         JButton closeButton = createStyledButton("Close", new Color(128, 128, 128));
+        previousButton.setEnabled(false);
+        nextButton.setEnabled(false);
 
         buttonPanel.add(searchButton);
+        buttonPanel.add(previousButton);
+        buttonPanel.add(nextButton);
         buttonPanel.add(resetButton);
+        buttonPanel.add(exportButton);
         buttonPanel.add(closeButton);
 
         // Create text area for displaying results with padding
@@ -1281,74 +1073,109 @@ public class BankManagementSystem extends JFrame {
         accountsDialog.add(scrollPane, BorderLayout.CENTER);
         accountsDialog.add(buttonPanel, BorderLayout.SOUTH);
 
+        // Queries run in the background; a newer search discards an older one's results
+        AsyncRunner loader = new AsyncRunner().onLoading(loading -> {
+            if (loading) {
+                resultArea.setText("Loading...");
+            }
+        });
+        cancelOnClose(accountsDialog, loader);
+        RowFormatter formatAccount = (rs, out) -> out.append("Account Number: ").append(rs.getString("account_number")).append("\n")
+                .append("Name: ").append(rs.getString("name")).append("\n")
+                .append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n")
+                .append("Address: ").append(rs.getString("address")).append("\n")
+                .append("Nationality: ").append(rs.getString("nationality")).append("\n")
+                .append("NID Number: ").append(rs.getString("nid_number")).append("\n")
+                .append("Phone Number: ").append(rs.getString("phone_number")).append("\n")
+                .append("Balance: $").append(Money.format(rs.getLong("balance_cents"))).append("\n")
+                .append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n\n");
+
         // Function to display all accounts
         Runnable displayAllAccounts = () -> {
-            try {
-                String sql = "SELECT account_number, name, date_of_birth, address, nationality, nid_number, phone_number, balance, is_blocked FROM accounts";
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-            ResultSet rs = pstmt.executeQuery();
-                StringBuilder accounts = new StringBuilder("All Accounts:\n\n");
-            while (rs.next()) {
-                accounts.append("Account Number: ").append(rs.getString("account_number")).append("\n")
-                        .append("Name: ").append(rs.getString("name")).append("\n")
-                        .append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n")
-                        .append("Address: ").append(rs.getString("address")).append("\n")
-                        .append("Nationality: ").append(rs.getString("nationality")).append("\n")
-                        .append("NID Number: ").append(rs.getString("nid_number")).append("\n")
-                        .append("Phone Number: ").append(rs.getString("phone_number")).append("\n")
-                            .append("Balance: $").append(String.format("%.2f", rs.getDouble("balance"))).append("\n")
-                            .append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n\n");
+            String sql = "SELECT account_number, name, date_of_birth, address, nationality, nid_number, phone_number, balance_cents, is_blocked FROM accounts";
+            loader.run(() -> queryAsText(sql, java.util.List.of(), "All Accounts:\n\n", formatAccount),
+                    resultArea::setText,
+                    ex -> resultArea.setText("Error fetching accounts: " + ex.getMessage()));
+        };
+
+        // Ranked search through the account search index, a page at a time
+        int[] pageOffset = {0};
+        java.util.function.IntConsumer searchPage = offset -> {
+            String query = queryField.getText();
+            if (query.trim().isEmpty()) {
+                return;
             }
-                resultArea.setText(accounts.toString());
-        } catch (SQLException e) {
-                resultArea.setText("Error fetching accounts: " + e.getMessage());
+            if (!AccountService.isSearchable(query)) {
+                // Shorter terms can't use the index, so don't search on them
+                loader.cancel();
+                previousButton.setEnabled(false);
+                nextButton.setEnabled(false);
+                resultArea.setText("Type at least " + AccountService.MIN_SEARCH_TERM + " characters to search.");
+                return;
             }
+            previousButton.setEnabled(false);
+            nextButton.setEnabled(false);
+            loader.run(() -> accountService.search(query, ACCOUNT_SEARCH_PAGE_SIZE, offset),
+                    page -> {
+                        pageOffset[0] = page.getOffset();
+                        previousButton.setEnabled(page.getOffset() > 0);
+                        nextButton.setEnabled(page.hasNext());
+                        resultArea.setText(formatAccountSearch(page));
+                        resultArea.setCaretPosition(0);
+                    },
+                    ex -> resultArea.setText("Error searching accounts: " + ex.getMessage()));
         };
 
-        // Search button action
-        searchButton.addActionListener(e -> {
-            StringBuilder sql = new StringBuilder("SELECT account_number, name, date_of_birth, address, nationality, nid_number, phone_number, balance, is_blocked FROM accounts WHERE 1=1");
-            java.util.List<Object> params = new java.util.ArrayList<>();
-
-            if (!accountNumberField.getText().isEmpty()) {
-                sql.append(" AND account_number LIKE ?");
-                params.add("%" + accountNumberField.getText() + "%");
+        // Search as the admin types, once they pause
+        Timer typingPause = new Timer(ACCOUNT_SEARCH_DELAY_MILLIS, e -> searchPage.accept(0));
+        typingPause.setRepeats(false);
+        queryField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
             }
-            if (!nameField.getText().isEmpty()) {
-                sql.append(" AND name LIKE ?");
-                params.add("%" + nameField.getText() + "%");
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
             }
 
-            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-                for (int i = 0; i < params.size(); i++) {
-                    pstmt.setObject(i + 1, params.get(i));
-                }
-                ResultSet rs = pstmt.executeQuery();
-                StringBuilder accounts = new StringBuilder("Search Results:\n\n");
-                while (rs.next()) {
-                    accounts.append("Account Number: ").append(rs.getString("account_number")).append("\n")
-                            .append("Name: ").append(rs.getString("name")).append("\n")
-                            .append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n")
-                            .append("Address: ").append(rs.getString("address")).append("\n")
-                            .append("Nationality: ").append(rs.getString("nationality")).append("\n")
-                            .append("NID Number: ").append(rs.getString("nid_number")).append("\n")
-                            .append("Phone Number: ").append(rs.getString("phone_number")).append("\n")
-                            .append("Balance: $").append(String.format("%.2f", rs.getDouble("balance"))).append("\n")
-                            .append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n\n");
-                }
-                resultArea.setText(accounts.toString());
-            } catch (SQLException ex) {
-                resultArea.setText("Error searching accounts: " + ex.getMessage());
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                typingPause.restart();
+            }
+        });
+        accountsDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                typingPause.stop();
             }
         });
 
+        // Search button action
+        searchButton.addActionListener(e -> {
+            typingPause.stop();
+            searchPage.accept(0);
+        });
+        queryField.addActionListener(e -> {
+            typingPause.stop();
+            searchPage.accept(0);
+        });
+        previousButton.addActionListener(e -> searchPage.accept(Math.max(0, pageOffset[0] - ACCOUNT_SEARCH_PAGE_SIZE)));
+        nextButton.addActionListener(e -> searchPage.accept(pageOffset[0] + ACCOUNT_SEARCH_PAGE_SIZE));
+
         // Reset button action
         resetButton.addActionListener(e -> {
-            accountNumberField.setText("");
-            nameField.setText("");
+            queryField.setText("");
+            typingPause.stop();
+            previousButton.setEnabled(false);
+            nextButton.setEnabled(false);
             displayAllAccounts.run();
         });
 
+        // Export button action; every account, whatever the search
+        exportButton.addActionListener(e -> exportCsv(accountsDialog, CsvExporter.Dataset.ACCOUNTS, "accounts.csv"));
+
         // Close button action
         closeButton.addActionListener(e -> accountsDialog.dispose());
 
@@ -1426,35 +1253,30 @@ public class BankManagementSystem extends JFrame {
         blockDialog.add(mainPanel, BorderLayout.CENTER);
         blockDialog.add(buttonPanel, BorderLayout.SOUTH);
 
+        // Lookups run in the background; a newer search discards an older one's results
+        AsyncRunner loader = new AsyncRunner().onLoading(loading -> {
+            if (loading) {
+                detailsArea.setText("Loading...");
+            }
+        });
+        cancelOnClose(blockDialog, loader);
+
         // Search button action
         searchButton.addActionListener(e -> {
             String accountNumber = accountNumberField.getText();
             if (accountNumber.isEmpty()) {
                 showMessage("Please enter an account number.");
-            return;
-        }
+                return;
+            }
 
-            try {
-                String sql = "SELECT * FROM accounts WHERE account_number = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, accountNumber);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                        StringBuilder details = new StringBuilder();
-                        details.append("Name: ").append(rs.getString("name")).append("\n");
-                        details.append("Balance: $").append(String.format("%.2f", rs.getDouble("balance"))).append("\n");
-                        details.append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n");
-                        details.append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n");
-                        details.append("Address: ").append(rs.getString("address")).append("\n");
-                        details.append("Phone: ").append(rs.getString("phone_number")).append("\n");
-                        detailsArea.setText(details.toString());
-                    } else {
-                        showMessage("Account not found.");
-                    }
+            loader.run(() -> loadAccountDetails(accountNumber), details -> {
+                if (details != null) {
+                    detailsArea.setText(details);
+                } else {
+                    detailsArea.setText("");
+                    showMessage("Account not found.");
                 }
-            } catch (SQLException ex) {
-                showMessage("Error fetching account details: " + ex.getMessage());
-            }
+            }, ex -> showMessage("Error fetching account details: " + ex.getMessage()));
         });
 
         // Block button action
@@ -1472,43 +1294,33 @@ public class BankManagementSystem extends JFrame {
                 return;
             }
 
-            try {
-                // Check if account exists and is not already blocked
-                String checkSql = "SELECT is_blocked FROM accounts WHERE account_number = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(checkSql)) {
-                    pstmt.setString(1, accountNumber);
-                    ResultSet rs = pstmt.executeQuery();
-                    if (rs.next()) {
-                        if (rs.getBoolean("is_blocked")) {
-                            showMessage("Account is already blocked.");
-                            return;
-                        }
-
-                        // Confirm blocking
-                        int confirm = JOptionPane.showConfirmDialog(
-                            this,
-                            "Are you sure you want to block this account?\nReason: " + reason,
-                            "Confirm Block Account",
-                            JOptionPane.YES_NO_OPTION
-                        );
-
-                        if (confirm == JOptionPane.YES_OPTION) {
-                            // Update account status
-                            String updateSql = "UPDATE accounts SET is_blocked = TRUE WHERE account_number = ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                                updateStmt.setString(1, accountNumber);
-                                updateStmt.executeUpdate();
-                                showMessage("Account blocked successfully!");
-                                blockDialog.dispose();
-                    }
+            // Check if account exists and is not already blocked
+            AsyncRunner.submit(() -> loadBlockedStatus(accountNumber), blocked -> {
+                if (blocked == null) {
+                    showMessage("Account not found.");
+                    return;
                 }
-            } else {
-                showMessage("Account not found.");
-            }
+                if (blocked) {
+                    showMessage("Account is already blocked.");
+                    return;
                 }
-            } catch (SQLException ex) {
-                showMessage("Error blocking account: " + ex.getMessage());
-            }
+
+                // Confirm blocking
+                int confirm = JOptionPane.showConfirmDialog(
+                    this,
+                    "Are you sure you want to block this account?\nReason: " + reason,
+                    "Confirm Block Account",
+                    JOptionPane.YES_NO_OPTION
+                );
+
+                if (confirm == JOptionPane.YES_OPTION) {
+                    // Update account status
+                    AsyncRunner.submit(() -> setBlocked(accountNumber, true), rowsUpdated -> {
+                        showMessage("Account blocked successfully!");
+                        blockDialog.dispose();
+                    }, ex -> showMessage("Error blocking account: " + ex.getMessage()));
+                }
+            }, ex -> showMessage("Error blocking account: " + ex.getMessage()));
         });
 
         // Unblock button action
@@ -1520,62 +1332,37 @@ public class BankManagementSystem extends JFrame {
                 return;
             }
 
-            try {
-                // Check if account exists and is blocked
-                String checkSql = "SELECT is_blocked FROM accounts WHERE account_number = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(checkSql)) {
-                    pstmt.setString(1, accountNumber);
-                    ResultSet rs = pstmt.executeQuery();
-                    if (rs.next()) {
-                        if (!rs.getBoolean("is_blocked")) {
-                            showMessage("Account is not blocked.");
-                            return;
-                        }
+            // Check if account exists and is blocked
+            AsyncRunner.submit(() -> loadBlockedStatus(accountNumber), blocked -> {
+                if (blocked == null) {
+                    showMessage("Account not found.");
+                    return;
+                }
+                if (!blocked) {
+                    showMessage("Account is not blocked.");
+                    return;
+                }
 
-                        // Confirm unblocking
-                        int confirm = JOptionPane.showConfirmDialog(
-                            this,
-                            "Are you sure you want to unblock this account?",
-                            "Confirm Unblock Account",
-                            JOptionPane.YES_NO_OPTION
-                        );
-
-                        if (confirm == JOptionPane.YES_OPTION) {
-                            // Start transaction
-                            conn.setAutoCommit(false);
-                            try {
-                                // Update account status
-                                String updateSql = "UPDATE accounts SET is_blocked = FALSE WHERE account_number = ?";
-                                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                                    updateStmt.setString(1, accountNumber);
-                                    int rowsUpdated = updateStmt.executeUpdate();
-                                    if (rowsUpdated > 0) {
-                                        conn.commit();
-                                        showMessage("Account unblocked successfully!");
-                                        blockDialog.dispose();
-                                    } else {
-                                        conn.rollback();
-                                        showMessage("Failed to unblock account. Account may not exist.");
-                                    }
-                                }
-                            } catch (SQLException ex) {
-                                conn.rollback();
-                                showMessage("Error unblocking account: " + ex.getMessage());
-                            } finally {
-                                try {
-                                    conn.setAutoCommit(true);
-                                } catch (SQLException ex) {
-                                    showMessage("Error resetting auto-commit: " + ex.getMessage());
-                                }
-                            }
+                // Confirm unblocking
+                int confirm = JOptionPane.showConfirmDialog(
+                    this,
+                    "Are you sure you want to unblock this account?",
+                    "Confirm Unblock Account",
+                    JOptionPane.YES_NO_OPTION
+                );
+
+                if (confirm == JOptionPane.YES_OPTION) {
+                    // Update account status
+                    AsyncRunner.submit(() -> setBlocked(accountNumber, false), rowsUpdated -> {
+                        if (rowsUpdated > 0) {
+                            showMessage("Account unblocked successfully!");
+                            blockDialog.dispose();
+                        } else {
+                            showMessage("Failed to unblock account. Account may not exist.");
                         }
-                    } else {
-                        showMessage("Account not found.");
-                    }
+                    }, ex -> showMessage("Error unblocking account: " + ex.getMessage()));
                 }
-            } catch (SQLException ex) {
-                showMessage("Error unblocking account: " + ex.getMessage());
-            }
+            }, ex -> showMessage("Error unblocking account: " + ex.getMessage()));
         });
 
         // Close button action
@@ -1650,35 +1437,30 @@ public class BankManagementSystem extends JFrame {
         deleteDialog.add(mainPanel, BorderLayout.CENTER);
         deleteDialog.add(buttonPanel, BorderLayout.SOUTH);
 
+        // Lookups run in the background; a newer search discards an older one's results
+        AsyncRunner loader = new AsyncRunner().onLoading(loading -> {
+            if (loading) {
+                detailsArea.setText("Loading...");
+            }
+        });
+        cancelOnClose(deleteDialog, loader);
+
         // Search button action
         searchButton.addActionListener(e -> {
             String accountNumber = accountNumberField.getText();
             if (accountNumber.isEmpty()) {
                 showMessage("Please enter an account number.");
-            return;
-        }
+                return;
+            }
 
-            try {
-                String sql = "SELECT * FROM accounts WHERE account_number = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setString(1, accountNumber);
-                    ResultSet rs = pstmt.executeQuery();
-                    if (rs.next()) {
-                        StringBuilder details = new StringBuilder();
-                        details.append("Name: ").append(rs.getString("name")).append("\n");
-                        details.append("Balance: $").append(String.format("%.2f", rs.getDouble("balance"))).append("\n");
-                        details.append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n");
-                        details.append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n");
-                        details.append("Address: ").append(rs.getString("address")).append("\n");
-                        details.append("Phone: ").append(rs.getString("phone_number")).append("\n");
-                        detailsArea.setText(details.toString());
-            } else {
-                        showMessage("Account not found.");
-                    }
+            loader.run(() -> loadAccountDetails(accountNumber), details -> {
+                if (details != null) {
+                    detailsArea.setText(details);
+                } else {
+                    detailsArea.setText("");
+                    showMessage("Account not found.");
                 }
-            } catch (SQLException ex) {
-                showMessage("Error fetching account details: " + ex.getMessage());
-            }
+            }, ex -> showMessage("Error fetching account details: " + ex.getMessage()));
         });
 
         // Delete button action
@@ -1688,84 +1470,57 @@ public class BankManagementSystem extends JFrame {
             
             if (accountNumber.isEmpty()) {
                 showMessage("Please enter an account number.");
-            return;
-        }
+                return;
+            }
 
             if (reason.isEmpty()) {
                 showMessage("Please provide a reason for deleting the account.");
                 return;
             }
 
-            try {
-                // Start transaction
-                conn.setAutoCommit(false);
-
-                // Check if account exists and get its balance
-                String checkSql = "SELECT * FROM accounts WHERE account_number = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(checkSql)) {
+            // Check if account exists and get its balance
+            AsyncRunner.submit(() -> {
+                String checkSql = "SELECT name, balance_cents FROM accounts WHERE account_number = ?";
+                try (PooledConnection pc = pool.borrow()) {
+                    PreparedStatement pstmt = pc.prepare(checkSql);
                     pstmt.setString(1, accountNumber);
-                    ResultSet rs = pstmt.executeQuery();
-                    if (rs.next()) {
-                        // Get account details for confirmation
-                        String name = rs.getString("name");
-                        double balance = rs.getDouble("balance");
-
-        // Confirm deletion
-                        int confirm = JOptionPane.showConfirmDialog(
-                            this,
-                            "Are you sure you want to delete this account?\n\n" +
-                            "Account Details:\n" +
-                            "Name: " + name + "\n" +
-                            "Balance: $" + String.format("%.2f", balance) + "\n" +
-                            "Reason: " + reason + "\n\n" +
-                            "This action cannot be undone!",
-                            "Confirm Delete Account",
-                            JOptionPane.YES_NO_OPTION
-                        );
-
-        if (confirm == JOptionPane.YES_OPTION) {
-                            // Delete related records first
-                            String deleteTransactionsSql = "DELETE FROM transactions WHERE account_number = ?";
-                            String deleteLoansSql = "DELETE FROM loans WHERE account_number = ?";
-                            String deleteAccountSql = "DELETE FROM accounts WHERE account_number = ?";
-
-                            try (PreparedStatement deleteTransStmt = conn.prepareStatement(deleteTransactionsSql);
-                                 PreparedStatement deleteLoansStmt = conn.prepareStatement(deleteLoansSql);
-                                 PreparedStatement deleteAccountStmt = conn.prepareStatement(deleteAccountSql)) {
-                                
-                                deleteTransStmt.setString(1, accountNumber);
-                                deleteTransStmt.executeUpdate();
-
-                                deleteLoansStmt.setString(1, accountNumber);
-                                deleteLoansStmt.executeUpdate();
-
-                                deleteAccountStmt.setString(1, accountNumber);
-                                deleteAccountStmt.executeUpdate();
-
-                                conn.commit();
-                                showMessage("Account deleted successfully!");
-                                updateAdminDashboard(); // Update the dashboard to reflect the deleted account's balance
-                                deleteDialog.dispose();
-                            }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
                         }
-                } else {
-                    showMessage("Account not found.");
-                }
+                        return new Object[]{rs.getString("name"), rs.getLong("balance_cents")};
+                    }
                 }
-            } catch (SQLException ex) {
-                try {
-                    conn.rollback();
-                    showMessage("Error deleting account: " + ex.getMessage());
-                } catch (SQLException rollbackEx) {
-                    showMessage("Error rolling back transaction: " + rollbackEx.getMessage());
+            }, account -> {
+                if (account == null) {
+                    showMessage("Account not found.");
+                    return;
                 }
-            } finally {
-                try {
-                    conn.setAutoCommit(true);
-                } catch (SQLException autoCommitEx) {
-                    showMessage("Error resetting auto-commit: " + autoCommitEx.getMessage());
+
+                // Confirm deletion
+                int confirm = JOptionPane.showConfirmDialog(
+                    this,
+                    "Are you sure you want to delete this account?\n\n" +
+                    "Account Details:\n" +
+                    "Name: " + account[0] + "\n" +
+                    "Balance: $" + Money.format((Long) account[1]) + "\n" +
+                    "Reason: " + reason + "\n\n" +
+                    "This action cannot be undone!",
+                    "Confirm Delete Account",
+                    JOptionPane.YES_NO_OPTION
+                );
+
+                if (confirm == JOptionPane.YES_OPTION) {
+                    AsyncRunner.submit(() -> {
+                        deleteAccountRecords(accountNumber);
+                        return accountNumber;
+                    }, deleted -> {
+                        showMessage("Account deleted successfully!");
+                        updateAdminDashboard(); // Update the dashboard to reflect the deleted account's balance
+                        deleteDialog.dispose();
+                    }, ex -> showMessage("Error deleting account: " + ex.getMessage()));
                 }
-            }
+            }, ex -> showMessage("Error deleting account: " + ex.getMessage()));
         });
 
         // Close button action
@@ -1776,85 +1531,180 @@ public class BankManagementSystem extends JFrame {
         deleteDialog.setVisible(true);
     }
 
-    private void logTransaction(String accountNumber, String type, double amount) throws SQLException {
-        String sql = "INSERT INTO transactions (account_number, type, amount) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Runs off the EDT: the details shown by the block and delete dialogs, or null if there is no such account
+    private String loadAccountDetails(String accountNumber) throws SQLException {
+        String sql = "SELECT name, balance_cents, is_blocked, date_of_birth, address, phone_number FROM accounts WHERE account_number = ?";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                StringBuilder details = new StringBuilder();
+                details.append("Name: ").append(rs.getString("name")).append("\n");
+                details.append("Balance: $").append(Money.format(rs.getLong("balance_cents"))).append("\n");
+                details.append("Status: ").append(rs.getBoolean("is_blocked") ? "BLOCKED" : "ACTIVE").append("\n");
+                details.append("Date of Birth: ").append(rs.getString("date_of_birth")).append("\n");
+                details.append("Address: ").append(rs.getString("address")).append("\n");
+                details.append("Phone: ").append(rs.getString("phone_number")).append("\n");
+                return details.toString();
+            }
+        }
+    }
+
+    // Runs off the EDT: the account's blocked flag, or null if there is no such account
+    private Boolean loadBlockedStatus(String accountNumber) throws SQLException {
+        String checkSql = "SELECT is_blocked FROM accounts WHERE account_number = ?";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(checkSql);
             pstmt.setString(1, accountNumber);
-            pstmt.setString(2, type);
-            pstmt.setDouble(3, amount);
-            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getBoolean("is_blocked") : null;
+            }
         }
     }
 
-    private String generateAccountNumber() {
-        return UUID.randomUUID().toString().replace("-", "").substring(0, 10); // Generates a 10-character unique ID
+    // Runs off the EDT
+    private int setBlocked(String accountNumber, boolean blocked) throws SQLException {
+        String updateSql = "UPDATE accounts SET is_blocked = ?, version = version + 1 WHERE account_number = ?";
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement updateStmt = pc.prepare(updateSql);
+            updateStmt.setBoolean(1, blocked);
+            updateStmt.setString(2, accountNumber);
+            int rows = updateStmt.executeUpdate();
+            if (blocked) {
+                sessions.closeAccount(accountNumber); // Signed-in sessions end with the block
+            }
+            return rows;
+        } finally {
+            ledgerService.getAccountCache().invalidate(accountNumber);
+        }
     }
 
-    private String hashPassword(String password) {
+    // Runs off the EDT: delete the account and its related records in one transaction
+    private void deleteAccountRecords(String accountNumber) throws SQLException {
+        String deleteTransactionsSql = "DELETE FROM transactions WHERE account_number = ?";
+        String deleteLoansSql = "DELETE FROM loans WHERE account_number = ?";
+        String deleteAccountSql = "DELETE FROM accounts WHERE account_number = ?";
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashedBytes = md.digest(password.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashedBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing password", e);
+            // Pending in-memory operations on the account reach the tables before it goes
+            ledgerService.runExclusive(accountNumber, () -> {
+                try (PooledConnection pc = pool.borrow()) {
+                    pc.begin();
+                    for (String sql : new String[]{deleteTransactionsSql, deleteLoansSql, deleteAccountSql}) {
+                        PreparedStatement pstmt = pc.prepare(sql);
+                        pstmt.setString(1, accountNumber);
+                        pstmt.executeUpdate();
+                    }
+                    pc.commit();
+                }
+                return null;
+            });
+            sessions.closeAccount(accountNumber);
+        } finally {
+            ledgerService.getAccountCache().invalidate(accountNumber);
         }
     }
 
-    private void showMessage(String message) {
-        outputArea.setText(message);
+    // Day, month and year spinners for one date, today's to begin with
+    private static JSpinner[] dateSpinners() {
+        JSpinner[] spinners = {
+                new JSpinner(new SpinnerNumberModel(1, 1, 31, 1)),
+                new JSpinner(new SpinnerNumberModel(1, 1, 12, 1)),
+                new JSpinner(new SpinnerNumberModel(2024, 2000, 2100, 1))};
+        for (JSpinner spinner : spinners) {
+            spinner.setFont(new Font("Consolas", Font.BOLD, 14));
+        }
+        setDateSpinners(spinners, java.time.LocalDate.now(java.time.ZoneOffset.UTC));
+        return spinners;
+    }
+
+    private static JPanel datePanel(JSpinner[] spinners) {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel.add(spinners[0]);
+        panel.add(new JLabel("/"));
+        panel.add(spinners[1]);
+        panel.add(new JLabel("/"));
+        panel.add(spinners[2]);
+        return panel;
+    }
+
+    private static void setDateSpinners(JSpinner[] spinners, java.time.LocalDate date) {
+        spinners[0].setValue(date.getDayOfMonth());
+        spinners[1].setValue(date.getMonthValue());
+        spinners[2].setValue(date.getYear());
     }
 
-    private void createTables() throws SQLException {
-        String createAccountsTable = "CREATE TABLE IF NOT EXISTS accounts (" +
-                "account_number TEXT PRIMARY KEY, " +
-                "name TEXT NOT NULL, " +
-                "password TEXT NOT NULL, " +
-                "balance REAL DEFAULT 0.0, " +
-                "is_blocked BOOLEAN DEFAULT FALSE, " +
-                "date_of_birth TEXT, " +
-                "address TEXT, " +
-                "nationality TEXT, " +
-                "nid_number TEXT, " +
-                "phone_number TEXT);";
-
-        String createTransactionsTable = "CREATE TABLE IF NOT EXISTS transactions (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "account_number TEXT, " +
-                "type TEXT, " +
-                "amount REAL, " +
-                "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (account_number) REFERENCES accounts(account_number));";
-
-        String createAdminsTable = "CREATE TABLE IF NOT EXISTS admins (" +
-                "account_number TEXT PRIMARY KEY, " +
-                "password TEXT NOT NULL);";
-
-        String createLoansTable = "CREATE TABLE IF NOT EXISTS loans (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "account_number TEXT, " +
-                "loan_amount REAL, " +
-                "remaining_amount REAL, " +
-                "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (account_number) REFERENCES accounts(account_number));";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(createAccountsTable)) {
-            pstmt.execute();
+    // Throws DateTimeException for days the month doesn't have
+    private static java.time.LocalDate spinnerDate(JSpinner[] spinners) {
+        return java.time.LocalDate.of((Integer) spinners[2].getValue(), (Integer) spinners[1].getValue(),
+                (Integer) spinners[0].getValue());
+    }
+
+    private static String formatAccountSearch(AccountService.AccountSearchPage page) {
+        StringBuilder text = new StringBuilder();
+        if (page.getAccounts().isEmpty()) {
+            return page.getOffset() == 0 ? "No matching accounts." : "No more matching accounts.";
         }
-        try (PreparedStatement pstmt = conn.prepareStatement(createTransactionsTable)) {
-            pstmt.execute();
+        text.append("Search Results ").append(page.getOffset() + 1).append("-")
+                .append(page.getOffset() + page.getAccounts().size()).append(":\n\n");
+        for (AccountService.AccountSummary account : page.getAccounts()) {
+            text.append("Account Number: ").append(account.getAccountNumber()).append("\n")
+                    .append("Name: ").append(account.getName()).append("\n")
+                    .append("Date of Birth: ").append(account.getDateOfBirth()).append("\n")
+                    .append("Address: ").append(account.getAddress()).append("\n")
+                    .append("Nationality: ").append(account.getNationality()).append("\n")
+                    .append("NID Number: ").append(account.getNidNumber()).append("\n")
+                    .append("Phone Number: ").append(account.getPhoneNumber()).append("\n")
+                    .append("Balance: $").append(Money.format(account.getBalance())).append("\n")
+                    .append("Status: ").append(account.isBlocked() ? "BLOCKED" : "ACTIVE").append("\n\n");
         }
-        try (PreparedStatement pstmt = conn.prepareStatement(createAdminsTable)) {
-            pstmt.execute();
+        if (page.isTruncated()) {
+            text.append("Only the best ").append(AccountService.SEARCH_CANDIDATES)
+                    .append(" matches are listed; narrow the search to find others.\n");
         }
-        try (PreparedStatement pstmt = conn.prepareStatement(createLoansTable)) {
-            pstmt.execute();
+        return text.toString();
+    }
+
+    // Runs off the EDT: execute a query and format every row into one block of text
+    private String queryAsText(String sql, java.util.List<Object> params, String header, RowFormatter formatter) throws SQLException {
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            StringBuilder text = new StringBuilder(header);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    formatter.append(rs, text);
+                }
+            }
+            return text.toString();
         }
     }
 
+    // Stop a dialog's pending background query when the dialog goes away. The
+    // title bar's close button only hides a dialog, so that is caught as well as
+    // dispose().
+    private void cancelOnClose(JDialog dialog, AsyncRunner runner) {
+        dialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                runner.cancel();
+            }
+
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                runner.cancel();
+            }
+        });
+    }
+
+    private void showMessage(String message) {
+        outputArea.setText(message);
+    }
+
     private JButton createStyledButton(String text, Color color) {
         JButton button = new JButton(text);
         button.setFont(new Font("Consolas", Font.BOLD, 16));
@@ -1956,67 +1806,14 @@ public class BankManagementSystem extends JFrame {
                 return;
             }
 
-            try {
-                // First, verify current credentials
-                String hashedCurrentPassword = hashPassword(currentPassword);
-                String checkSql = "SELECT * FROM admins WHERE account_number = ? AND password = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(checkSql)) {
-                    pstmt.setString(1, currentAccount);
-                    pstmt.setString(2, hashedCurrentPassword);
-                    ResultSet rs = pstmt.executeQuery();
-
-                    if (rs.next()) {
-                        // Check if new account number already exists
-                        String checkNewAccountSql = "SELECT * FROM admins WHERE account_number = ?";
-                        try (PreparedStatement checkNewStmt = conn.prepareStatement(checkNewAccountSql)) {
-                            checkNewStmt.setString(1, newAccount);
-                            ResultSet newRs = checkNewStmt.executeQuery();
-                            
-                            if (newRs.next()) {
-                                showMessage("New account number already exists. Please choose a different one.");
-                                return;
-                            }
-                        }
-
-                        // Update admin credentials
-                        String deleteSql = "DELETE FROM admins WHERE account_number = ?";
-                        String insertSql = "INSERT INTO admins (account_number, password) VALUES (?, ?)";
-                        try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
-                             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            
-                            // Start transaction
-                            conn.setAutoCommit(false);
-                            
-                            try {
-                                // Delete old admin
-                                deleteStmt.setString(1, currentAccount);
-                                deleteStmt.executeUpdate();
-                                
-                                // Insert new admin
-                                insertStmt.setString(1, newAccount);
-                                insertStmt.setString(2, hashPassword(newPassword));
-                                insertStmt.executeUpdate();
-                                
-                                // Commit transaction
-                                conn.commit();
-                                showMessage("Admin credentials updated successfully!\nPlease use the new credentials for next login.");
-                                credentialsDialog.dispose();
-                            } catch (SQLException ex) {
-                                // Rollback on error
-                                conn.rollback();
-                                showMessage("Error updating admin credentials: " + ex.getMessage());
-                            } finally {
-                                // Reset auto-commit
-                                conn.setAutoCommit(true);
-                            }
-                        }
-                    } else {
-                        showMessage("Invalid current credentials.");
-                    }
+            AsyncRunner.submit(() -> updateAdminCredentials(currentAccount, currentPassword, newAccount, newPassword), error -> {
+                if (error != null) {
+                    showMessage(error);
+                    return;
                 }
-            } catch (SQLException ex) {
-                showMessage("Error updating admin credentials: " + ex.getMessage());
-            }
+                showMessage("Admin credentials updated successfully!\nPlease use the new credentials for next login.");
+                credentialsDialog.dispose();
+            }, ex -> showMessage("Error updating admin credentials: " + ex.getMessage()));
         });
 
         // Cancel button action
@@ -2027,11 +1824,45 @@ public class BankManagementSystem extends JFrame {
         credentialsDialog.setVisible(true);
     }
 
+    // Runs off the EDT: returns an error message, or null once the credentials are replaced
+    private String updateAdminCredentials(String currentAccount, String currentPassword, String newAccount, String newPassword) throws SQLException {
+        // First, verify current credentials
+        if (!authenticator.adminLogin(currentAccount, currentPassword)) {
+            return "Invalid current credentials.";
+        }
+        String newHash = authenticator.hash(newPassword);
+
+        try (PooledConnection pc = pool.borrow()) {
+            // Check if new account number already exists
+            String checkNewAccountSql = "SELECT 1 FROM admins WHERE account_number = ?";
+            PreparedStatement checkNewStmt = pc.prepare(checkNewAccountSql);
+            checkNewStmt.setString(1, newAccount);
+            try (ResultSet newRs = checkNewStmt.executeQuery()) {
+                if (newRs.next()) {
+                    return "New account number already exists. Please choose a different one.";
+                }
+            }
+
+            // Replace the admin in one transaction; closing the connection rolls back on error
+            pc.begin();
+            PreparedStatement deleteStmt = pc.prepare("DELETE FROM admins WHERE account_number = ?");
+            deleteStmt.setString(1, currentAccount);
+            deleteStmt.executeUpdate();
+
+            PreparedStatement insertStmt = pc.prepare("INSERT INTO admins (account_number, password) VALUES (?, ?)");
+            insertStmt.setString(1, newAccount);
+            insertStmt.setString(2, newHash);
+            insertStmt.executeUpdate();
+            pc.commit();
+            return null;
+        }
+    }
+
     private void viewAllTransactions() {
         // Create a dialog for displaying transactions
         JDialog transactionsDialog = new JDialog(this, "View All Transactions", true);
         transactionsDialog.setLayout(new BorderLayout());
-        transactionsDialog.setSize(500, 650);
+        transactionsDialog.setSize(700, 760);
 
         // Create search panel with padding
         JPanel searchPanel = new JPanel(new GridBagLayout());
@@ -2046,22 +1877,18 @@ public class BankManagementSystem extends JFrame {
         JTextField typeField = new JTextField(20);
         typeField.setFont(new Font("Consolas", Font.BOLD, 14));
 
-        // Date components for Date Search
-        JPanel datePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JSpinner daySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 31, 1));
-        JSpinner monthSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 12, 1));
-        JSpinner yearSpinner = new JSpinner(new SpinnerNumberModel(2024, 2000, 2100, 1));
-        
-        // Set font for spinners
-        daySpinner.setFont(new Font("Consolas", Font.BOLD, 14));
-        monthSpinner.setFont(new Font("Consolas", Font.BOLD, 14));
-        yearSpinner.setFont(new Font("Consolas", Font.BOLD, 14));
-        
-        datePanel.add(daySpinner);
-        datePanel.add(new JLabel("/"));
-        datePanel.add(monthSpinner);
-        datePanel.add(new JLabel("/"));
-        datePanel.add(yearSpinner);
+        // Date range: a preset fills in the From and To days, which can then be edited
+        JComboBox<Object> rangeBox = new JComboBox<>();
+        rangeBox.setFont(new Font("Consolas", Font.BOLD, 14));
+        rangeBox.addItem(ALL_DATES);
+        for (DateRange.Preset preset : DateRange.Preset.values()) {
+            rangeBox.addItem(preset);
+        }
+        rangeBox.addItem(CUSTOM_RANGE);
+        JSpinner[] fromSpinners = dateSpinners();
+        JSpinner[] toSpinners = dateSpinners();
+        JPanel fromPanel = datePanel(fromSpinners);
+        JPanel toPanel = datePanel(toSpinners);
 
         // Add components to search panel with Consolas font
         JLabel accountNumberLabel = new JLabel("Account Number:");
@@ -2078,30 +1905,81 @@ public class BankManagementSystem extends JFrame {
         gbc.gridx = 1; gbc.gridy = 1;
         searchPanel.add(typeField, gbc);
 
-        JLabel dateLabel = new JLabel("Date:");
-        dateLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        JLabel rangeLabel = new JLabel("Dates (UTC):");
+        rangeLabel.setFont(new Font("Consolas", Font.BOLD, 14));
         gbc.gridx = 0; gbc.gridy = 2;
-        searchPanel.add(dateLabel, gbc);
+        searchPanel.add(rangeLabel, gbc);
         gbc.gridx = 1; gbc.gridy = 2;
-        searchPanel.add(datePanel, gbc);
+        searchPanel.add(rangeBox, gbc);
+
+        JLabel fromLabel = new JLabel("From:");
+        fromLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        gbc.gridx = 0; gbc.gridy = 3;
+        searchPanel.add(fromLabel, gbc);
+        gbc.gridx = 1; gbc.gridy = 3;
+        searchPanel.add(fromPanel, gbc);
+
+        JLabel toLabel = new JLabel("To:");
+        toLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        gbc.gridx = 0; gbc.gridy = 4;
+        searchPanel.add(toLabel, gbc);
+        gbc.gridx = 1; gbc.gridy = 4;
+        searchPanel.add(toPanel, gbc);
+
+        // Choosing a preset shows its days; touching a day makes the range custom
+        boolean[] applyingPreset = {false};
+        javax.swing.event.ChangeListener editedDay = e -> {
+            if (!applyingPreset[0]) {
+                rangeBox.setSelectedItem(CUSTOM_RANGE);
+            }
+        };
+        rangeBox.addActionListener(e -> {
+            Object selected = rangeBox.getSelectedItem();
+            if (selected instanceof DateRange.Preset) {
+                DateRange range = ((DateRange.Preset) selected).resolve(java.time.Clock.systemUTC());
+                applyingPreset[0] = true;
+                setDateSpinners(fromSpinners, range.getFrom());
+                setDateSpinners(toSpinners, range.getTo());
+                applyingPreset[0] = false;
+            }
+            boolean dated = selected != ALL_DATES;
+            for (JSpinner spinner : fromSpinners) {
+                spinner.setEnabled(dated);
+            }
+            for (JSpinner spinner : toSpinners) {
+                spinner.setEnabled(dated);
+            }
+        });
+        for (JSpinner spinner : fromSpinners) {
+            spinner.addChangeListener(editedDay);
+        }
+        for (JSpinner spinner : toSpinners) {
+            spinner.addChangeListener(editedDay);
+        }
+        rangeBox.setSelectedItem(ALL_DATES);
 
         // Buttons panel with padding
         JPanel buttonPanel = new JPanel();
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         JButton searchButton = createStyledButton("Search", new Color(0, 120, 215));
         JButton resetButton = createStyledButton("Reset", new Color(220, 20, 60));
+        JButton exportButton = createStyledButton("Export", new Color(0, 150, 136));
         JButton closeButton = createStyledButton("Close", new Color(128, 128, 128));
 
         buttonPanel.add(searchButton);
         buttonPanel.add(resetButton);
+        buttonPanel.add(exportButton);
         buttonPanel.add(closeButton);
 
-        // Create text area for displaying results with padding
-        JTextArea resultArea = new JTextArea();
-        resultArea.setFont(new Font("Consolas", Font.BOLD, 14));
-        resultArea.setEditable(false);
-        resultArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        JScrollPane scrollPane = new JScrollPane(resultArea);
+        // Table for the results; rows are fetched page by page as the user scrolls
+        TransactionTableModel transactionModel = new TransactionTableModel(pool)
+                .onError(ex -> showMessage("Error fetching transactions: " + ex.getMessage()));
+        JTable resultTable = new JTable(transactionModel);
+        resultTable.setFont(new Font("Consolas", Font.BOLD, 14));
+        resultTable.setRowHeight(22);
+        resultTable.getTableHeader().setFont(new Font("Consolas", Font.BOLD, 14));
+        JScrollPane scrollPane = new JScrollPane(resultTable);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         // Add panels to dialog
         transactionsDialog.add(searchPanel, BorderLayout.NORTH);
@@ -2109,87 +1987,47 @@ public class BankManagementSystem extends JFrame {
         transactionsDialog.add(buttonPanel, BorderLayout.SOUTH);
 
         // Function to display all transactions
-        Runnable displayAllTransactions = () -> {
-            try {
-                String sql = "SELECT account_number, type, amount, timestamp FROM transactions ORDER BY timestamp DESC";
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-                ResultSet rs = pstmt.executeQuery();
-                StringBuilder transactions = new StringBuilder("All Transactions:\n\n");
-                while (rs.next()) {
-                    String accountNumber = rs.getString("account_number");
-                    String type = rs.getString("type");
-                    double amount = rs.getDouble("amount");
-                    String timestamp = rs.getString("timestamp");
-                    transactions.append("Account Number: ").append(accountNumber)
-                            .append("\nType: ").append(type)
-                            .append("\nAmount: $").append(String.format("%.2f", amount))
-                            .append("\nTimestamp: ").append(timestamp)
-                            .append("\n\n");
-                }
-                resultArea.setText(transactions.toString());
-            } catch (SQLException e) {
-                resultArea.setText("Error fetching transactions: " + e.getMessage());
-            }
-        };
+        Runnable displayAllTransactions = () -> transactionModel.setFilter("", new java.util.ArrayList<>());
 
         // Search button action
         searchButton.addActionListener(e -> {
-            StringBuilder sql = new StringBuilder("SELECT account_number, type, amount, timestamp FROM transactions WHERE 1=1");
+            java.util.List<String> conditions = new java.util.ArrayList<>();
             java.util.List<Object> params = new java.util.ArrayList<>();
 
             if (!accountNumberField.getText().isEmpty()) {
-                sql.append(" AND account_number LIKE ?");
+                conditions.add("account_number LIKE ?");
                 params.add("%" + accountNumberField.getText() + "%");
             }
             if (!typeField.getText().isEmpty()) {
-                sql.append(" AND type LIKE ?");
+                conditions.add("type LIKE ?");
                 params.add("%" + typeField.getText() + "%");
             }
 
-            // Add date condition
-            String searchDate = String.format("%04d-%02d-%02d", 
-                (Integer)yearSpinner.getValue(),
-                (Integer)monthSpinner.getValue(),
-                (Integer)daySpinner.getValue());
-
-            sql.append(" AND date(timestamp) = date(?)");
-            params.add(searchDate);
-
-            sql.append(" ORDER BY timestamp DESC");
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-                for (int i = 0; i < params.size(); i++) {
-                    pstmt.setObject(i + 1, params.get(i));
-                }
-                ResultSet rs = pstmt.executeQuery();
-                StringBuilder transactions = new StringBuilder("Search Results:\n\n");
-                while (rs.next()) {
-                    String accountNumber = rs.getString("account_number");
-                    String type = rs.getString("type");
-                    double amount = rs.getDouble("amount");
-                    String timestamp = rs.getString("timestamp");
-                    transactions.append("Account Number: ").append(accountNumber)
-                            .append("\nType: ").append(type)
-                            .append("\nAmount: $").append(String.format("%.2f", amount))
-                            .append("\nTimestamp: ").append(timestamp)
-                            .append("\n\n");
+            // The date range becomes bounds on the raw, indexed timestamp
+            DateRange range = null;
+            if (rangeBox.getSelectedItem() != ALL_DATES) {
+                try {
+                    range = DateRange.between(spinnerDate(fromSpinners), spinnerDate(toSpinners));
+                } catch (java.time.DateTimeException | IllegalArgumentException ex) {
+                    showMessage("Invalid date range: " + ex.getMessage());
+                    return;
                 }
-                resultArea.setText(transactions.toString());
-            } catch (SQLException ex) {
-                resultArea.setText("Error searching transactions: " + ex.getMessage());
             }
+
+            transactionModel.setFilter(String.join(" AND ", conditions), params, range);
         });
 
         // Reset button action
         resetButton.addActionListener(e -> {
             accountNumberField.setText("");
             typeField.setText("");
-            daySpinner.setValue(1);
-            monthSpinner.setValue(1);
-            yearSpinner.setValue(2024);
+            rangeBox.setSelectedItem(ALL_DATES);
             displayAllTransactions.run();
         });
 
+        // Export button action; the whole ledger, whatever the search
+        exportButton.addActionListener(e -> exportCsv(transactionsDialog, CsvExporter.Dataset.TRANSACTIONS, "transactions.csv.gz"));
+
         // Close button action
         closeButton.addActionListener(e -> transactionsDialog.dispose());
 
@@ -2201,11 +2039,164 @@ public class BankManagementSystem extends JFrame {
         transactionsDialog.setVisible(true);
     }
 
+    // Export a whole table to a file the admin picks, gzipped if its name ends in
+    // .gz. Runs in the background behind a small progress window whose Stop
+    // button leaves a checkpoint; exporting to the same file again offers to resume.
+    private void exportCsv(JDialog owner, CsvExporter.Dataset dataset, String defaultName) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File(defaultName));
+        if (chooser.showSaveDialog(owner) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path target = chooser.getSelectedFile().toPath();
+        boolean gzip = target.getFileName().toString().endsWith(".gz");
+
+        boolean resume = false;
+        if (java.nio.file.Files.exists(CsvExporter.checkpointPath(target))) {
+            int choice = JOptionPane.showConfirmDialog(
+                owner,
+                "An earlier export to " + target.getFileName() + " did not finish.\nResume it? (No starts over)",
+                "Resume Export",
+                JOptionPane.YES_NO_CANCEL_OPTION
+            );
+            if (choice != JOptionPane.YES_OPTION && choice != JOptionPane.NO_OPTION) {
+                return;
+            }
+            resume = choice == JOptionPane.YES_OPTION;
+        } else if (java.nio.file.Files.exists(target)) {
+            int choice = JOptionPane.showConfirmDialog(owner, target.getFileName() + " already exists. Replace it?",
+                    "Confirm Export", JOptionPane.YES_NO_OPTION);
+            if (choice != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
+
+        // Progress window; Stop, or closing it, ends the export after its current chunk
+        JDialog progressDialog = new JDialog(owner, "Exporting " + target.getFileName(), false);
+        progressDialog.setLayout(new BorderLayout());
+        progressDialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        JLabel progressLabel = new JLabel("Starting...");
+        progressLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        progressLabel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
+        JButton stopButton = createStyledButton("Stop", new Color(220, 20, 60));
+        JPanel stopPanel = new JPanel();
+        stopPanel.add(stopButton);
+        progressDialog.add(progressLabel, BorderLayout.CENTER);
+        progressDialog.add(stopPanel, BorderLayout.SOUTH);
+        progressDialog.setSize(420, 150);
+        progressDialog.setLocationRelativeTo(owner);
+
+        java.util.concurrent.atomic.AtomicBoolean stopped = new java.util.concurrent.atomic.AtomicBoolean();
+        Runnable stop = () -> {
+            stopped.set(true);
+            stopButton.setEnabled(false);
+            progressLabel.setText("Stopping after the current chunk...");
+        };
+        stopButton.addActionListener(e -> stop.run());
+        progressDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                stop.run();
+            }
+        });
+
+        boolean resuming = resume;
+        AsyncRunner.submit(() -> csvExporter.export(dataset, target, gzip, resuming, progress -> {
+            String text = String.format("%,d rows, %,d KB", progress.getRows(), progress.getBytes() / 1024);
+            SwingUtilities.invokeLater(() -> {
+                if (!stopped.get()) {
+                    progressLabel.setText(text);
+                }
+            });
+            return !stopped.get();
+        }), progress -> {
+            progressDialog.dispose();
+            String message = progress.isComplete()
+                    ? String.format("Exported %,d rows to %s", progress.getRows(), target)
+                    : String.format("Export stopped after %,d rows. Export to the same file again to resume.", progress.getRows());
+            JOptionPane.showMessageDialog(owner.isDisplayable() ? owner : this, message, "Export", JOptionPane.INFORMATION_MESSAGE);
+        }, ex -> {
+            progressDialog.dispose();
+            JOptionPane.showMessageDialog(owner.isDisplayable() ? owner : this,
+                    "Export failed: " + ex.getMessage() + "\nExport to the same file again to resume.",
+                    "Export", JOptionPane.ERROR_MESSAGE);
+        });
+        progressDialog.setVisible(true);
+    }
+
+    private void viewAnalytics() {
+        // Create a dialog for the charts
+        JDialog analyticsDialog = new JDialog(this, "Analytics", true);
+        analyticsDialog.setLayout(new BorderLayout());
+        analyticsDialog.setSize(1000, 800);
+
+        // Period picker
+        JPanel rangePanel = new JPanel();
+        rangePanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        JLabel rangeLabel = new JLabel("Period (UTC):");
+        rangeLabel.setFont(new Font("Consolas", Font.BOLD, 14));
+        JComboBox<DateRange.Preset> rangeBox = new JComboBox<>(DateRange.Preset.values());
+        rangeBox.setFont(new Font("Consolas", Font.BOLD, 14));
+        rangeBox.setSelectedItem(DateRange.Preset.LAST_12_MONTHS);
+        JLabel statusLabel = new JLabel(" ");
+        statusLabel.setFont(new Font("Consolas", Font.PLAIN, 14));
+        rangePanel.add(rangeLabel);
+        rangePanel.add(rangeBox);
+        rangePanel.add(statusLabel);
+
+        // Charts; both read pre-aggregated rows only
+        org.jfree.chart.ChartPanel flowPanel = new org.jfree.chart.ChartPanel(null);
+        org.jfree.chart.ChartPanel balancePanel = new org.jfree.chart.ChartPanel(null);
+        JPanel chartsPanel = new JPanel(new GridLayout(2, 1, 10, 10));
+        chartsPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        chartsPanel.add(flowPanel);
+        chartsPanel.add(balancePanel);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        JButton closeButton = createStyledButton("Close", new Color(128, 128, 128));
+        buttonPanel.add(closeButton);
+
+        analyticsDialog.add(rangePanel, BorderLayout.NORTH);
+        analyticsDialog.add(chartsPanel, BorderLayout.CENTER);
+        analyticsDialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        // One point per horizontal pixel at most; reloaded when the period or the width changes
+        AsyncRunner flowLoader = new AsyncRunner().onLoading(loading -> statusLabel.setText(loading ? "Loading..." : " "));
+        cancelOnClose(analyticsDialog, flowLoader);
+        Runnable loadFlows = () -> {
+            DateRange range = ((DateRange.Preset) rangeBox.getSelectedItem()).resolve(java.time.Clock.systemUTC());
+            int width = Math.max(ANALYTICS_MIN_POINTS, flowPanel.getWidth());
+            flowLoader.run(() -> bankAnalytics.flows(range, width),
+                    flows -> flowPanel.setChart(AnalyticsCharts.flowChart(flows)),
+                    ex -> showMessage("Error loading analytics: " + ex.getMessage()));
+        };
+        rangeBox.addActionListener(e -> loadFlows.run());
+        flowPanel.addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentResized(java.awt.event.ComponentEvent e) {
+                loadFlows.run();
+            }
+        });
+        AsyncRunner balanceLoader = new AsyncRunner();
+        cancelOnClose(analyticsDialog, balanceLoader);
+        balanceLoader.run(bankAnalytics::balanceDistribution,
+                bins -> balancePanel.setChart(AnalyticsCharts.balanceChart(bins)),
+                ex -> showMessage("Error loading balance distribution: " + ex.getMessage()));
+
+        // Close button action
+        closeButton.addActionListener(e -> analyticsDialog.dispose());
+
+        // Show the dialog; laying it out sizes the chart and loads the first flows
+        analyticsDialog.setLocationRelativeTo(this);
+        analyticsDialog.setVisible(true);
+    }
+
     private void setInterestRate() {
         // Create a dialog for setting interest rate
         JDialog interestDialog = new JDialog(this, "Set Interest Rate", true);
         interestDialog.setLayout(new BorderLayout());
-        interestDialog.setSize(400, 200);
+        interestDialog.setSize(400, 240);
 
         // Create input panel with padding
         JPanel inputPanel = new JPanel(new GridBagLayout());
@@ -2220,11 +2211,20 @@ public class BankManagementSystem extends JFrame {
         JTextField rateField = new JTextField(10);
         rateField.setFont(new Font("Consolas", Font.BOLD, 14));
 
+        // Progress of the posting run
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setFont(new Font("Consolas", Font.BOLD, 14));
+        progressBar.setStringPainted(true);
+        progressBar.setString("Idle");
+
         // Add components to input panel
         gbc.gridx = 0; gbc.gridy = 0;
         inputPanel.add(rateLabel, gbc);
         gbc.gridx = 1; gbc.gridy = 0;
         inputPanel.add(rateField, gbc);
+        gbc.gridx = 0; gbc.gridy = 1;
+        gbc.gridwidth = 2;
+        inputPanel.add(progressBar, gbc);
 
         // Buttons panel
         JPanel buttonPanel = new JPanel();
@@ -2239,6 +2239,45 @@ public class BankManagementSystem extends JFrame {
         interestDialog.add(inputPanel, BorderLayout.CENTER);
         interestDialog.add(buttonPanel, BorderLayout.SOUTH);
 
+        // The posting runs on a background worker so the dialog stays responsive
+        SwingWorker<?, ?>[] activeWorker = new SwingWorker<?, ?>[1];
+        InterestPostingEngine.InterestRun[] declinedRun = new InterestPostingEngine.InterestRun[1]; // Abandoned by a new posting
+        java.util.function.Consumer<InterestPostingEngine.InterestRun> startPosting = run -> {
+            applyButton.setEnabled(false);
+            rateField.setEnabled(false);
+            progressBar.setString(null);
+            SwingWorker<Boolean, long[]> worker = new SwingWorker<Boolean, long[]>() {
+                @Override
+                protected Boolean doInBackground() throws Exception {
+                    return interestEngine.run(run, (posted, total) -> publish(new long[]{posted, total}));
+                }
+
+                @Override
+                protected void process(java.util.List<long[]> chunks) {
+                    long[] latest = chunks.get(chunks.size() - 1);
+                    progressBar.setValue(latest[1] == 0 ? 100 : (int) (latest[0] * 100 / latest[1]));
+                }
+
+                @Override
+                protected void done() {
+                    activeWorker[0] = null;
+                    try {
+                        if (isCancelled() || !get()) {
+                            showMessage("Interest posting paused. It will resume from where it stopped next time.");
+                        } else {
+                            showMessage("Interest rate of " + run.getRate() + "% applied successfully to all accounts!");
+                        }
+                    } catch (Exception ex) {
+                        showMessage("Error applying interest rate: " + ex.getMessage());
+                    }
+                    updateAdminDashboard(); // Update the dashboard after applying interest
+                    interestDialog.dispose();
+                }
+            };
+            activeWorker[0] = worker;
+            worker.execute();
+        };
+
         // Apply button action
         applyButton.addActionListener(e -> {
             String interestRateText = rateField.getText();
@@ -2257,76 +2296,99 @@ public class BankManagementSystem extends JFrame {
                 }
 
                 // Confirm with admin
+                String abandoned = declinedRun[0] == null ? "" : "\nThe interrupted posting of " + declinedRun[0].getRate() +
+                        "% will be abandoned after " + declinedRun[0].getAccountsPosted() + " of " +
+                        declinedRun[0].getTotalAccounts() + " accounts.";
                 int confirm = JOptionPane.showConfirmDialog(
                     this,
-                    "Are you sure you want to apply " + interestRate + "% interest to all accounts?",
+                    "Are you sure you want to apply " + interestRate + "% interest to all accounts?" + abandoned,
                     "Confirm Interest Application",
                     JOptionPane.YES_NO_OPTION
                 );
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    try {
-                        // Start transaction
-                        conn.setAutoCommit(false);
-                        
-                        // Get all accounts
-                        String selectSql = "SELECT account_number, balance FROM accounts";
-                        try (PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-                            ResultSet rs = selectStmt.executeQuery();
-
-                            // Update each account and log the interest
-                            String updateSql = "UPDATE accounts SET balance = balance * (1 + ? / 100) WHERE account_number = ?";
-                            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                                while (rs.next()) {
-                                    String accountNumber = rs.getString("account_number");
-                                    double oldBalance = rs.getDouble("balance");
-                                    double interestAmount = oldBalance * (interestRate / 100);
-
-                                    // Update balance
-                                    updateStmt.setDouble(1, interestRate);
-                                    updateStmt.setString(2, accountNumber);
-                                    updateStmt.executeUpdate();
-
-                                    // Log the interest transaction
-                                    logTransaction(accountNumber, "INTEREST", interestAmount);
-                                }
-                            }
-                        }
-
-                        // Commit transaction
-                        conn.commit();
-                        showMessage("Interest rate of " + interestRate + "% applied successfully to all accounts!");
-                        updateAdminDashboard(); // Update the dashboard after applying interest
-                        interestDialog.dispose();
-                    } catch (SQLException sqlEx) {
-                        try {
-                            conn.rollback(); // Rollback on error
-                            showMessage("Error applying interest rate: " + sqlEx.getMessage());
-                        } catch (SQLException rollbackEx) {
-                            showMessage("Error rolling back transaction: " + rollbackEx.getMessage());
-                        }
-                    } finally {
-                        try {
-                            conn.setAutoCommit(true); // Reset auto-commit
-                        } catch (SQLException autoCommitEx) {
-                            showMessage("Error resetting auto-commit: " + autoCommitEx.getMessage());
-                        }
-                    }
+                    applyButton.setEnabled(false);
+                    AsyncRunner.submit(() -> interestEngine.startRun(interestRate), startPosting,
+                            ex -> {
+                                applyButton.setEnabled(true);
+                                showMessage("Error applying interest rate: " + ex.getMessage());
+                            });
                 }
             } catch (NumberFormatException ex) {
                 showMessage("Please enter a valid number for the interest rate.");
             }
         });
 
-        // Cancel button action
-        cancelButton.addActionListener(e -> interestDialog.dispose());
+        // Cancel button action; a running posting stops after its current chunk
+        cancelButton.addActionListener(e -> {
+            if (activeWorker[0] != null) {
+                activeWorker[0].cancel(true);
+            } else {
+                interestDialog.dispose();
+            }
+        });
+
+        // Offer to finish a posting that was interrupted earlier
+        AsyncRunner.submit(interestEngine::findUnfinishedRun, unfinished -> {
+            if (unfinished != null && activeWorker[0] == null) {
+                int resume = JOptionPane.showConfirmDialog(
+                    this,
+                    "A posting of " + unfinished.getRate() + "% interest stopped after " + unfinished.getAccountsPosted() +
+                    " of " + unfinished.getTotalAccounts() + " accounts.\nResume it now?",
+                    "Resume Interest Posting",
+                    JOptionPane.YES_NO_OPTION
+                );
+                if (resume == JOptionPane.YES_OPTION) {
+                    rateField.setText(String.valueOf(unfinished.getRate()));
+                    startPosting.accept(unfinished);
+                } else {
+                    declinedRun[0] = unfinished;
+                }
+            }
+        }, ex -> showMessage("Error checking for unfinished interest postings: " + ex.getMessage()));
 
         // Show the dialog
         interestDialog.setLocationRelativeTo(this);
         interestDialog.setVisible(true);
     }
 
-    public static void main(String[] args) {
+    // Appends one result row to a text listing
+    private interface RowFormatter {
+        void append(ResultSet rs, StringBuilder out) throws SQLException;
+    }
+
+    // What the user dashboard shows, loaded off the EDT in one go
+    static final class UserDashboard {
+        long balance; // Cents
+        long totalLoans; // Cents
+        String activity = "";
+    }
+
+    static final class AdminDashboard {
+        BankAggregates.Totals totals;
+        String activity = "";
+    }
+
+    // Everything the window works with, built off the EDT at startup
+    static final class Services {
+        ConnectionPool pool;
+        LedgerService ledgerService;
+        InterestPostingEngine interestEngine;
+        Authenticator authenticator;
+        SessionManager sessions;
+        AccountService accountService;
+        BankAggregates bankAggregates;
+        TransactionRollups transactionRollups;
+        BankAnalytics bankAnalytics;
+        CsvExporter csvExporter;
+    }
+
+    // "--server [port]" serves the HTTP API instead of opening the window
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            BankHttpServer.serve(DB_URL, args.length > 1 ? Integer.parseInt(args[1]) : BankHttpServer.DEFAULT_PORT);
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             BankManagementSystem system = new BankManagementSystem();
             system.setVisible(true);
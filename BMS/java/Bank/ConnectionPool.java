@@ -0,0 +1,148 @@
+package Bank;
+
+import java.sql.*;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded pool of SQLite connections. Each pooled connection keeps its own
+// prepared-statement cache, and a thread is handed back the connection it used
+// last whenever that one is idle, so its cached statements stay warm. Every
+// connection is opened with the pool's StorageProfile pragmas.
+public class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_POOL_SIZE = 8;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
+
+    private final String url;
+    private final StorageProfile profile;
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final ThreadLocal<PooledConnection> lastUsed = new ThreadLocal<>();
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    public ConnectionPool(String url) {
+        this(url, StorageProfile.DEFAULT);
+    }
+
+    public ConnectionPool(String url, StorageProfile profile) {
+        this(url, DEFAULT_POOL_SIZE, DEFAULT_STATEMENT_CACHE_SIZE, profile);
+    }
+
+    public ConnectionPool(String url, int maxSize, int statementCacheSize) {
+        this(url, maxSize, statementCacheSize, StorageProfile.DEFAULT);
+    }
+
+    public ConnectionPool(String url, int maxSize, int statementCacheSize, StorageProfile profile) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.url = url;
+        this.profile = profile;
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    // Open a new connection configured the same way as pooled ones, for callers
+    // that need a dedicated connection outside the pool
+    public Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try {
+            profile.apply(conn);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    public StorageProfile getProfile() {
+        return profile;
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        borrows.increment();
+
+        try {
+            PooledConnection pooled = null;
+            PooledConnection preferred = lastUsed.get();
+            if (preferred != null && idle.remove(preferred)) {
+                pooled = preferred;
+            }
+            if (pooled == null) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(this, openConnection(), statementCacheSize);
+                created.incrementAndGet();
+            }
+            lastUsed.set(pooled);
+            active.incrementAndGet();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled, boolean broken) {
+        active.decrementAndGet();
+        if (broken || closed) {
+            pooled.closeQuietly();
+            created.decrementAndGet();
+        } else {
+            idle.offerFirst(pooled);
+        }
+        permits.release();
+    }
+
+    void recordStatementLookup(boolean hit) {
+        if (hit) {
+            statementHits.increment();
+        } else {
+            statementMisses.increment();
+        }
+    }
+
+    public PoolMetrics metrics() {
+        return new PoolMetrics(maxSize, active.get(), idle.size(), created.get(), borrows.sum(),
+                waitNanos.sum(), statementHits.sum(), statementMisses.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closeQuietly();
+            created.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package Bank;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-account contention counters for the ledger: waits on an account's
+// in-process lock, compare-and-swap conflicts with other writers (other
+// processes, or in-process writers that don't take the account lock), and
+// operations that gave up after the RetryPolicy's last attempt. Only accounts
+// that were actually contended get an entry, and at most MAX_TRACKED_ACCOUNTS
+// of them; contention on further accounts still counts toward the totals.
+public class ContentionMetrics {
+    public static final int MAX_TRACKED_ACCOUNTS = 10000;
+
+    private final ConcurrentHashMap<String, AccountContention> accounts = new ConcurrentHashMap<>();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    void recordLockWait(String accountNumber, long nanos) {
+        lockWaits.increment();
+        lockWaitNanos.add(nanos);
+        AccountContention account = track(accountNumber);
+        if (account != null) {
+            account.lockWaits.increment();
+            account.lockWaitNanos.add(nanos);
+        }
+    }
+
+    void recordConflict(String accountNumber) {
+        conflicts.increment();
+        AccountContention account = track(accountNumber);
+        if (account != null) {
+            account.conflicts.increment();
+        }
+    }
+
+    void recordExhausted(String accountNumber) {
+        exhausted.increment();
+        AccountContention account = track(accountNumber);
+        if (account != null) {
+            account.exhausted.increment();
+        }
+    }
+
+    private AccountContention track(String accountNumber) {
+        AccountContention account = accounts.get(accountNumber);
+        if (account == null && accounts.size() < MAX_TRACKED_ACCOUNTS) {
+            account = accounts.computeIfAbsent(accountNumber, AccountContention::new);
+        }
+        return account;
+    }
+
+    public AccountContention get(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    // The most contended accounts, by conflicts and then by time spent waiting
+    public List<AccountContention> hottest(int limit) {
+        List<AccountContention> all = new ArrayList<>(accounts.values());
+        all.sort(Comparator.comparingLong(AccountContention::getConflicts)
+                .thenComparingLong(AccountContention::getLockWaitNanos).reversed());
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    public long getLockWaits() {
+        return lockWaits.sum();
+    }
+
+    public long getLockWaitNanos() {
+        return lockWaitNanos.sum();
+    }
+
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    public void reset() {
+        accounts.clear();
+        lockWaits.reset();
+        lockWaitNanos.reset();
+        conflicts.reset();
+        exhausted.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lockWaits=%d (%.1fms) conflicts=%d exhausted=%d contendedAccounts=%d",
+                getLockWaits(), getLockWaitNanos() / 1e6, getConflicts(), getExhausted(), accounts.size());
+    }
+
+    public static final class AccountContention {
+        private final String accountNumber;
+        private final LongAdder lockWaits = new LongAdder();
+        private final LongAdder lockWaitNanos = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        AccountContention(String accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+
+        public long getLockWaits() {
+            return lockWaits.sum();
+        }
+
+        public long getLockWaitNanos() {
+            return lockWaitNanos.sum();
+        }
+
+        public long getConflicts() {
+            return conflicts.sum();
+        }
+
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s lockWaits=%d (%.1fms) conflicts=%d exhausted=%d",
+                    accountNumber, getLockWaits(), getLockWaitNanos() / 1e6, getConflicts(), getExhausted());
+        }
+    }
+}
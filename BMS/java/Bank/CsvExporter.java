@@ -0,0 +1,421 @@
+package Bank;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.Properties;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+// Streams the ledger or the accounts table to an RFC 4180 CSV file, optionally
+// gzipped, in constant memory however many rows there are. Rows are read in
+// keyset chunks, each a forward-only cursor of its own, so no read transaction
+// stays open for the whole export and WAL checkpoints carry on meanwhile. They
+// are encoded straight into one buffer that is drained to a FileChannel.
+//
+// After every chunk the file is forced and a checkpoint beside it records the
+// last key and the file length; an export run again with resume truncates the
+// file to that length and carries on from the key. A gzipped export closes a
+// gzip member at every checkpoint, which gunzip and GZIPInputStream read as one
+// stream. The ledger is exported up to the last row that existed when the
+// export started; accounts are read as they are when each chunk is.
+public class CsvExporter {
+    public static final int DEFAULT_CHUNK_ROWS = 100000; // Rows per query and per checkpoint
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    public enum Dataset {
+        TRANSACTIONS("id,account_number,type,amount,timestamp",
+                "SELECT id, account_number, type, amount_cents, timestamp FROM transactions " +
+                        "WHERE id > ? AND id <= ? ORDER BY id LIMIT ?") {
+            @Override
+            String writeRow(ResultSet rs, CsvBuffer out) throws SQLException, IOException {
+                long id = rs.getLong(1);
+                out.number(id);
+                out.text(rs.getString(2));
+                out.text(rs.getString(3));
+                out.money(rs.getLong(4));
+                out.text(rs.getString(5));
+                out.endRow();
+                return Long.toString(id);
+            }
+
+            @Override
+            void bind(PreparedStatement pstmt, String lastKey, String upTo, int limit) throws SQLException {
+                pstmt.setLong(1, lastKey == null ? 0 : Long.parseLong(lastKey));
+                pstmt.setLong(2, Long.parseLong(upTo));
+                pstmt.setInt(3, limit);
+            }
+
+            @Override
+            String upperBound(PooledConnection pc) throws SQLException {
+                try (ResultSet rs = pc.prepare("SELECT COALESCE(MAX(id), 0) FROM transactions").executeQuery()) {
+                    rs.next();
+                    return Long.toString(rs.getLong(1));
+                }
+            }
+        },
+
+        // Everything but the password hash
+        ACCOUNTS("account_number,name,balance,is_blocked,date_of_birth,address,nationality,nid_number,phone_number",
+                "SELECT account_number, name, balance_cents, is_blocked, date_of_birth, address, nationality, nid_number, phone_number " +
+                        "FROM accounts WHERE account_number > ? ORDER BY account_number LIMIT ?") {
+            @Override
+            String writeRow(ResultSet rs, CsvBuffer out) throws SQLException, IOException {
+                String accountNumber = rs.getString(1);
+                out.text(accountNumber);
+                out.text(rs.getString(2));
+                out.money(rs.getLong(3));
+                out.number(rs.getBoolean(4) ? 1 : 0);
+                for (int column = 5; column <= 9; column++) {
+                    out.text(rs.getString(column));
+                }
+                out.endRow();
+                return accountNumber;
+            }
+
+            @Override
+            void bind(PreparedStatement pstmt, String lastKey, String upTo, int limit) throws SQLException {
+                pstmt.setString(1, lastKey == null ? "" : lastKey);
+                pstmt.setInt(2, limit);
+            }
+
+            @Override
+            String upperBound(PooledConnection pc) {
+                return "";
+            }
+        };
+
+        private final String header;
+        private final String chunkSql;
+
+        Dataset(String header, String chunkSql) {
+            this.header = header;
+            this.chunkSql = chunkSql;
+        }
+
+        // Write the current row and return its key
+        abstract String writeRow(ResultSet rs, CsvBuffer out) throws SQLException, IOException;
+
+        abstract void bind(PreparedStatement pstmt, String lastKey, String upTo, int limit) throws SQLException;
+
+        abstract String upperBound(PooledConnection pc) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final int chunkRows;
+    private final int fetchSize;
+
+    public CsvExporter(ConnectionPool pool) {
+        this(pool, DEFAULT_CHUNK_ROWS, DEFAULT_FETCH_SIZE);
+    }
+
+    public CsvExporter(ConnectionPool pool, int chunkRows, int fetchSize) {
+        this.pool = pool;
+        this.chunkRows = chunkRows;
+        this.fetchSize = fetchSize;
+    }
+
+    public static Path checkpointPath(Path target) {
+        return target.resolveSibling(target.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    // Export the dataset to target, reporting progress after every chunk; the
+    // listener returns false to stop there, leaving a checkpoint. With resume, a
+    // checkpoint left by a stopped or failed export of the same dataset and
+    // compression is continued; otherwise target is overwritten. (Interrupting
+    // the thread instead would close the channel mid-write.)
+    public Progress export(Dataset dataset, Path target, boolean gzip, boolean resume, Predicate<Progress> listener)
+            throws SQLException, IOException {
+        Path checkpointFile = checkpointPath(target);
+        Properties checkpoint = resume ? readCheckpoint(checkpointFile, dataset, gzip) : null;
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            String lastKey;
+            String upTo;
+            long rows;
+            if (checkpoint != null) {
+                lastKey = checkpoint.getProperty("lastKey");
+                upTo = checkpoint.getProperty("upTo");
+                rows = Long.parseLong(checkpoint.getProperty("rows"));
+                long bytes = Long.parseLong(checkpoint.getProperty("bytes"));
+                if (channel.size() < bytes) {
+                    throw new IOException(target + " is shorter than its checkpoint; export it again without resuming");
+                }
+                channel.truncate(bytes); // Drop whatever was written after the checkpoint
+                channel.position(bytes);
+            } else {
+                channel.truncate(0);
+                lastKey = null;
+                rows = 0;
+                try (PooledConnection pc = pool.borrow()) {
+                    upTo = dataset.upperBound(pc);
+                }
+            }
+
+            CsvBuffer out = new CsvBuffer(channel, gzip);
+            if (checkpoint == null) {
+                out.raw(dataset.header);
+                out.endRow();
+            }
+            while (true) {
+                int chunk = 0;
+                try (PooledConnection pc = pool.borrow()) {
+                    PreparedStatement pstmt = pc.prepare(dataset.chunkSql);
+                    pstmt.setFetchSize(fetchSize);
+                    dataset.bind(pstmt, lastKey, upTo, chunkRows);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            lastKey = dataset.writeRow(rs, out);
+                            chunk++;
+                        }
+                    }
+                }
+                rows += chunk;
+                boolean complete = chunk < chunkRows;
+                out.endSegment();
+                channel.force(false); // The checkpoint must never point past what is on disk
+                Progress progress = new Progress(rows, channel.position(), complete);
+                if (complete) {
+                    Files.deleteIfExists(checkpointFile);
+                } else {
+                    writeCheckpoint(checkpointFile, dataset, gzip, lastKey, upTo, progress);
+                }
+                if (complete || (listener != null && !listener.test(progress))) {
+                    return progress;
+                }
+            }
+        }
+    }
+
+    private static Properties readCheckpoint(Path file, Dataset dataset, boolean gzip) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            checkpoint.load(in);
+        }
+        if (!dataset.name().equals(checkpoint.getProperty("dataset"))
+                || gzip != Boolean.parseBoolean(checkpoint.getProperty("gzip"))) {
+            throw new IOException("The checkpoint in " + file + " is for a " + checkpoint.getProperty("dataset")
+                    + (Boolean.parseBoolean(checkpoint.getProperty("gzip")) ? " gzip" : "") + " export");
+        }
+        return checkpoint;
+    }
+
+    // Written beside the export and renamed into place, so it is never half-written
+    private static void writeCheckpoint(Path file, Dataset dataset, boolean gzip, String lastKey, String upTo,
+                                        Progress progress) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("dataset", dataset.name());
+        checkpoint.setProperty("gzip", Boolean.toString(gzip));
+        checkpoint.setProperty("lastKey", lastKey);
+        checkpoint.setProperty("upTo", upTo);
+        checkpoint.setProperty("rows", Long.toString(progress.getRows()));
+        checkpoint.setProperty("bytes", Long.toString(progress.getBytes()));
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (OutputStream out = Files.newOutputStream(partial)) {
+            checkpoint.store(out, "CsvExporter checkpoint");
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Encodes CSV fields into one reusable buffer and drains it to the channel,
+    // through a gzip member when compressing
+    static final class CsvBuffer {
+        private final FileChannel channel;
+        private final boolean gzip;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final OutputStream channelStream;
+        private GZIPOutputStream member;
+        private boolean rowStarted;
+
+        CsvBuffer(FileChannel channel, boolean gzip) {
+            this.channel = channel;
+            this.gzip = gzip;
+            // Closing a gzip member must not close the channel under it
+            this.channelStream = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+
+        void text(String value) throws IOException {
+            separate();
+            if (value == null) {
+                return;
+            }
+            int length = value.length();
+            boolean plain = true;
+            for (int i = 0; i < length && plain; i++) {
+                char c = value.charAt(i);
+                plain = c >= 0x20 && c < 0x80 && c != ',' && c != '"';
+            }
+            if (plain) {
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) value.charAt(i));
+                }
+            } else {
+                boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                        || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+                String field = quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+                put(field.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void number(long value) throws IOException {
+            separate();
+            digits(value);
+        }
+
+        // Cents as a decimal amount, "-12.05"
+        void money(long cents) throws IOException {
+            separate();
+            ensure(22);
+            if (cents < 0) {
+                buffer.put((byte) '-');
+            }
+            long magnitude = Math.abs(cents);
+            digits(magnitude / Money.CENTS_PER_UNIT);
+            long fraction = magnitude % Money.CENTS_PER_UNIT;
+            buffer.put((byte) '.');
+            buffer.put((byte) ('0' + fraction / 10));
+            buffer.put((byte) ('0' + fraction % 10));
+        }
+
+        // Unquoted ASCII, for the header
+        void raw(String ascii) throws IOException {
+            put(ascii.getBytes(StandardCharsets.US_ASCII));
+            rowStarted = true;
+        }
+
+        void endRow() throws IOException {
+            ensure(2);
+            buffer.put((byte) '\r').put((byte) '\n');
+            rowStarted = false;
+        }
+
+        // Write out everything buffered and, when compressing, close the gzip member
+        void endSegment() throws IOException {
+            drain();
+            if (member != null) {
+                member.close();
+                member = null;
+            }
+        }
+
+        private void separate() throws IOException {
+            if (rowStarted) {
+                ensure(1);
+                buffer.put((byte) ',');
+            }
+            rowStarted = true;
+        }
+
+        private void digits(long value) throws IOException {
+            ensure(20);
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value; // Long.MIN_VALUE never reaches here: ids and cents are far smaller
+            }
+            if (value == 0) {
+                buffer.put((byte) '0');
+                return;
+            }
+            int start = buffer.position();
+            while (value > 0) {
+                buffer.put((byte) ('0' + value % 10));
+                value /= 10;
+            }
+            for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+                byte swap = buffer.get(i);
+                buffer.put(i, buffer.get(j));
+                buffer.put(j, swap);
+            }
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            if (gzip) {
+                if (member == null) {
+                    member = new GZIPOutputStream(channelStream, 1 << 16);
+                }
+                member.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    public static final class Progress {
+        private final long rows;
+        private final long bytes;
+        private final boolean complete;
+
+        Progress(long rows, long bytes, boolean complete) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.complete = complete;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        // Written to the file so far, after compression
+        public long getBytes() {
+            return bytes;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows, " + bytes + " bytes" + (complete ? "" : " (incomplete)");
+        }
+    }
+}
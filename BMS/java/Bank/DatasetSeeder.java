@@ -0,0 +1,170 @@
+package Bank;
+
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+// Fills a bank database with synthetic accounts, ledger rows and loans shaped
+// like production data, for sizing and load tests. The same seed always produces
+// the same data. Distributions:
+//   - balances and transaction amounts are log-normal (most are small, a few large)
+//   - activity is skewed: account index = accounts * u^ACTIVITY_SKEW puts most
+//     ledger rows on a small share of accounts
+//   - ledger rows are spread over the last N days in time order
+//   - loans go to random accounts with a random share already repaid
+public class DatasetSeeder {
+    public static final String DEFAULT_PASSWORD = "password";
+
+    private static final int COMMIT_EVERY = 100000;
+    private static final double ACTIVITY_SKEW = 3.0;
+    private static final long MEDIAN_BALANCE = 2500 * Money.CENTS_PER_UNIT;
+    private static final long MEDIAN_AMOUNT = 80 * Money.CENTS_PER_UNIT;
+    private static final long MIN_LOAN = 100 * Money.CENTS_PER_UNIT;
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER_IN", "TRANSFER_OUT", "LOAN", "LOAN_REPAYMENT", "INTEREST"};
+    private static final int[] TYPE_WEIGHTS = {35, 30, 10, 10, 3, 7, 5};
+    private static final String[] FIRST_NAMES = {"Amina", "Rahim", "Karim", "Nadia", "Farhan", "Sadia", "Tanvir", "Mitu", "Jamal", "Rupa", "Imran", "Lina"};
+    private static final String[] LAST_NAMES = {"Hossain", "Rahman", "Ahmed", "Khan", "Chowdhury", "Islam", "Akter", "Sarker", "Das", "Roy"};
+    private static final String[] CITIES = {"Dhaka", "Chattogram", "Khulna", "Rajshahi", "Sylhet", "Barishal"};
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final int accounts;
+    private final long transactions;
+    private final int loans;
+    private final int days;
+    private final long seed;
+    private final String passwordHash;
+
+    public DatasetSeeder(int accounts, long transactions, int loans, int days, long seed, String password) {
+        if (accounts <= 0) {
+            throw new IllegalArgumentException("At least one account is needed");
+        }
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.loans = loans;
+        this.days = days;
+        this.seed = seed;
+        this.passwordHash = new Pbkdf2PasswordKdf().hash(password, ByteBuffer.allocate(16).putLong(seed).array()); // Shared by every seeded account
+    }
+
+    // Ten hex digits like the app's own account numbers. Multiplying by an odd
+    // constant is a bijection modulo 2^40, so every index gets a distinct number.
+    public String accountNumber(int index) {
+        long mixed = ((index + seed * 0x9E3779B1L) * 0xD6E8FEB86659FD93L) & 0xFFFFFFFFFFL;
+        return String.format("%010x", mixed);
+    }
+
+    public void seed(Connection conn) throws SQLException {
+        new SchemaMigrator().migrate(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement stmt = conn.createStatement()) {
+            // A half-written seed is simply rerun, so skip the per-commit fsync
+            stmt.execute("PRAGMA synchronous = OFF");
+        }
+        conn.setAutoCommit(false);
+        try {
+            Random random = new Random(seed);
+            seedAccounts(conn, random);
+            seedLoans(conn, random);
+            seedTransactions(conn, random);
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    private void seedAccounts(Connection conn, Random random) throws SQLException {
+        String sql = "INSERT OR IGNORE INTO accounts (account_number, name, password, balance_cents, date_of_birth, address, nationality, nid_number, phone_number) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        LocalDate oldest = LocalDate.of(1950, 1, 1);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < accounts; i++) {
+                pstmt.setString(1, accountNumber(i));
+                pstmt.setString(2, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+                pstmt.setString(3, passwordHash);
+                pstmt.setLong(4, logNormal(random, MEDIAN_BALANCE, 1.2));
+                pstmt.setString(5, oldest.plusDays(random.nextInt(55 * 365)).toString());
+                pstmt.setString(6, (1 + random.nextInt(200)) + " Road " + (1 + random.nextInt(40)) + ", " + CITIES[random.nextInt(CITIES.length)]);
+                pstmt.setString(7, "Bangladeshi");
+                pstmt.setString(8, String.format("%010d", (long) (random.nextDouble() * 1e10)));
+                pstmt.setString(9, String.format("01%09d", random.nextInt(1000000000)));
+                pstmt.addBatch();
+                if ((i + 1) % COMMIT_EVERY == 0) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                }
+            }
+            pstmt.executeBatch();
+        }
+        System.out.println("Seeded " + accounts + " accounts");
+    }
+
+    private void seedLoans(Connection conn, Random random) throws SQLException {
+        String sql = "INSERT INTO loans (account_number, loan_amount_cents, remaining_cents, timestamp) VALUES (?, ?, ?, ?)";
+        LocalDateTime start = LocalDateTime.now(ZoneOffset.UTC).minusDays(days); // UTC, like CURRENT_TIMESTAMP
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < loans; i++) {
+                // Whole-dollar principal; a random share of it is already repaid
+                long principal = (MIN_LOAN + (long) (random.nextDouble() * (LedgerService.LOAN_LIMIT - MIN_LOAN)))
+                        / Money.CENTS_PER_UNIT * Money.CENTS_PER_UNIT;
+                pstmt.setString(1, accountNumber(random.nextInt(accounts)));
+                pstmt.setLong(2, principal);
+                pstmt.setLong(3, (long) (principal * random.nextDouble()));
+                pstmt.setString(4, start.plusSeconds((long) (random.nextDouble() * days * 86400L)).format(TIMESTAMP));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        conn.commit();
+        System.out.println("Seeded " + loans + " loans");
+    }
+
+    private void seedTransactions(Connection conn, Random random) throws SQLException {
+        String sql = "INSERT INTO transactions (account_number, type, amount_cents, timestamp) VALUES (?, ?, ?, ?)";
+        int totalWeight = 0;
+        for (int weight : TYPE_WEIGHTS) {
+            totalWeight += weight;
+        }
+        LocalDateTime start = LocalDateTime.now(ZoneOffset.UTC).minusDays(days); // UTC, like CURRENT_TIMESTAMP
+        long spanSeconds = days * 86400L;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (long i = 0; i < transactions; i++) {
+                int account = (int) (accounts * Math.pow(random.nextDouble(), ACTIVITY_SKEW));
+                pstmt.setString(1, accountNumber(account));
+                pstmt.setString(2, pickType(random.nextInt(totalWeight)));
+                pstmt.setLong(3, Math.max(1, logNormal(random, MEDIAN_AMOUNT, 1.0)));
+                pstmt.setString(4, start.plusSeconds(i * spanSeconds / Math.max(1, transactions)).format(TIMESTAMP));
+                pstmt.addBatch();
+                if ((i + 1) % COMMIT_EVERY == 0) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                    if ((i + 1) % (10L * COMMIT_EVERY) == 0) {
+                        System.out.println("Seeded " + (i + 1) + " of " + transactions + " transactions");
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+        System.out.println("Seeded " + transactions + " transactions");
+    }
+
+    private static String pickType(int roll) {
+        for (int i = 0; i < TYPES.length; i++) {
+            roll -= TYPE_WEIGHTS[i];
+            if (roll < 0) {
+                return TYPES[i];
+            }
+        }
+        return TYPES[0];
+    }
+
+    private static long logNormal(Random random, long median, double sigma) {
+        return (long) (median * Math.exp(sigma * random.nextGaussian()));
+    }
+}
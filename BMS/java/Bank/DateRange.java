@@ -0,0 +1,114 @@
+package Bank;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// A span of whole days for filtering the ledger, from the first day to the last
+// inclusive. Timestamps are stored as UTC "yyyy-MM-dd HH:mm:ss" text, so the
+// span becomes a half-open comparison on the raw column,
+//
+//     timestamp >= '2024-03-01' AND timestamp < '2024-04-01'
+//
+// which the timestamp indexes answer with a range seek; wrapping the column in
+// date() instead would read every row. Days are UTC days, as they always were.
+public final class DateRange {
+    public static final String CONDITION = "timestamp >= ? AND timestamp < ?";
+
+    public enum Preset {
+        TODAY("Today"),
+        THIS_WEEK("This week"),
+        THIS_MONTH("This month"),
+        LAST_7_DAYS("Last 7 days"),
+        LAST_30_DAYS("Last 30 days"),
+        LAST_12_MONTHS("Last 12 months"),
+        LAST_5_YEARS("Last 5 years");
+
+        private final String label;
+
+        Preset(String label) {
+            this.label = label;
+        }
+
+        public DateRange resolve(LocalDate today) {
+            switch (this) {
+                case TODAY:
+                    return day(today);
+                case THIS_WEEK:
+                    return week(today);
+                case THIS_MONTH:
+                    return month(today);
+                case LAST_7_DAYS:
+                    return between(today.minusDays(6), today);
+                case LAST_30_DAYS:
+                    return between(today.minusDays(29), today);
+                case LAST_12_MONTHS:
+                    return between(today.minusYears(1).plusDays(1), today);
+                default:
+                    return between(today.minusYears(5).plusDays(1), today);
+            }
+        }
+
+        public DateRange resolve(Clock clock) {
+            return resolve(LocalDate.now(clock));
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final LocalDate from;
+    private final LocalDate to; // Inclusive
+
+    private DateRange(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static DateRange between(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The range ends before it starts.");
+        }
+        return new DateRange(from, to);
+    }
+
+    public static DateRange day(LocalDate day) {
+        return new DateRange(day, day);
+    }
+
+    // Monday to Sunday
+    public static DateRange week(LocalDate day) {
+        LocalDate monday = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return new DateRange(monday, monday.plusDays(6));
+    }
+
+    public static DateRange month(LocalDate day) {
+        return new DateRange(day.withDayOfMonth(1), day.with(TemporalAdjusters.lastDayOfMonth()));
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    // Parameters for CONDITION: the first day, and the day after the last. A bare
+    // date sorts before every timestamp on that day.
+    public String getLowerBound() {
+        return from.toString();
+    }
+
+    public String getUpperBound() {
+        return to.plusDays(1).toString();
+    }
+
+    @Override
+    public String toString() {
+        return from.equals(to) ? from.toString() : from + " to " + to;
+    }
+}
@@ -0,0 +1,232 @@
+package Bank;
+
+import java.sql.*;
+
+// Posts interest to every account set-based, one chunk of accounts per transaction.
+// Each chunk logs the INTEREST rows with INSERT ... SELECT, applies the rate with a
+// single UPDATE and advances the run's checkpoint, all in the same commit. A run
+// interrupted by a crash or cancellation is picked up again from its checkpoint,
+// unless a new run is started instead, which abandons it: at most one run is ever
+// RUNNING, and an abandoned run posts nothing more.
+// The rate is applied in basis points with integer arithmetic, rounding each
+// account's interest to the nearest cent, half up; the logged INTEREST row and
+// the balance change use the same expression so they always agree.
+public class InterestPostingEngine {
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private static final String CREATE_RUN_SQL = "INSERT INTO interest_runs (rate, status, last_account, accounts_posted, total_accounts) VALUES (?, 'RUNNING', '', 0, ?)";
+    private static final String ABANDON_RUNS_SQL = "UPDATE interest_runs SET status = 'ABANDONED', finished_at = CURRENT_TIMESTAMP WHERE status = 'RUNNING'";
+    private static final String UNFINISHED_RUN_SQL = "SELECT id, rate, last_account, accounts_posted, total_accounts FROM interest_runs WHERE status = 'RUNNING' ORDER BY id LIMIT 1";
+    private static final String COUNT_ACCOUNTS_SQL = "SELECT COUNT(*) FROM accounts";
+    private static final String CHUNK_END_SQL = "SELECT account_number FROM accounts WHERE account_number > ? ORDER BY account_number LIMIT 1 OFFSET ?";
+    private static final String LAST_ACCOUNT_SQL = "SELECT MAX(account_number) FROM accounts WHERE account_number > ?";
+    private static final String LOG_INTEREST_SQL = "INSERT INTO transactions (account_number, type, amount_cents) " +
+            "SELECT account_number, 'INTEREST', (balance_cents * ? + 5000) / 10000 FROM accounts WHERE account_number > ? AND account_number <= ?";
+    private static final String APPLY_INTEREST_SQL = "UPDATE accounts SET balance_cents = balance_cents + (balance_cents * ? + 5000) / 10000, version = version + 1 " +
+            "WHERE account_number > ? AND account_number <= ?";
+    private static final String ADVANCE_RUN_SQL = "UPDATE interest_runs SET last_account = ?, accounts_posted = accounts_posted + ? WHERE id = ? AND status = 'RUNNING'";
+    private static final String FINISH_RUN_SQL = "UPDATE interest_runs SET status = 'COMPLETED', finished_at = CURRENT_TIMESTAMP WHERE id = ? AND status = 'RUNNING'";
+
+    public interface ProgressListener {
+        void onProgress(long accountsPosted, long totalAccounts);
+    }
+
+    private final ConnectionPool pool;
+    private final int chunkSize;
+    private final AccountStateCache accountCache; // May be null; cleared after every chunk
+    private final LedgerService ledger; // May be null; each chunk runs through its runExclusive
+
+    public InterestPostingEngine(ConnectionPool pool, AccountStateCache accountCache) {
+        this(pool, DEFAULT_CHUNK_SIZE, accountCache);
+    }
+
+    public InterestPostingEngine(ConnectionPool pool, int chunkSize, AccountStateCache accountCache) {
+        this(pool, chunkSize, accountCache, null);
+    }
+
+    // Post alongside a live LedgerService, which may keep balances in memory
+    public InterestPostingEngine(ConnectionPool pool, LedgerService ledger) {
+        this(pool, DEFAULT_CHUNK_SIZE, ledger.getAccountCache(), ledger);
+    }
+
+    private InterestPostingEngine(ConnectionPool pool, int chunkSize, AccountStateCache accountCache, LedgerService ledger) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.accountCache = accountCache;
+        this.ledger = ledger;
+    }
+
+    // Record a new run, abandoning any unfinished one in the same transaction so
+    // the two can never both post to the same accounts; nothing is posted until
+    // run() is called with it
+    public InterestRun startRun(double rate) throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.begin(); // close() rolls back if a statement fails
+            // Write first so the transaction holds the write lock from the start
+            conn.prepare(ABANDON_RUNS_SQL).executeUpdate();
+            long totalAccounts;
+            try (ResultSet rs = conn.prepare(COUNT_ACCOUNTS_SQL).executeQuery()) {
+                totalAccounts = rs.next() ? rs.getLong(1) : 0;
+            }
+
+            PreparedStatement pstmt = conn.getConnection().prepareStatement(CREATE_RUN_SQL, Statement.RETURN_GENERATED_KEYS);
+            try (pstmt) {
+                pstmt.setDouble(1, rate);
+                pstmt.setLong(2, totalAccounts);
+                pstmt.executeUpdate();
+                long id;
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    keys.next();
+                    id = keys.getLong(1);
+                }
+                conn.commit();
+                return new InterestRun(id, rate, "", 0, totalAccounts);
+            }
+        }
+    }
+
+    // The oldest run that never completed, or null if there is none
+    public InterestRun findUnfinishedRun() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare(UNFINISHED_RUN_SQL).executeQuery()) {
+            return rs.next() ? readRun(rs) : null;
+        }
+    }
+
+    // Post interest chunk by chunk from the run's checkpoint. Returns true when the
+    // run completed, false if the thread was interrupted between chunks.
+    public boolean run(InterestRun run, ProgressListener listener) throws SQLException {
+        String lastAccount = run.getLastAccount();
+        long posted = run.getAccountsPosted();
+        long basisPoints = Money.basisPoints(run.getRate());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            // Find the chunk boundary before opening the write transaction so the
+            // transaction never has to upgrade a read lock
+            String chunkEnd;
+            try (PooledConnection conn = pool.borrow()) {
+                chunkEnd = findChunkEnd(conn, lastAccount);
+                if (chunkEnd == null) {
+                    conn.begin();
+                    PreparedStatement finish = conn.prepare(FINISH_RUN_SQL);
+                    finish.setLong(1, run.getId());
+                    if (finish.executeUpdate() == 0) {
+                        throw new SQLException("Interest run " + run.getId() + " was abandoned by a newer run");
+                    }
+                    conn.commit();
+                    return true;
+                }
+            }
+
+            // The chunk borrows its connection inside runExclusive, so the account
+            // locks are taken before the connection as everywhere in LedgerService
+            String chunkStart = lastAccount;
+            int rows = ledger == null
+                    ? postChunk(run, basisPoints, chunkStart, chunkEnd)
+                    : ledger.runExclusive(chunkStart, chunkEnd, () -> postChunk(run, basisPoints, chunkStart, chunkEnd));
+            if (accountCache != null) {
+                accountCache.invalidateAll();
+            }
+            lastAccount = chunkEnd;
+            posted += rows;
+
+            if (listener != null) {
+                listener.onProgress(posted, Math.max(posted, run.getTotalAccounts()));
+            }
+        }
+        return false;
+    }
+
+    // Interest for accounts in (chunkStart, chunkEnd] and the new checkpoint, committed
+    // together in one transaction; returns the accounts posted
+    private int postChunk(InterestRun run, long basisPoints, String chunkStart, String chunkEnd) throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.begin();
+            PreparedStatement log = conn.prepare(LOG_INTEREST_SQL);
+            log.setLong(1, basisPoints);
+            log.setString(2, chunkStart);
+            log.setString(3, chunkEnd);
+            log.executeUpdate();
+
+            PreparedStatement apply = conn.prepare(APPLY_INTEREST_SQL);
+            apply.setLong(1, basisPoints);
+            apply.setString(2, chunkStart);
+            apply.setString(3, chunkEnd);
+            int rows = apply.executeUpdate();
+
+            PreparedStatement advance = conn.prepare(ADVANCE_RUN_SQL);
+            advance.setString(1, chunkEnd);
+            advance.setInt(2, rows);
+            advance.setLong(3, run.getId());
+            if (advance.executeUpdate() == 0) {
+                throw new SQLException("Interest run " + run.getId() + " was abandoned by a newer run"); // Rolls the chunk back
+            }
+
+            conn.commit();
+            return rows;
+        }
+    }
+
+    // Last account number of the next chunk after the checkpoint, or null when done
+    private String findChunkEnd(PooledConnection conn, String lastAccount) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(CHUNK_END_SQL);
+        pstmt.setString(1, lastAccount);
+        pstmt.setInt(2, chunkSize - 1);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getString(1);
+            }
+        }
+
+        // Fewer than chunkSize accounts left: the final chunk ends at the last one
+        pstmt = conn.prepare(LAST_ACCOUNT_SQL);
+        pstmt.setString(1, lastAccount);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static InterestRun readRun(ResultSet rs) throws SQLException {
+        return new InterestRun(rs.getLong("id"), rs.getDouble("rate"), rs.getString("last_account"),
+                rs.getLong("accounts_posted"), rs.getLong("total_accounts"));
+    }
+
+    public static final class InterestRun {
+        private final long id;
+        private final double rate;
+        private final String lastAccount;
+        private final long accountsPosted;
+        private final long totalAccounts;
+
+        InterestRun(long id, double rate, String lastAccount, long accountsPosted, long totalAccounts) {
+            this.id = id;
+            this.rate = rate;
+            this.lastAccount = lastAccount;
+            this.accountsPosted = accountsPosted;
+            this.totalAccounts = totalAccounts;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public String getLastAccount() {
+            return lastAccount;
+        }
+
+        public long getAccountsPosted() {
+            return accountsPosted;
+        }
+
+        public long getTotalAccounts() {
+            return totalAccounts;
+        }
+    }
+}
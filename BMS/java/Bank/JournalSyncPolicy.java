@@ -0,0 +1,93 @@
+package Bank;
+
+// When the OperationJournal forces what it has written to disk. ALWAYS forces
+// every group commit before acknowledging it, so an acknowledged operation
+// survives a power loss. The relaxed policies acknowledge as soon as the
+// operation is in the mapped segment, which survives the process dying but not
+// the machine, and force once intervalMillis have passed or byteThreshold bytes
+// have piled up since the last force.
+//
+// Written as "always", "interval:<millis>" or "bytes:<count>".
+public final class JournalSyncPolicy {
+    public static final JournalSyncPolicy ALWAYS = new JournalSyncPolicy("always", 0, 0);
+
+    private final String name;
+    private final long intervalMillis;
+    private final long byteThreshold;
+
+    private JournalSyncPolicy(String name, long intervalMillis, long byteThreshold) {
+        this.name = name;
+        this.intervalMillis = intervalMillis;
+        this.byteThreshold = byteThreshold;
+    }
+
+    public static JournalSyncPolicy everyMillis(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+        return new JournalSyncPolicy("interval:" + intervalMillis, intervalMillis, 0);
+    }
+
+    public static JournalSyncPolicy everyBytes(long byteThreshold) {
+        if (byteThreshold <= 0) {
+            throw new IllegalArgumentException("Sync byte threshold must be positive");
+        }
+        return new JournalSyncPolicy("bytes:" + byteThreshold, 0, byteThreshold);
+    }
+
+    public static JournalSyncPolicy parse(String spec) {
+        String trimmed = spec.trim().toLowerCase();
+        if (trimmed.equals("always")) {
+            return ALWAYS;
+        }
+        int colon = trimmed.indexOf(':');
+        if (colon > 0) {
+            try {
+                long value = Long.parseLong(trimmed.substring(colon + 1));
+                switch (trimmed.substring(0, colon)) {
+                    case "interval":
+                        return everyMillis(value);
+                    case "bytes":
+                        return everyBytes(value);
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal sync policy '" + spec + "', expected always, interval:<millis> or bytes:<count>");
+    }
+
+    public boolean isAlways() {
+        return intervalMillis == 0 && byteThreshold == 0;
+    }
+
+    // Whether a relaxed policy wants a force now
+    boolean isDue(long unforcedBytes, long millisSinceForce) {
+        if (unforcedBytes == 0) {
+            return false;
+        }
+        if (intervalMillis > 0) {
+            return millisSinceForce >= intervalMillis;
+        }
+        return unforcedBytes >= byteThreshold;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getByteThreshold() {
+        return byteThreshold;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,275 @@
+package Bank;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The little JSON the HTTP API needs, without a library: requests are flat
+// objects whose values are strings, whole numbers, booleans or null, and
+// responses are built with ObjectBuilder. Parse errors are
+// IllegalArgumentExceptions with a message fit for the client.
+final class Json {
+    private Json() {
+    }
+
+    // A flat object as key to String, Long, Boolean or null
+    static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> object = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("Unexpected text after the object");
+        }
+        return object;
+    }
+
+    static ObjectBuilder object() {
+        return new ObjectBuilder();
+    }
+
+    // An array of already encoded values
+    static String array(List<String> encodedValues) {
+        return "[" + String.join(",", encodedValues) + "]";
+    }
+
+    static void quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    static final class ObjectBuilder {
+        private final StringBuilder out = new StringBuilder("{");
+
+        ObjectBuilder put(String key, String value) {
+            key(key);
+            if (value == null) {
+                out.append("null");
+            } else {
+                quote(out, value);
+            }
+            return this;
+        }
+
+        ObjectBuilder put(String key, long value) {
+            key(key);
+            out.append(value);
+            return this;
+        }
+
+        ObjectBuilder put(String key, boolean value) {
+            key(key);
+            out.append(value);
+            return this;
+        }
+
+        // A value that is already JSON, such as an array from Json.array
+        ObjectBuilder putEncoded(String key, String json) {
+            key(key);
+            out.append(json);
+            return this;
+        }
+
+        private void key(String key) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            quote(out, key);
+            out.append(':');
+        }
+
+        @Override
+        public String toString() {
+            return out + "}";
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                object.put(key, value());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested objects and arrays are not accepted");
+            }
+            throw error("Expected a value");
+        }
+
+        private Long number() {
+            int start = position;
+            if (peek() == '-') {
+                position++;
+            }
+            while (!atEnd() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            if (!atEnd() && (text.charAt(position) == '.' || text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                throw error("Numbers must be whole; amounts are in cents");
+            }
+            try {
+                return Long.parseLong(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        out.append(escaped);
+                        break;
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Incomplete \\u escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid \\u escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean atEnd() {
+            return position >= text.length();
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw error("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                position--;
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at offset " + position + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package Bank;
+
+import java.sql.SQLException;
+
+// Outcome of a ledger operation, independent of any Swing component
+public final class LedgerResult {
+    private final boolean success;
+    private final String message;
+    private final SQLException cause; // Set when the database failed rather than the ledger refusing
+
+    private LedgerResult(boolean success, String message, SQLException cause) {
+        this.success = success;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    public static LedgerResult ok(String message) {
+        return new LedgerResult(true, message, null);
+    }
+
+    public static LedgerResult failure(String message) {
+        return new LedgerResult(false, message, null);
+    }
+
+    public static LedgerResult error(String message, SQLException cause) {
+        return new LedgerResult(false, message, cause);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Null unless the operation failed because of the database
+    public SQLException getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return (success ? "OK: " : "FAILED: ") + message;
+    }
+}
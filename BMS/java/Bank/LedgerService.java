@@ -0,0 +1,508 @@
+package Bank;
+
+import java.sql.*;
+import java.util.concurrent.CompletableFuture;
+
+// Headless money operations shared by the Swing screens, batch jobs and tests.
+// Every public method is safe to call from any thread; each call borrows its own
+// pooled connection for its duration. Balance and loan changes are written
+// through to the AccountStateCache under the account's lock, after they commit.
+// All amounts are in cents (see Money).
+//
+// Every balance change commits in the same transaction as its ledger row:
+// deposits and withdrawals through the TransactionJournal's group commit, the
+// rest in a transaction of their own. A failure reported to the caller means
+// nothing was written.
+//
+// Every write bumps the row's version. Updates that depend on a value read
+// earlier (the remaining loan amount in repayLoan) are compare-and-swaps on that
+// version and are retried under the RetryPolicy when another writer got there
+// first. Single-statement updates such as the balance >= ? guard in withdraw are
+// already atomic and need no retry. Lock waits and conflicts are counted per
+// account in ContentionMetrics.
+//
+// With a MemoryLedger, deposits, withdrawals and transfers change balances in
+// memory and return once their journal record is durable; the database catches
+// up asynchronously. Everything else that writes balances in SQL (loans, and
+// other classes through runExclusive) first waits for the database to catch up,
+// with the accounts locked, and reloads them into memory afterwards.
+public class LedgerService implements AutoCloseable {
+    public static final long LOAN_LIMIT = 10000 * Money.CENTS_PER_UNIT;
+
+    private static final String DEPOSIT_SQL = "UPDATE accounts SET balance_cents = balance_cents + ?, version = version + 1 WHERE account_number = ?";
+    private static final String WITHDRAW_SQL = "UPDATE accounts SET balance_cents = balance_cents - ?, version = version + 1 WHERE account_number = ? AND balance_cents >= ?";
+    private static final String INSERT_LOAN_SQL = "INSERT INTO loans (account_number, loan_amount_cents, remaining_cents) VALUES (?, ?, ?)";
+    private static final String ACTIVE_LOAN_SQL = "SELECT id, remaining_cents, version FROM loans WHERE account_number = ? AND remaining_cents > 0";
+    private static final String REPAY_LOAN_SQL = "UPDATE loans SET remaining_cents = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO transactions (account_number, type, amount_cents) VALUES (?, ?, ?)";
+    private static final String ACCOUNT_STATE_SQL = "SELECT name, balance_cents, is_blocked, " +
+            "(SELECT COALESCE(SUM(remaining_cents), 0) FROM loans WHERE loans.account_number = accounts.account_number) AS total_loans " +
+            "FROM accounts WHERE account_number = ?";
+
+    private final ConnectionPool pool;
+    private final TransactionJournal journal;
+    private final AccountStateCache accountCache;
+    private final RetryPolicy retryPolicy;
+    private final MemoryLedger memoryLedger; // May be null
+    private final ContentionMetrics contention = new ContentionMetrics();
+    private final AccountLocks accountLocks = new AccountLocks(contention);
+
+    public LedgerService(ConnectionPool pool) {
+        this(pool, new TransactionJournal(pool), new AccountStateCache());
+    }
+
+    public LedgerService(ConnectionPool pool, TransactionJournal journal, AccountStateCache accountCache) {
+        this(pool, journal, accountCache, RetryPolicy.DEFAULT);
+    }
+
+    public LedgerService(ConnectionPool pool, TransactionJournal journal, AccountStateCache accountCache, RetryPolicy retryPolicy) {
+        this(pool, journal, accountCache, retryPolicy, null);
+    }
+
+    // Serve deposits, withdrawals and transfers from memoryLedger, which this
+    // service closes along with itself
+    public LedgerService(ConnectionPool pool, TransactionJournal journal, AccountStateCache accountCache,
+                         RetryPolicy retryPolicy, MemoryLedger memoryLedger) {
+        this.pool = pool;
+        this.journal = journal;
+        this.accountCache = accountCache;
+        this.retryPolicy = retryPolicy;
+        this.memoryLedger = memoryLedger;
+    }
+
+    public AccountStateCache getAccountCache() {
+        return accountCache;
+    }
+
+    public ContentionMetrics getContentionMetrics() {
+        return contention;
+    }
+
+    public MemoryLedger getMemoryLedger() {
+        return memoryLedger;
+    }
+
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    // Run SQL that changes the account's balance or deletes it, outside this
+    // service. With a MemoryLedger the account is locked, pending operations are
+    // applied first and the account is re-read afterwards.
+    @SuppressWarnings("try")
+    public <T> T runExclusive(String accountNumber, SqlWork<T> work) throws SQLException {
+        try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+            if (memoryLedger == null) {
+                return work.run();
+            }
+            memoryLedger.awaitApplied();
+            try {
+                return work.run();
+            } finally {
+                memoryLedger.evict(accountNumber);
+            }
+        }
+    }
+
+    // The same for every account in (fromExclusive, toInclusive], e.g. an interest
+    // chunk. Every account lock is held meanwhile, so keep the work short.
+    @SuppressWarnings("try")
+    public <T> T runExclusive(String fromExclusive, String toInclusive, SqlWork<T> work) throws SQLException {
+        if (memoryLedger == null) {
+            return work.run();
+        }
+        try (AccountLocks.Held held = accountLocks.lockAll()) {
+            memoryLedger.awaitApplied();
+            try {
+                return work.run();
+            } finally {
+                memoryLedger.evictRange(fromExclusive, toInclusive);
+            }
+        }
+    }
+
+    // Balance, blocked flag and outstanding loans, from the cache when possible; null
+    // if there is no such account. A miss loads under the account's lock so a
+    // concurrent write cannot slip in between the read and the cache fill.
+    @SuppressWarnings("try")
+    public AccountStateCache.AccountState getAccountState(String accountNumber) throws SQLException {
+        try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+            return accountCache.get(accountNumber, this::loadAccountState);
+        }
+    }
+
+    private AccountStateCache.AccountState loadAccountState(String accountNumber) throws SQLException {
+        // The database may not have caught up with the in-memory balance yet. It is
+        // read before borrowing, as loading it into memory borrows a connection too.
+        Long inMemory = memoryLedger != null ? memoryLedger.balance(accountNumber) : null;
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(ACCOUNT_STATE_SQL);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long balance = inMemory != null ? inMemory : rs.getLong("balance_cents");
+                return new AccountStateCache.AccountState(rs.getString("name"), balance,
+                        rs.getBoolean("is_blocked"), rs.getLong("total_loans"));
+            }
+        }
+    }
+
+    // The operations below for the customer a Session belongs to, for front-ends
+    // serving many users at once. Each use counts as activity on the session; an
+    // ended or admin session is refused.
+
+    public LedgerResult deposit(Session session, long amount) {
+        LedgerResult refused = refuse(session);
+        return refused != null ? refused : deposit(session.getAccountNumber(), amount);
+    }
+
+    public LedgerResult withdraw(Session session, long amount) {
+        LedgerResult refused = refuse(session);
+        return refused != null ? refused : withdraw(session.getAccountNumber(), amount);
+    }
+
+    public LedgerResult transfer(Session session, String targetAccountNumber, long amount) {
+        LedgerResult refused = refuse(session);
+        return refused != null ? refused : transfer(session.getAccountNumber(), targetAccountNumber, amount);
+    }
+
+    public LedgerResult applyForLoan(Session session, long loanAmount) {
+        LedgerResult refused = refuse(session);
+        return refused != null ? refused : applyForLoan(session.getAccountNumber(), loanAmount);
+    }
+
+    public LedgerResult repayLoan(Session session, long repaymentAmount) {
+        LedgerResult refused = refuse(session);
+        return refused != null ? refused : repayLoan(session.getAccountNumber(), repaymentAmount);
+    }
+
+    private static LedgerResult refuse(Session session) {
+        if (session == null || !session.touch()) {
+            return LedgerResult.failure("Your session has expired. Please log in again.");
+        }
+        if (session.isAdmin()) {
+            return LedgerResult.failure("Admin sessions have no account to do this with.");
+        }
+        return null;
+    }
+
+    @SuppressWarnings("try")
+    public LedgerResult deposit(String accountNumber, long amount) {
+        if (amount <= 0) {
+            return LedgerResult.failure("Invalid amount. Please enter a positive value.");
+        }
+        if (memoryLedger != null) {
+            return depositInMemory(accountNumber, amount);
+        }
+
+        // The lock is held until the group commit lands, so the cache sees changes in order
+        try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+            if (!TransactionJournal.await(journal.credit(accountNumber, "DEPOSIT", amount))) {
+                return LedgerResult.failure("Account not found.");
+            }
+            accountCache.update(accountNumber, state -> state.withBalanceChange(amount));
+            return LedgerResult.ok("Deposit successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error depositing money: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("try")
+    public LedgerResult withdraw(String accountNumber, long amount) {
+        if (amount <= 0) {
+            return LedgerResult.failure("Invalid amount. Please enter a positive value.");
+        }
+        if (memoryLedger != null) {
+            return withdrawInMemory(accountNumber, amount);
+        }
+
+        try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+            if (!TransactionJournal.await(journal.debit(accountNumber, "WITHDRAWAL", amount))) {
+                return LedgerResult.failure("Insufficient balance or account not found.");
+            }
+            accountCache.update(accountNumber, state -> state.withBalanceChange(-amount));
+            return LedgerResult.ok("Withdrawal successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error withdrawing money: " + e.getMessage(), e);
+        }
+    }
+
+    // Debit, credit and both ledger rows are committed as one transaction. The two
+    // balance updates run in account-number order, after taking the accounts'
+    // in-process locks in the same order, so overlapping transfers never deadlock.
+    @SuppressWarnings("try")
+    public LedgerResult transfer(String fromAccountNumber, String targetAccountNumber, long amount) {
+        if (amount <= 0) {
+            return LedgerResult.failure("Invalid amount. Please enter a positive value.");
+        }
+        if (memoryLedger != null) {
+            return transferInMemory(fromAccountNumber, targetAccountNumber, amount);
+        }
+
+        boolean debitFirst = fromAccountNumber.compareTo(targetAccountNumber) <= 0;
+        try (AccountLocks.Held held = accountLocks.lock(fromAccountNumber, targetAccountNumber);
+             PooledConnection conn = pool.borrow()) {
+            conn.begin();
+
+            // Starting with a write takes SQLite's write lock immediately instead of
+            // upgrading from a read lock, which is where busy-retry storms come from
+            boolean debited;
+            boolean credited;
+            if (debitFirst) {
+                debited = debit(conn, fromAccountNumber, amount);
+                credited = credit(conn, targetAccountNumber, amount);
+            } else {
+                credited = credit(conn, targetAccountNumber, amount);
+                debited = debit(conn, fromAccountNumber, amount);
+            }
+
+            // Closing the connection rolls back the open transaction
+            if (!credited) {
+                return LedgerResult.failure("Target account not found.");
+            }
+            if (!debited) {
+                return LedgerResult.failure("Insufficient balance.");
+            }
+
+            logTransaction(conn, fromAccountNumber, "TRANSFER_OUT", amount);
+            logTransaction(conn, targetAccountNumber, "TRANSFER_IN", amount);
+            conn.commit();
+            accountCache.update(fromAccountNumber, state -> state.withBalanceChange(-amount));
+            accountCache.update(targetAccountNumber, state -> state.withBalanceChange(amount));
+            return LedgerResult.ok("Transfer successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error transferring funds: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private LedgerResult depositInMemory(String accountNumber, long amount) {
+        try {
+            CompletableFuture<Void> durable;
+            try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+                durable = memoryLedger.deposit(accountNumber, amount);
+                if (durable == null) {
+                    return LedgerResult.failure("Account not found.");
+                }
+                accountCache.update(accountNumber, state -> state.withBalanceChange(amount));
+            }
+            awaitDurable(durable, OperationJournal.Kind.DEPOSIT, accountNumber, "", amount);
+            return LedgerResult.ok("Deposit successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error depositing money: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private LedgerResult withdrawInMemory(String accountNumber, long amount) {
+        try {
+            CompletableFuture<Void> durable;
+            try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+                durable = memoryLedger.withdraw(accountNumber, amount);
+                if (durable == null) {
+                    return LedgerResult.failure("Insufficient balance or account not found.");
+                }
+                accountCache.update(accountNumber, state -> state.withBalanceChange(-amount));
+            }
+            awaitDurable(durable, OperationJournal.Kind.WITHDRAWAL, accountNumber, "", amount);
+            return LedgerResult.ok("Withdrawal successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error withdrawing money: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private LedgerResult transferInMemory(String fromAccountNumber, String targetAccountNumber, long amount) {
+        try {
+            CompletableFuture<Void> durable;
+            try (AccountLocks.Held held = accountLocks.lock(fromAccountNumber, targetAccountNumber)) {
+                if (memoryLedger.balance(targetAccountNumber) == null) {
+                    return LedgerResult.failure("Target account not found.");
+                }
+                durable = memoryLedger.transfer(fromAccountNumber, targetAccountNumber, amount);
+                if (durable == null) {
+                    return LedgerResult.failure("Insufficient balance.");
+                }
+                accountCache.update(fromAccountNumber, state -> state.withBalanceChange(-amount));
+                accountCache.update(targetAccountNumber, state -> state.withBalanceChange(amount));
+            }
+            awaitDurable(durable, OperationJournal.Kind.TRANSFER, fromAccountNumber, targetAccountNumber, amount);
+            return LedgerResult.ok("Transfer successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error transferring funds: " + e.getMessage(), e);
+        }
+    }
+
+    // Wait for an in-memory operation's journal record. If it cannot be written the
+    // operation is undone in memory and its accounts dropped from the cache, so
+    // neither keeps money the journal never recorded.
+    @SuppressWarnings("try")
+    private void awaitDurable(CompletableFuture<Void> durable, OperationJournal.Kind kind,
+                              String accountNumber, String targetAccountNumber, long amount) throws SQLException {
+        try {
+            OperationJournal.await(durable);
+        } catch (SQLException e) {
+            String[] accounts = targetAccountNumber.isEmpty() ? new String[]{accountNumber}
+                    : new String[]{accountNumber, targetAccountNumber};
+            try (AccountLocks.Held held = accountLocks.lock(accounts)) {
+                memoryLedger.undo(kind, accountNumber, targetAccountNumber, amount);
+                for (String account : accounts) {
+                    accountCache.invalidate(account);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private boolean debit(PooledConnection conn, String accountNumber, long amount) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(WITHDRAW_SQL);
+        pstmt.setLong(1, amount);
+        pstmt.setString(2, accountNumber);
+        pstmt.setLong(3, amount);
+        return pstmt.executeUpdate() > 0;
+    }
+
+    private boolean credit(PooledConnection conn, String accountNumber, long amount) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(DEPOSIT_SQL);
+        pstmt.setLong(1, amount);
+        pstmt.setString(2, accountNumber);
+        return pstmt.executeUpdate() > 0;
+    }
+
+    @SuppressWarnings("try")
+    public LedgerResult applyForLoan(String accountNumber, long loanAmount) {
+        if (loanAmount <= 0) {
+            return LedgerResult.failure("Invalid loan amount. Please enter a positive value.");
+        }
+
+        // Check if the loan amount is within the limit
+        if (loanAmount > LOAN_LIMIT) {
+            return LedgerResult.failure("Loan amount exceeds the maximum limit of $" + Money.format(LOAN_LIMIT));
+        }
+
+        try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+            if (memoryLedger != null) {
+                memoryLedger.awaitApplied(); // Before borrowing, like every other path
+            }
+            try (PooledConnection conn = pool.borrow()) {
+                // Credit, loan record and ledger row commit together; the credit goes
+                // first so the transaction starts with a write
+                conn.begin();
+                if (!credit(conn, accountNumber, loanAmount)) {
+                    return LedgerResult.failure("Error processing loan.");
+                }
+
+                // Insert loan record
+                PreparedStatement insertStmt = conn.prepare(INSERT_LOAN_SQL);
+                insertStmt.setString(1, accountNumber);
+                insertStmt.setLong(2, loanAmount);
+                insertStmt.setLong(3, loanAmount); // Initially, remaining amount = loan amount
+                insertStmt.executeUpdate();
+                logTransaction(conn, accountNumber, "LOAN", loanAmount);
+                conn.commit();
+                if (memoryLedger != null) {
+                    memoryLedger.evict(accountNumber);
+                }
+                accountCache.update(accountNumber, state -> state.withBalanceChange(loanAmount).withLoanChange(loanAmount));
+                return LedgerResult.ok("Loan of $" + Money.format(loanAmount) + " approved and added to your account.");
+            }
+        } catch (SQLException e) {
+            return LedgerResult.error("Error processing loan: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("try")
+    public LedgerResult repayLoan(String accountNumber, long repaymentAmount) {
+        if (repaymentAmount <= 0) {
+            return LedgerResult.failure("Invalid repayment amount. Please enter a positive value.");
+        }
+
+        try {
+            long remainingAmount;
+            try (AccountLocks.Held held = accountLocks.lock(accountNumber)) {
+                if (memoryLedger != null) {
+                    memoryLedger.awaitApplied();
+                }
+                for (int attempt = 1; ; attempt++) {
+                    try (PooledConnection conn = pool.borrow()) {
+                        // Check if the user has an active loan
+                        long loanId;
+                        long loanVersion;
+                        PreparedStatement checkStmt = conn.prepare(ACTIVE_LOAN_SQL);
+                        checkStmt.setString(1, accountNumber);
+                        try (ResultSet rs = checkStmt.executeQuery()) {
+                            if (!rs.next()) {
+                                return LedgerResult.failure("No active loan found.");
+                            }
+                            loanId = rs.getLong("id");
+                            remainingAmount = rs.getLong("remaining_cents");
+                            loanVersion = rs.getLong("version");
+                        }
+
+                        if (repaymentAmount > remainingAmount) {
+                            return LedgerResult.failure("Repayment amount exceeds the remaining loan amount.");
+                        }
+
+                        // Debit, loan update and ledger row commit together; the debit
+                        // goes first so the transaction starts with a write
+                        conn.begin();
+                        if (!debit(conn, accountNumber, repaymentAmount)) {
+                            return LedgerResult.failure("Insufficient balance for repayment.");
+                        }
+
+                        // Only if the loan is still as we read it; otherwise closing the
+                        // connection rolls back the debit and we read it again
+                        PreparedStatement updateLoanStmt = conn.prepare(REPAY_LOAN_SQL);
+                        updateLoanStmt.setLong(1, remainingAmount - repaymentAmount);
+                        updateLoanStmt.setLong(2, loanId);
+                        updateLoanStmt.setLong(3, loanVersion);
+                        if (updateLoanStmt.executeUpdate() > 0) {
+                            logTransaction(conn, accountNumber, "LOAN_REPAYMENT", repaymentAmount);
+                            conn.commit();
+                            if (memoryLedger != null) {
+                                memoryLedger.evict(accountNumber);
+                            }
+                            accountCache.update(accountNumber, state -> state.withBalanceChange(-repaymentAmount).withLoanChange(-repaymentAmount));
+                            break;
+                        }
+                    }
+
+                    contention.recordConflict(accountNumber);
+                    if (attempt >= retryPolicy.getMaxAttempts() || !retryPolicy.pause(attempt)) {
+                        contention.recordExhausted(accountNumber);
+                        return LedgerResult.failure("The loan was changed by another session. Please try again.");
+                    }
+                }
+            }
+
+            // Check if the loan is fully repaid
+            if (remainingAmount - repaymentAmount <= 0) {
+                return LedgerResult.ok("Congratulations! Your loan has been fully repaid.");
+            }
+            return LedgerResult.ok("Loan repayment of $" + Money.format(repaymentAmount) + " successful!");
+        } catch (SQLException e) {
+            return LedgerResult.error("Error processing loan repayment: " + e.getMessage(), e);
+        }
+    }
+
+    // Ledger row written inside the caller's own transaction
+    void logTransaction(PooledConnection conn, String accountNumber, String type, long amount) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(INSERT_TRANSACTION_SQL);
+        pstmt.setString(1, accountNumber);
+        pstmt.setString(2, type);
+        pstmt.setLong(3, amount);
+        pstmt.executeUpdate();
+    }
+
+    // Commit pending deposits and withdrawals and stop the journal's flusher, then apply and
+    // close the memory ledger if there is one
+    @Override
+    public void close() {
+        journal.close();
+        if (memoryLedger != null) {
+            memoryLedger.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package Bank;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Replays a weighted mix of ledger operations from many concurrent workers for a
+// fixed time and reports throughput and latency percentiles per operation. The
+// operations go to a Target: the LedgerService in this process, or a server over
+// HTTP (BankHttpClient). Each worker keeps its own latency samples, so recording
+// never contends; they are merged once at the end.
+public class LoadReplayer {
+    public enum Operation {
+        DEPOSIT, WITHDRAW, TRANSFER, LOAN, REPAY
+    }
+
+    // Where the operations go; otherAccount is only used by transfers
+    public interface Target {
+        LedgerResult apply(Operation operation, String account, String otherAccount, long amount);
+    }
+
+    private final Target target;
+    private final List<String> accountNumbers;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final int concurrency;
+
+    public LoadReplayer(LedgerService ledger, List<String> accountNumbers, Map<Operation, Integer> mix, int concurrency) {
+        this(inProcess(ledger), accountNumbers, mix, concurrency);
+    }
+
+    public LoadReplayer(Target target, List<String> accountNumbers, Map<Operation, Integer> mix, int concurrency) {
+        if (accountNumbers.isEmpty()) {
+            throw new IllegalArgumentException("The database has no accounts to replay against");
+        }
+        int total = 0;
+        for (int weight : mix.values()) {
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The operation mix needs at least one positive weight");
+        }
+        this.target = target;
+        this.accountNumbers = accountNumbers;
+        this.mix = new EnumMap<>(mix);
+        this.totalWeight = total;
+        this.concurrency = concurrency;
+    }
+
+    public static List<String> loadAccountNumbers(ConnectionPool pool) throws SQLException {
+        List<String> accountNumbers = new ArrayList<>();
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare("SELECT account_number FROM accounts").executeQuery()) {
+            while (rs.next()) {
+                accountNumbers.add(rs.getString(1));
+            }
+        }
+        return accountNumbers;
+    }
+
+    // Parse "deposit=40,withdraw=30,transfer=20,loan=5,repay=5"
+    public static Map<Operation, Integer> parseMix(String text) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : text.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight but got '" + part + "'");
+            }
+            mix.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+
+    public Report run(long durationMillis) throws InterruptedException {
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor(concurrency, "load-worker");
+        long started = System.nanoTime();
+        long deadline = started + durationMillis * 1_000_000L;
+        List<Future<Samples>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> work(deadline)));
+        }
+
+        Samples merged = new Samples();
+        try {
+            for (Future<Samples> worker : workers) {
+                merged.addAll(worker.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A load worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report(merged, System.nanoTime() - started);
+    }
+
+    private Samples work(long deadline) {
+        Samples samples = new Samples();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = pick(random.nextInt(totalWeight));
+            long start = System.nanoTime();
+            LedgerResult result = apply(operation, random);
+            samples.record(operation, System.nanoTime() - start, result.isSuccess());
+        }
+        return samples;
+    }
+
+    private Operation pick(int roll) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Roll outside the mix weights");
+    }
+
+    private LedgerResult apply(Operation operation, ThreadLocalRandom random) {
+        String account = accountNumbers.get(random.nextInt(accountNumbers.size()));
+        String otherAccount = accountNumbers.get(random.nextInt(accountNumbers.size()));
+        long amount = (1 + random.nextInt(500)) * Money.CENTS_PER_UNIT;
+        return target.apply(operation, account, otherAccount, amount);
+    }
+
+    static Target inProcess(LedgerService ledger) {
+        return (operation, account, otherAccount, amount) -> {
+            switch (operation) {
+                case DEPOSIT:
+                    return ledger.deposit(account, amount);
+                case WITHDRAW:
+                    return ledger.withdraw(account, amount);
+                case TRANSFER:
+                    return ledger.transfer(account, otherAccount, amount);
+                case LOAN:
+                    return ledger.applyForLoan(account, amount);
+                default:
+                    return ledger.repayLoan(account, amount);
+            }
+        };
+    }
+
+    // Latencies per operation in nanoseconds, plus how many were rejected by the
+    // ledger (insufficient balance, no active loan and so on)
+    static final class Samples {
+        private final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> rejected = new EnumMap<>(Operation.class);
+
+        void record(Operation operation, long nanos, boolean success) {
+            int count = counts.getOrDefault(operation, 0);
+            long[] values = latencies.computeIfAbsent(operation, op -> new long[1024]);
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+                latencies.put(operation, values);
+            }
+            values[count] = nanos;
+            counts.put(operation, count + 1);
+            if (!success) {
+                rejected.merge(operation, 1, Integer::sum);
+            }
+        }
+
+        void addAll(Samples other) {
+            for (Map.Entry<Operation, Integer> entry : other.counts.entrySet()) {
+                long[] values = other.latencies.get(entry.getKey());
+                for (int i = 0; i < entry.getValue(); i++) {
+                    record(entry.getKey(), values[i], true);
+                }
+            }
+            other.rejected.forEach((operation, count) -> rejected.merge(operation, count, Integer::sum));
+        }
+    }
+
+    public static final class Report {
+        private final Samples samples;
+        private final long elapsedNanos;
+
+        Report(Samples samples, long elapsedNanos) {
+            this.samples = samples;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%-10s %10s %10s %12s %10s %10s %10s%n",
+                    "operation", "count", "rejected", "ops/s", "p50 ms", "p99 ms", "p999 ms"));
+            double seconds = elapsedNanos / 1e9;
+            long total = 0;
+            for (Operation operation : Operation.values()) {
+                int count = samples.counts.getOrDefault(operation, 0);
+                if (count == 0) {
+                    continue;
+                }
+                total += count;
+                long[] sorted = Arrays.copyOf(samples.latencies.get(operation), count);
+                Arrays.sort(sorted);
+                out.append(String.format("%-10s %10d %10d %12.1f %10.3f %10.3f %10.3f%n",
+                        operation.name().toLowerCase(), count, samples.rejected.getOrDefault(operation, 0),
+                        count / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999)));
+            }
+            out.append(String.format("%-10s %10d %10s %12.1f%n", "total", total, "", total / seconds));
+            return out.toString();
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package Bank;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.List;
+
+// Command line for building production-sized databases and loading them:
+//
+//     java -cp ... Bank.LoadTool seed --db big.db --accounts 100000 --transactions 10000000 --loans 20000
+//     java -cp ... Bank.LoadTool replay --db big.db --duration 60 --concurrency 256 --profile balanced --mix deposit=40,withdraw=30,transfer=20,loan=5,repay=5
+//     java -cp ... Bank.LoadTool http --db big.db --url http://localhost:8080 --sessions 1000 --duration 60 --concurrency 256
+//     java -cp ... Bank.LoadTool export --db big.db --table transactions --out ledger.csv.gz --resume
+public class LoadTool {
+    @Parameters(commandDescription = "Seed a database with synthetic accounts, transactions and loans")
+    static final class SeedCommand {
+        @Parameter(names = "--db", description = "SQLite file to create or extend", required = true)
+        String db;
+
+        @Parameter(names = "--accounts", description = "Number of accounts")
+        int accounts = 10000;
+
+        @Parameter(names = "--transactions", description = "Number of ledger rows")
+        long transactions = 1000000;
+
+        @Parameter(names = "--loans", description = "Number of loans")
+        int loans = 1000;
+
+        @Parameter(names = "--days", description = "Ledger rows are spread over this many past days")
+        int days = 365;
+
+        @Parameter(names = "--seed", description = "Random seed; the same seed reproduces the same data")
+        long seed = 42;
+
+        @Parameter(names = "--password", description = "Password given to every seeded account")
+        String password = DatasetSeeder.DEFAULT_PASSWORD;
+    }
+
+    @Parameters(commandDescription = "Replay a mix of ledger operations and report latency percentiles")
+    static final class ReplayCommand {
+        @Parameter(names = "--db", description = "SQLite file to run against", required = true)
+        String db;
+
+        @Parameter(names = "--duration", description = "Seconds to run for")
+        int durationSeconds = 30;
+
+        @Parameter(names = "--concurrency", description = "Concurrent workers (virtual threads on Java 21+)")
+        int concurrency = 64;
+
+        @Parameter(names = "--mix", description = "Operation weights, e.g. deposit=40,withdraw=30,transfer=20,loan=5,repay=5")
+        String mix = "deposit=40,withdraw=30,transfer=20,loan=5,repay=5";
+
+        @Parameter(names = "--profile", description = "Storage profile: durable, balanced or legacy")
+        String profile = StorageProfile.DEFAULT.getName();
+
+        @Parameter(names = "--engine", description = "Ledger engine: sql, or memory for the in-memory ledger")
+        String engine = "sql";
+
+        @Parameter(names = "--journal", description = "Operation journal directory for the memory engine")
+        String journal = MemoryLedger.DEFAULT_JOURNAL;
+
+        @Parameter(names = "--journal-sync", description = "Journal sync policy: always, interval:<millis> or bytes:<count>")
+        String journalSync = "always";
+    }
+
+    @Parameters(commandDescription = "Replay the mix against a running HTTP API server (BankManagementSystem --server)")
+    static final class HttpCommand {
+        @Parameter(names = "--db", description = "The server's SQLite file, read for account numbers", required = true)
+        String db;
+
+        @Parameter(names = "--url", description = "Server base URL")
+        String url = "http://localhost:" + BankHttpServer.DEFAULT_PORT;
+
+        @Parameter(names = "--sessions", description = "Accounts to sign in and replay against")
+        int sessions = 100;
+
+        @Parameter(names = "--password", description = "Password of the seeded accounts")
+        String password = DatasetSeeder.DEFAULT_PASSWORD;
+
+        @Parameter(names = "--duration", description = "Seconds to run for")
+        int durationSeconds = 30;
+
+        @Parameter(names = "--concurrency", description = "Concurrent clients (virtual threads on Java 21+)")
+        int concurrency = 64;
+
+        @Parameter(names = "--mix", description = "Operation weights, e.g. deposit=40,withdraw=30,transfer=20,loan=5,repay=5")
+        String mix = "deposit=40,withdraw=30,transfer=20,loan=5,repay=5";
+    }
+
+    @Parameters(commandDescription = "Stream a table to a CSV file, gzipped when it ends in .gz")
+    static final class ExportCommand {
+        @Parameter(names = "--db", description = "SQLite file to export from", required = true)
+        String db;
+
+        @Parameter(names = "--table", description = "transactions or accounts")
+        String table = "transactions";
+
+        @Parameter(names = "--out", description = "CSV file to write", required = true)
+        String out;
+
+        @Parameter(names = "--resume", description = "Continue from the checkpoint an interrupted export left")
+        boolean resume;
+
+        @Parameter(names = "--chunk", description = "Rows per query and per checkpoint")
+        int chunk = CsvExporter.DEFAULT_CHUNK_ROWS;
+
+        @Parameter(names = "--fetch-size", description = "JDBC fetch size")
+        int fetchSize = CsvExporter.DEFAULT_FETCH_SIZE;
+    }
+
+    @Parameter(names = {"--help", "-h"}, help = true, description = "Show usage")
+    boolean help;
+
+    public static void main(String[] args) throws Exception {
+        LoadTool tool = new LoadTool();
+        SeedCommand seed = new SeedCommand();
+        ReplayCommand replay = new ReplayCommand();
+        HttpCommand http = new HttpCommand();
+        ExportCommand export = new ExportCommand();
+        JCommander commander = JCommander.newBuilder()
+                .addObject(tool)
+                .addCommand("seed", seed)
+                .addCommand("replay", replay)
+                .addCommand("http", http)
+                .addCommand("export", export)
+                .programName("Bank.LoadTool")
+                .build();
+        try {
+            commander.parse(args);
+        } catch (ParameterException e) {
+            System.err.println(e.getMessage());
+            commander.usage();
+            System.exit(2);
+        }
+        if (tool.help || commander.getParsedCommand() == null) {
+            commander.usage();
+            return;
+        }
+
+        if ("seed".equals(commander.getParsedCommand())) {
+            runSeed(seed);
+        } else if ("http".equals(commander.getParsedCommand())) {
+            runHttp(http);
+        } else if ("export".equals(commander.getParsedCommand())) {
+            runExport(export);
+        } else {
+            runReplay(replay);
+        }
+    }
+
+    private static void runSeed(SeedCommand command) throws SQLException {
+        long started = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + command.db)) {
+            new DatasetSeeder(command.accounts, command.transactions, command.loans, command.days, command.seed, command.password)
+                    .seed(conn);
+        }
+        System.out.printf("Seeded %s in %.1f s%n", command.db, (System.nanoTime() - started) / 1e9);
+    }
+
+    private static void runReplay(ReplayCommand command) throws SQLException, IOException, InterruptedException {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + command.db, StorageProfile.named(command.profile))) {
+            try (PooledConnection conn = pool.borrow()) {
+                new SchemaMigrator().migrate(conn.getConnection());
+                System.out.println("Storage: " + pool.getProfile().report(conn.getConnection()));
+            }
+            List<String> accountNumbers = LoadReplayer.loadAccountNumbers(pool);
+            MemoryLedger memoryLedger = null;
+            if (command.engine.equalsIgnoreCase("memory")) {
+                memoryLedger = new MemoryLedger(pool, Paths.get(command.journal), JournalSyncPolicy.parse(command.journalSync),
+                        OperationJournal.DEFAULT_SEGMENT_BYTES);
+            } else if (!command.engine.equalsIgnoreCase("sql")) {
+                throw new IllegalArgumentException("Unknown engine '" + command.engine + "', expected sql or memory");
+            }
+            try (LedgerService ledger = new LedgerService(pool, new TransactionJournal(pool), new AccountStateCache(),
+                    RetryPolicy.DEFAULT, memoryLedger)) {
+                LoadReplayer replayer = new LoadReplayer(ledger, accountNumbers, LoadReplayer.parseMix(command.mix), command.concurrency);
+                System.out.printf("Replaying against %d accounts with %d workers for %d s...%n",
+                        accountNumbers.size(), command.concurrency, command.durationSeconds);
+                LoadReplayer.Report report = replayer.run(command.durationSeconds * 1000L);
+                System.out.print(report.format());
+                System.out.println("Connection pool: " + pool.metrics());
+                if (memoryLedger != null) {
+                    System.out.println("Journal: sync=" + memoryLedger.getJournal().getSyncPolicy()
+                            + " segments=" + memoryLedger.getJournal().getSegmentCount()
+                            + " pending=" + memoryLedger.getPendingOperations());
+                }
+                System.out.println("Contention: " + ledger.getContentionMetrics());
+                for (ContentionMetrics.AccountContention hot : ledger.getContentionMetrics().hottest(10)) {
+                    System.out.println("  " + hot);
+                }
+            }
+        }
+    }
+
+    private static void runHttp(HttpCommand command) throws SQLException, InterruptedException {
+        List<String> accountNumbers;
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + command.db)) {
+            accountNumbers = LoadReplayer.loadAccountNumbers(pool);
+        }
+        accountNumbers = accountNumbers.subList(0, Math.min(command.sessions, accountNumbers.size()));
+        BankHttpClient client = new BankHttpClient(command.url);
+        long started = System.nanoTime();
+        List<String> signedIn = client.login(accountNumbers, command.password, command.concurrency);
+        System.out.printf("Signed in %d of %d accounts in %.1f s%n",
+                signedIn.size(), accountNumbers.size(), (System.nanoTime() - started) / 1e9);
+        LoadReplayer replayer = new LoadReplayer(client, signedIn, LoadReplayer.parseMix(command.mix), command.concurrency);
+        System.out.printf("Replaying against %s with %d clients for %d s...%n",
+                command.url, command.concurrency, command.durationSeconds);
+        System.out.print(replayer.run(command.durationSeconds * 1000L).format());
+    }
+
+    private static void runExport(ExportCommand command) throws SQLException, IOException {
+        CsvExporter.Dataset dataset = CsvExporter.Dataset.valueOf(command.table.toUpperCase(java.util.Locale.ROOT));
+        boolean gzip = command.out.endsWith(".gz");
+        long started = System.nanoTime();
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + command.db)) {
+            CsvExporter exporter = new CsvExporter(pool, command.chunk, command.fetchSize);
+            long[] reported = {0};
+            CsvExporter.Progress progress = exporter.export(dataset, Paths.get(command.out), gzip, command.resume, p -> {
+                if (p.getRows() - reported[0] >= 1000000) {
+                    reported[0] = p.getRows();
+                    System.out.printf("Exported %d rows, %.1f MB%n", p.getRows(), p.getBytes() / 1e6);
+                }
+                return true;
+            });
+            System.out.printf("Exported %s to %s in %.1f s%n", progress, command.out, (System.nanoTime() - started) / 1e9);
+        }
+    }
+}
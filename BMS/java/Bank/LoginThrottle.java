@@ -0,0 +1,60 @@
+package Bank;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Turns a client away for a while once it has failed to sign in too often, so
+// account numbers and passwords can't be guessed at network speed. Failures are
+// counted in fixed windows that start at a client's first failure; a client at
+// the limit is refused until its window ends, whatever it sends. The same limit
+// guards anything whose failures leak what exists, such as refused transfers.
+public class LoginThrottle {
+    public static final int DEFAULT_MAX_FAILURES = 10;
+    public static final long DEFAULT_WINDOW_MILLIS = 60_000;
+
+    private static final int SWEEP_THRESHOLD = 10_000; // Clients tracked before expired windows are dropped
+
+    private final int maxFailures;
+    private final long windowMillis;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public LoginThrottle() {
+        this(DEFAULT_MAX_FAILURES, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public LoginThrottle(int maxFailures, long windowMillis) {
+        if (maxFailures <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("Failure limit and window must be positive");
+        }
+        this.maxFailures = maxFailures;
+        this.windowMillis = windowMillis;
+    }
+
+    // Seconds until the client may try again, or 0 if it may try now
+    public long retryAfterSeconds(String client) {
+        Window window = windows.get(client);
+        long now = System.currentTimeMillis();
+        if (window == null || window.failures < maxFailures || now >= window.endsAt) {
+            return 0;
+        }
+        return Math.max(1, (window.endsAt - now + 999) / 1000);
+    }
+
+    public void recordFailure(String client) {
+        long now = System.currentTimeMillis();
+        windows.compute(client, (key, window) ->
+                window == null || now >= window.endsAt ? new Window(1, now + windowMillis) : new Window(window.failures + 1, window.endsAt));
+        if (windows.size() > SWEEP_THRESHOLD) {
+            windows.values().removeIf(window -> now >= window.endsAt);
+        }
+    }
+
+    private static final class Window {
+        final int failures;
+        final long endsAt;
+
+        Window(int failures, long endsAt) {
+            this.failures = failures;
+            this.endsAt = endsAt;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package Bank;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Optional in-memory balance store for LedgerService. Deposits, withdrawals and
+// transfers change a balance held in memory and append the operation to an
+// OperationJournal; the caller is answered once the journal has written it under
+// its JournalSyncPolicy. An applier thread then writes the written operations to
+// the accounts and transactions tables in large batches, recording the last
+// applied sequence number in the same SQLite transaction, so each operation
+// reaches the database exactly once even across crashes, and journal segments
+// are deleted as soon as everything in them is applied. On open, whatever the
+// journal holds beyond that number is applied before any balance is loaded.
+//
+// Callers hold the accounts' AccountLocks for every method taking an account
+// number. SQL that changes balances directly (loans, interest, deleting an
+// account) must run with the affected accounts locked, after awaitApplied(), and
+// evict() the accounts afterwards; LedgerService.runExclusive does this.
+// Database readers see balances up to one apply batch behind.
+//
+// Turned on with -Dbank.ledger.engine=memory. The journal directory is
+// -Dbank.ledger.journal (bank-ledger-journal by default), its sync policy
+// -Dbank.ledger.journal.sync (always by default, see JournalSyncPolicy) and its
+// segment size -Dbank.ledger.journal.segmentBytes.
+public class MemoryLedger implements AutoCloseable {
+    public static final String ENGINE_PROPERTY = "bank.ledger.engine";
+    public static final String JOURNAL_PROPERTY = "bank.ledger.journal";
+    public static final String SYNC_PROPERTY = "bank.ledger.journal.sync";
+    public static final String SEGMENT_BYTES_PROPERTY = "bank.ledger.journal.segmentBytes";
+    public static final String DEFAULT_JOURNAL = "bank-ledger-journal";
+    public static final int APPLY_BATCH_SIZE = 2000;
+    public static final long APPLY_TIMEOUT_MILLIS = 30_000;
+
+    private static final long FAILURE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final String LOAD_ALL_SQL = "SELECT account_number, balance_cents FROM accounts";
+    private static final String LOAD_ONE_SQL = "SELECT balance_cents FROM accounts WHERE account_number = ?";
+    private static final String APPLIED_SEQ_SQL = "SELECT applied_seq FROM ledger_journal_state WHERE id = 1";
+    private static final String MARK_APPLIED_SQL = "UPDATE ledger_journal_state SET applied_seq = ? WHERE id = 1";
+    private static final String APPLY_BALANCE_SQL = "UPDATE accounts SET balance_cents = balance_cents + ?, version = version + 1 WHERE account_number = ?";
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO transactions (account_number, type, amount_cents, timestamp) VALUES (?, ?, ?, ?)";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private final ConnectionPool pool;
+    private final Path journalPath;
+    private final ConcurrentSkipListMap<String, Balance> balances = new ConcurrentSkipListMap<>(); // Sorted for evictRange
+    private final LinkedBlockingQueue<OperationJournal.Operation> toApply = new LinkedBlockingQueue<>();
+    private final Connection applyConn; // Only touched by the applier thread after open
+    private final OperationJournal journal;
+    private final Thread applier;
+    private long appliedSeq; // Guarded by this
+    private volatile boolean running = true;
+
+    public MemoryLedger(ConnectionPool pool, Path journalPath) throws SQLException, IOException {
+        this(pool, journalPath, JournalSyncPolicy.ALWAYS, OperationJournal.DEFAULT_SEGMENT_BYTES);
+    }
+
+    // Recover from the journal directory at journalPath, load every balance and
+    // start applying
+    public MemoryLedger(ConnectionPool pool, Path journalPath, JournalSyncPolicy syncPolicy, long segmentBytes)
+            throws SQLException, IOException {
+        this.pool = pool;
+        this.journalPath = journalPath;
+        this.applyConn = pool.openConnection();
+        try {
+            long lastSeq = recover();
+            loadAll();
+            this.journal = new OperationJournal(journalPath, lastSeq, segmentBytes, syncPolicy, toApply::addAll);
+        } catch (SQLException | IOException e) {
+            applyConn.close();
+            throw e;
+        }
+        this.applier = new Thread(this::runApplier, "memory-ledger-applier");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    // The engine the system properties ask for, or null for the plain SQL ledger
+    public static MemoryLedger fromSystemProperties(ConnectionPool pool) throws SQLException, IOException {
+        String engine = System.getProperty(ENGINE_PROPERTY, "sql");
+        if (engine.equalsIgnoreCase("sql")) {
+            return null;
+        }
+        if (!engine.equalsIgnoreCase("memory")) {
+            throw new IllegalArgumentException("Unknown ledger engine '" + engine + "', expected sql or memory");
+        }
+        JournalSyncPolicy syncPolicy = JournalSyncPolicy.parse(System.getProperty(SYNC_PROPERTY, "always"));
+        long segmentBytes = Long.getLong(SEGMENT_BYTES_PROPERTY, OperationJournal.DEFAULT_SEGMENT_BYTES);
+        return new MemoryLedger(pool, Paths.get(System.getProperty(JOURNAL_PROPERTY, DEFAULT_JOURNAL)), syncPolicy, segmentBytes);
+    }
+
+    // Apply whatever the journal holds past the database's applied_seq, then delete
+    // its segments. Under a relaxed sync policy the database can be ahead of the
+    // journal; numbering then continues after applied_seq.
+    private long recover() throws SQLException, IOException {
+        try (Statement stmt = applyConn.createStatement();
+             ResultSet rs = stmt.executeQuery(APPLIED_SEQ_SQL)) {
+            appliedSeq = rs.next() ? rs.getLong(1) : 0;
+        }
+
+        long lastSeq = appliedSeq;
+        int recovered = 0;
+        List<OperationJournal.Operation> batch = new ArrayList<>(APPLY_BATCH_SIZE);
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            OperationJournal.Operation operation;
+            while ((operation = reader.next()) != null) {
+                if (operation.getSeq() <= appliedSeq) {
+                    continue;
+                }
+                batch.add(operation);
+                lastSeq = operation.getSeq();
+                recovered++;
+                if (batch.size() == APPLY_BATCH_SIZE) {
+                    apply(batch);
+                    batch.clear();
+                }
+            }
+            if (reader.hasTornTail()) {
+                System.out.println("Ignored an incomplete record at the end of " + journalPath);
+            }
+        }
+        if (!batch.isEmpty()) {
+            apply(batch);
+        }
+        if (recovered > 0) {
+            System.out.println("Recovered " + recovered + " ledger operations from " + journalPath);
+        }
+        // Everything in the segments is now in the database
+        OperationJournal.clear(journalPath);
+        return lastSeq;
+    }
+
+    private void loadAll() throws SQLException {
+        try (Statement stmt = applyConn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAD_ALL_SQL)) {
+            while (rs.next()) {
+                balances.put(rs.getString(1), new Balance(rs.getLong(2)));
+            }
+        }
+    }
+
+    // The balance in cents, or null if there is no such account. Accounts created
+    // after open are loaded on first use; nothing can be pending for them yet.
+    public Long balance(String accountNumber) throws SQLException {
+        Balance balance = balanceOf(accountNumber);
+        return balance == null ? null : balance.cents;
+    }
+
+    private Balance balanceOf(String accountNumber) throws SQLException {
+        Balance balance = balances.get(accountNumber);
+        if (balance == null) {
+            balance = loadOne(accountNumber);
+        }
+        return balance;
+    }
+
+    private Balance loadOne(String accountNumber) throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(LOAD_ONE_SQL);
+            pstmt.setString(1, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    balances.remove(accountNumber);
+                    return null;
+                }
+                Balance balance = new Balance(rs.getLong(1));
+                balances.put(accountNumber, balance);
+                return balance;
+            }
+        }
+    }
+
+    // Each returns null without changing anything when the account is missing
+    // (or, for withdraw and transfer, short of funds); otherwise a future that
+    // completes when the operation is durable
+
+    public CompletableFuture<Void> deposit(String accountNumber, long amount) throws SQLException {
+        Balance balance = balanceOf(accountNumber);
+        if (balance == null) {
+            return null;
+        }
+        CompletableFuture<Void> durable = journal.append(OperationJournal.Kind.DEPOSIT, accountNumber, "", amount);
+        balance.cents += amount;
+        return durable;
+    }
+
+    public CompletableFuture<Void> withdraw(String accountNumber, long amount) throws SQLException {
+        Balance balance = balanceOf(accountNumber);
+        if (balance == null || balance.cents < amount) {
+            return null;
+        }
+        CompletableFuture<Void> durable = journal.append(OperationJournal.Kind.WITHDRAWAL, accountNumber, "", amount);
+        balance.cents -= amount;
+        return durable;
+    }
+
+    public CompletableFuture<Void> transfer(String fromAccountNumber, String targetAccountNumber, long amount) throws SQLException {
+        Balance from = balanceOf(fromAccountNumber);
+        Balance target = balanceOf(targetAccountNumber);
+        if (from == null || target == null || from.cents < amount) {
+            return null;
+        }
+        // Both legs are one journal record, so they reach the database together
+        CompletableFuture<Void> durable = journal.append(OperationJournal.Kind.TRANSFER, fromAccountNumber, targetAccountNumber, amount);
+        from.cents -= amount;
+        target.cents += amount;
+        return durable;
+    }
+
+    // Take back an operation whose journal write failed, with the accounts locked
+    // again. A failed record is never handed to the applier, so only memory has
+    // to be put right. Later operations on these accounts fail too, since the
+    // journal refuses everything after a failed write, and are undone the same way.
+    public void undo(OperationJournal.Kind kind, String accountNumber, String targetAccountNumber, long amount) {
+        Balance balance = balances.get(accountNumber);
+        switch (kind) {
+            case DEPOSIT:
+                if (balance != null) {
+                    balance.cents -= amount;
+                }
+                break;
+            case WITHDRAWAL:
+                if (balance != null) {
+                    balance.cents += amount;
+                }
+                break;
+            default:
+                Balance target = balances.get(targetAccountNumber);
+                if (balance != null) {
+                    balance.cents += amount;
+                }
+                if (target != null) {
+                    target.cents -= amount;
+                }
+                break;
+        }
+    }
+
+    // Block until every operation appended so far is in the database. Once the
+    // journal has failed, the operations it never wrote were refused and undone,
+    // so only those it did write are waited for.
+    public void awaitApplied() throws SQLException {
+        long target = journal.getLastSeq();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(APPLY_TIMEOUT_MILLIS);
+        synchronized (this) {
+            while (appliedSeq < (journal.hasFailed() ? Math.min(target, journal.getWrittenSeq()) : target)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for ledger operations to reach the database");
+                }
+                try {
+                    // A failing write wakes nobody, so look at the journal again now and then
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, FAILURE_CHECK_NANOS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for ledger operations to reach the database", e);
+                }
+            }
+        }
+    }
+
+    // Forget balances after SQL changed them directly; the next use re-reads them
+    // (or finds the account deleted). Borrows nothing, so callers may still hold
+    // a pooled connection.
+    public void evict(String accountNumber) {
+        balances.remove(accountNumber);
+    }
+
+    public void evictRange(String fromExclusive, String toInclusive) {
+        balances.subMap(fromExclusive, false, toInclusive, true).clear();
+    }
+
+    public synchronized long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    public long getPendingOperations() {
+        return journal.getLastSeq() - getAppliedSeq();
+    }
+
+    public OperationJournal getJournal() {
+        return journal;
+    }
+
+    private void runApplier() {
+        List<OperationJournal.Operation> batch = new ArrayList<>(APPLY_BATCH_SIZE);
+        while (running || !toApply.isEmpty()) {
+            try {
+                OperationJournal.Operation first = toApply.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue; // close() interrupts an idle applier; loop around to drain what is left
+            }
+            toApply.drainTo(batch, APPLY_BATCH_SIZE - 1);
+
+            // Keep retrying the same batch; the operations are durable in the
+            // journal, so giving up would only delay them until the next start
+            while (true) {
+                try {
+                    apply(batch);
+                    journal.release(getAppliedSeq());
+                    break;
+                } catch (SQLException e) {
+                    System.err.println("Applying ledger operations failed, retrying: " + e.getMessage());
+                    if (!running) {
+                        return;
+                    }
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ie) {
+                        // Retry at once
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void apply(List<OperationJournal.Operation> batch) throws SQLException {
+        applyConn.setAutoCommit(false);
+        try (PreparedStatement balance = applyConn.prepareStatement(APPLY_BALANCE_SQL);
+             PreparedStatement ledger = applyConn.prepareStatement(INSERT_TRANSACTION_SQL);
+             PreparedStatement mark = applyConn.prepareStatement(MARK_APPLIED_SQL)) {
+            for (OperationJournal.Operation operation : batch) {
+                String timestamp = TIMESTAMP.format(Instant.ofEpochMilli(operation.getTimestampMillis()));
+                switch (operation.getKind()) {
+                    case DEPOSIT:
+                        addBalance(balance, operation.getAccount(), operation.getAmount());
+                        addLedgerRow(ledger, operation.getAccount(), "DEPOSIT", operation.getAmount(), timestamp);
+                        break;
+                    case WITHDRAWAL:
+                        addBalance(balance, operation.getAccount(), -operation.getAmount());
+                        addLedgerRow(ledger, operation.getAccount(), "WITHDRAWAL", operation.getAmount(), timestamp);
+                        break;
+                    default:
+                        addBalance(balance, operation.getAccount(), -operation.getAmount());
+                        addBalance(balance, operation.getTarget(), operation.getAmount());
+                        addLedgerRow(ledger, operation.getAccount(), "TRANSFER_OUT", operation.getAmount(), timestamp);
+                        addLedgerRow(ledger, operation.getTarget(), "TRANSFER_IN", operation.getAmount(), timestamp);
+                        break;
+                }
+            }
+            balance.executeBatch();
+            ledger.executeBatch();
+
+            long lastSeq = batch.get(batch.size() - 1).getSeq();
+            mark.setLong(1, lastSeq);
+            mark.executeUpdate();
+            applyConn.commit();
+            synchronized (this) {
+                appliedSeq = lastSeq;
+                notifyAll();
+            }
+        } catch (SQLException e) {
+            applyConn.rollback();
+            throw e;
+        } finally {
+            applyConn.setAutoCommit(true);
+        }
+    }
+
+    private static void addBalance(PreparedStatement pstmt, String accountNumber, long delta) throws SQLException {
+        pstmt.setLong(1, delta);
+        pstmt.setString(2, accountNumber);
+        pstmt.addBatch();
+    }
+
+    private static void addLedgerRow(PreparedStatement pstmt, String accountNumber, String type, long amount, String timestamp) throws SQLException {
+        pstmt.setString(1, accountNumber);
+        pstmt.setString(2, type);
+        pstmt.setLong(3, amount);
+        pstmt.setString(4, timestamp);
+        pstmt.addBatch();
+    }
+
+    // Write out the journal, apply everything to the database and, if that all
+    // went through, delete the journal segments
+    @Override
+    public void close() {
+        journal.close();
+        running = false;
+        applier.interrupt();
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (getPendingOperations() == 0) {
+                OperationJournal.clear(journalPath);
+            }
+        } catch (IOException e) {
+            // The operations are already applied; the next open skips them
+        }
+        try {
+            applyConn.close();
+        } catch (SQLException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    // Guarded by the account's AccountLocks stripe
+    private static final class Balance {
+        long cents;
+
+        Balance(long cents) {
+            this.cents = cents;
+        }
+    }
+}
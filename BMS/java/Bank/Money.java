@@ -0,0 +1,79 @@
+package Bank;
+
+// Money is a primitive long count of cents everywhere: in the INTEGER *_cents
+// columns, in arithmetic and until it is formatted for display. Sums and
+// reconciliations are exact, and nothing on the ledger path allocates a decimal.
+public final class Money {
+    public static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    // Parse "12", "12.5" or "12.34" (optionally signed) into cents; more than two
+    // decimal places is rejected rather than silently rounded
+    public static long parse(String text) {
+        String s = text.trim();
+        int i = 0;
+        boolean negative = false;
+        if (i < s.length() && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        try {
+            long units = 0;
+            int unitDigits = 0;
+            while (i < s.length() && Character.isDigit(s.charAt(i))) {
+                units = Math.addExact(Math.multiplyExact(units, 10), s.charAt(i) - '0');
+                unitDigits++;
+                i++;
+            }
+
+            long cents = 0;
+            int centDigits = 0;
+            if (i < s.length() && s.charAt(i) == '.') {
+                i++;
+                while (i < s.length() && Character.isDigit(s.charAt(i)) && centDigits < 2) {
+                    cents = cents * 10 + (s.charAt(i) - '0');
+                    centDigits++;
+                    i++;
+                }
+            }
+            if (i != s.length() || unitDigits + centDigits == 0) {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+            if (centDigits == 1) {
+                cents *= 10;
+            }
+
+            long total = Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), cents);
+            return negative ? -total : total;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    // "1234.50" for 123450; callers add the currency sign
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    public static StringBuilder appendTo(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+        }
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long remainder = Math.abs(cents % CENTS_PER_UNIT);
+        out.append(units).append('.');
+        if (remainder < 10) {
+            out.append('0');
+        }
+        return out.append(remainder);
+    }
+
+    // A percentage such as 3.25 as basis points (325), rounded to the nearest one.
+    // Interest is applied in basis points so the SQL that posts it stays integral.
+    public static long basisPoints(double percent) {
+        return Math.round(percent * 100);
+    }
+}
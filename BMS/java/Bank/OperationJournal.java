@@ -0,0 +1,509 @@
+package Bank;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only log of ledger operations for the MemoryLedger, kept as a directory
+// of fixed-size segment files. Each segment is preallocated and memory-mapped;
+// a single writer thread copies whole group commits into the mapping and forces
+// them to disk as the JournalSyncPolicy says, after which every operation in the
+// batch is handed to the onWritten consumer and acknowledged. When a record no
+// longer fits, the segment is forced and the next one is started, named after
+// its first sequence number. Segments whose operations have all been applied to
+// the database are deleted by release(). Each record is
+//
+//     int length | int crc32c | long seq | long timestampMillis | byte kind | long amount | UTF account | UTF target
+//
+// where the checksum covers everything after it. The preallocated zeros end a
+// segment. A record cut short or garbled by a crash is ignored at the end of the
+// last segment and is an error anywhere else. After a write fails, whatever the
+// failed batch had already put in the segments is zeroed again and the journal
+// refuses all further appends.
+public class OperationJournal implements AutoCloseable {
+    public static final int MAX_BATCH_SIZE = 1024;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 8; // length and checksum
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    public enum Kind {
+        DEPOSIT, WITHDRAWAL, TRANSFER
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final JournalSyncPolicy syncPolicy;
+    private final Consumer<List<Operation>> onWritten;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedDeque<Segment> closedSegments = new ConcurrentLinkedDeque<>(); // Oldest first
+    private final Thread writer;
+    private long lastSeq; // Guarded by this
+    private volatile IOException failure;
+    private volatile long writtenSeq; // Last operation handed to onWritten
+    private volatile boolean running = true;
+
+    // Only touched by the writer thread once it has started
+    private Path activePath;
+    private MappedByteBuffer active;
+    private long activeLastSeq;
+    private int forcedPosition;
+    private long lastForceNanos = System.nanoTime();
+
+    // Start a journal in directory, which must hold no segments (recover and
+    // clear() it first), numbering new operations after lastSeq
+    public OperationJournal(Path directory, long lastSeq, long segmentBytes, JournalSyncPolicy syncPolicy,
+                            Consumer<List<Operation>> onWritten) throws IOException {
+        if (segmentBytes < HEADER_SIZE + MAX_RECORD_SIZE || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between " + (HEADER_SIZE + MAX_RECORD_SIZE)
+                    + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        Files.createDirectories(directory);
+        if (!listSegments(directory).isEmpty()) {
+            throw new IOException("Journal directory " + directory + " still holds segments; recover it first");
+        }
+        this.directory = directory;
+        this.segmentBytes = (int) segmentBytes;
+        this.syncPolicy = syncPolicy;
+        this.onWritten = onWritten;
+        this.lastSeq = lastSeq;
+        this.writtenSeq = lastSeq;
+        openSegment(lastSeq + 1);
+        this.writer = new Thread(this::runWriter, "operation-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Queue an operation; the future completes once it is written under the sync
+    // policy. Callers that need operations on one account in order append them
+    // under its lock.
+    public synchronized CompletableFuture<Void> append(Kind kind, String account, String target, long amount) throws SQLException {
+        if (failure != null) {
+            throw new SQLException("Operation journal failed: " + failure.getMessage(), failure);
+        }
+        if (!running) {
+            throw new SQLException("Operation journal is closed");
+        }
+        Pending pending = new Pending(new Operation(++lastSeq, System.currentTimeMillis(), kind, account, target, amount));
+        queue.add(pending);
+        return pending.done;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    // Operations after this one were never written and never will be once the
+    // journal has failed
+    public long getWrittenSeq() {
+        return writtenSeq;
+    }
+
+    public boolean hasFailed() {
+        return failure != null;
+    }
+
+    public JournalSyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    // Segments on disk, including the one being written
+    public int getSegmentCount() {
+        return closedSegments.size() + 1;
+    }
+
+    // Wait for an appended operation to be written
+    public static void await(CompletableFuture<Void> written) throws SQLException {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the operation journal", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error writing operation journal", e.getCause());
+        }
+    }
+
+    // Delete the finished segments holding nothing after appliedSeq. The segment
+    // being written is kept even when all of it is applied.
+    public void release(long appliedSeq) {
+        Segment oldest;
+        while ((oldest = closedSegments.peekFirst()) != null && oldest.lastSeq <= appliedSeq) {
+            closedSegments.pollFirst();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                // Everything in it is applied, so the next recovery skips it and clears it
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long pollMillis = syncPolicy.getIntervalMillis() > 0 ? Math.min(100, syncPolicy.getIntervalMillis()) : 100;
+        while (running || !queue.isEmpty()) {
+            Pending first = null;
+            try {
+                first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // close() interrupts an idle writer; loop around to drain what is left
+            }
+            if (first != null) {
+                // Whatever queued up during the last write goes into this one
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                write(batch);
+                batch.clear();
+            }
+            if (!syncPolicy.isAlways() && failure == null
+                    && syncPolicy.isDue(active.position() - forcedPosition, (System.nanoTime() - lastForceNanos) / 1_000_000)) {
+                try {
+                    force();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure == null) {
+            try {
+                force();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Operation> operations = new ArrayList<>(batch.size());
+        MappedByteBuffer firstSegment = active;
+        int batchStart = active.position();
+        List<MappedByteBuffer> laterSegments = new ArrayList<>(1);
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            CRC32C crc = new CRC32C();
+            for (Pending pending : batch) {
+                record.reset();
+                pending.operation.writeTo(recordOut);
+                if (record.size() > MAX_RECORD_SIZE) {
+                    throw new IOException("Journal record of " + record.size() + " bytes is too large");
+                }
+                if (active.remaining() < HEADER_SIZE + record.size()) {
+                    roll(pending.operation.getSeq());
+                    laterSegments.add(active);
+                }
+                byte[] payload = record.toByteArray();
+                crc.reset();
+                crc.update(payload);
+                active.putInt(payload.length);
+                active.putInt((int) crc.getValue());
+                active.put(payload);
+                activeLastSeq = pending.operation.getSeq();
+                operations.add(pending.operation);
+            }
+            if (syncPolicy.isAlways()) {
+                force();
+            }
+        } catch (IOException e) {
+            failure = e;
+            erase(firstSegment, batchStart);
+            for (MappedByteBuffer segment : laterSegments) {
+                erase(segment, 0);
+            }
+            SQLException error = new SQLException("Operation journal failed: " + e.getMessage(), e);
+            for (Pending pending : batch) {
+                pending.done.completeExceptionally(error);
+            }
+            return;
+        }
+        writtenSeq = activeLastSeq;
+        onWritten.accept(operations);
+        for (Pending pending : batch) {
+            pending.done.complete(null);
+        }
+    }
+
+    // Zero what a failed batch put in a segment from offset on. The mapping is
+    // shared with the file, so records left there could reach disk whenever the
+    // OS writes the page back, and recovery would replay operations whose callers
+    // were told they failed.
+    private static void erase(MappedByteBuffer segment, int offset) {
+        int end = segment.position();
+        for (int i = offset; i < end; i++) {
+            segment.put(i, (byte) 0);
+        }
+        segment.position(offset);
+        try {
+            segment.force(offset, end - offset);
+        } catch (UncheckedIOException e) {
+            // The zeros are still in the shared pages and go to disk with them
+        }
+    }
+
+    private void force() throws IOException {
+        int position = active.position();
+        if (position > forcedPosition) {
+            try {
+                active.force(forcedPosition, position - forcedPosition);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            forcedPosition = position;
+        }
+        lastForceNanos = System.nanoTime();
+    }
+
+    // Finish the active segment and start the next at firstSeq
+    private void roll(long firstSeq) throws IOException {
+        force();
+        closedSegments.addLast(new Segment(activePath, activeLastSeq));
+        openSegment(firstSeq);
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(segmentName(firstSeq));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Writing the last byte sizes the file; the rest reads back as zeros
+            channel.write(ByteBuffer.allocate(1), segmentBytes - 1);
+            channel.force(true);
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        syncDirectory(directory);
+        activePath = path;
+        activeLastSeq = firstSeq - 1;
+        forcedPosition = 0;
+    }
+
+    // Stop accepting operations, write and force everything already queued, then
+    // stop the writer
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Delete every segment once all of them have been applied elsewhere
+    public static void clear(Path directory) throws IOException {
+        for (Path segment : listSegments(directory)) {
+            Files.delete(segment);
+        }
+        syncDirectory(directory);
+    }
+
+    // The segment files in directory in sequence order
+    static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted() // Zero-padded, so name order is sequence order
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String segmentName(long firstSeq) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX);
+    }
+
+    // Make a new or deleted segment's directory entry durable
+    private static void syncDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform opens directories; the segment contents are still forced
+        }
+    }
+
+    // Sequential reader over every segment in a journal directory; next() returns
+    // null after the last intact record
+    public static final class Reader implements AutoCloseable {
+        private final List<Path> segments;
+        private int nextSegment;
+        private Path currentPath;
+        private MappedByteBuffer current;
+        private boolean tornTail;
+
+        public Reader(Path directory) throws IOException {
+            this.segments = listSegments(directory);
+        }
+
+        public Operation next() throws IOException {
+            while (true) {
+                if (current == null) {
+                    if (nextSegment == segments.size()) {
+                        return null;
+                    }
+                    currentPath = segments.get(nextSegment++);
+                    try (FileChannel channel = FileChannel.open(currentPath, StandardOpenOption.READ)) {
+                        current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                }
+                Operation operation = readRecord();
+                if (operation != null) {
+                    return operation;
+                }
+                current = null;
+            }
+        }
+
+        // Whether reading stopped at a damaged record at the end of the last segment
+        public boolean hasTornTail() {
+            return tornTail;
+        }
+
+        public int getSegmentCount() {
+            return segments.size();
+        }
+
+        private Operation readRecord() throws IOException {
+            if (current.remaining() < HEADER_SIZE) {
+                return null;
+            }
+            int offset = current.position();
+            int length = current.getInt();
+            int checksum = current.getInt();
+            if (length == 0) {
+                return null; // The preallocated zeros after the last record
+            }
+            if (length > 0 && length <= MAX_RECORD_SIZE && length <= current.remaining()) {
+                byte[] payload = new byte[length];
+                current.get(payload);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() == checksum) {
+                    return Operation.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+                }
+            }
+            if (nextSegment < segments.size()) {
+                throw new IOException("Journal segment " + currentPath + " is damaged at offset " + offset
+                        + " but later segments follow it");
+            }
+            tornTail = true; // The write a crash interrupted
+            return null;
+        }
+
+        @Override
+        public void close() {
+            current = null;
+        }
+    }
+
+    public static final class Operation {
+        private final long seq;
+        private final long timestampMillis;
+        private final Kind kind;
+        private final String account;
+        private final String target; // "" unless kind is TRANSFER
+        private final long amount; // Cents
+
+        Operation(long seq, long timestampMillis, Kind kind, String account, String target, long amount) {
+            this.seq = seq;
+            this.timestampMillis = timestampMillis;
+            this.kind = kind;
+            this.account = account;
+            this.target = target;
+            this.amount = amount;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(seq);
+            out.writeLong(timestampMillis);
+            out.writeByte(kind.ordinal());
+            out.writeLong(amount);
+            out.writeUTF(account);
+            out.writeUTF(target);
+        }
+
+        static Operation readFrom(DataInputStream in) throws IOException {
+            long seq = in.readLong();
+            long timestampMillis = in.readLong();
+            Kind kind = Kind.values()[in.readByte()];
+            long amount = in.readLong();
+            return new Operation(seq, timestampMillis, kind, in.readUTF(), in.readUTF(), amount);
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getAccount() {
+            return account;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long lastSeq;
+
+        Segment(Path path, long lastSeq) {
+            this.path = path;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    private static final class Pending {
+        final Operation operation;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(Operation operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package Bank;
+
+// A password hashing scheme for the Authenticator. Stored hashes carry their
+// scheme and cost, so a scheme recognizes its own hashes and verifies them at
+// whatever cost they were made with; isCurrent() tells whether one is at this
+// instance's cost and should be kept as is.
+public interface PasswordKdf {
+    String hash(String password);
+
+    boolean recognizes(String stored);
+
+    boolean verify(String password, String stored);
+
+    boolean isCurrent(String stored);
+
+    String getName();
+}
@@ -0,0 +1,107 @@
+package Bank;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+
+// Salted PBKDF2-HMAC-SHA256, stored as
+//
+//     pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>
+//
+// The iteration count is the cost: each doubling doubles the time of a login and
+// of every guess. The key factory is reused per thread.
+public final class Pbkdf2PasswordKdf implements PasswordKdf {
+    public static final int DEFAULT_ITERATIONS = 600_000; // OWASP's recommendation for PBKDF2-HMAC-SHA256
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        }
+    });
+
+    private final int iterations;
+
+    public Pbkdf2PasswordKdf() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public Pbkdf2PasswordKdf(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return hash(password, salt);
+    }
+
+    // With a chosen salt, for reproducible seed data
+    String hash(String password, byte[] salt) {
+        byte[] hash = derive(password, salt, iterations, HASH_BITS);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    @Override
+    public boolean recognizes(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean verify(String password, String stored) {
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (storedIterations <= 0 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, derive(password, salt, storedIterations, expected.length * 8));
+        } catch (IllegalArgumentException e) {
+            return false; // Not a number or not base64
+        }
+    }
+
+    @Override
+    public boolean isCurrent(String stored) {
+        return stored.startsWith(PREFIX + iterations + "$");
+    }
+
+    @Override
+    public String getName() {
+        return "pbkdf2:" + iterations;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalStateException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
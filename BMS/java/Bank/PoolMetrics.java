@@ -0,0 +1,72 @@
+package Bank;
+
+// Point-in-time snapshot of ConnectionPool usage
+public final class PoolMetrics {
+    private final int maxSize;
+    private final int active;
+    private final int idle;
+    private final int open;
+    private final long borrows;
+    private final long totalWaitNanos;
+    private final long statementHits;
+    private final long statementMisses;
+
+    PoolMetrics(int maxSize, int active, int idle, int open, long borrows, long totalWaitNanos,
+                long statementHits, long statementMisses) {
+        this.maxSize = maxSize;
+        this.active = active;
+        this.idle = idle;
+        this.open = open;
+        this.borrows = borrows;
+        this.totalWaitNanos = totalWaitNanos;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getOpen() {
+        return open;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public double getAverageWaitMillis() {
+        return borrows == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / borrows;
+    }
+
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+
+    public double getStatementHitRate() {
+        long lookups = statementHits + statementMisses;
+        return lookups == 0 ? 0.0 : (double) statementHits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d open=%d/%d borrows=%d avgWait=%.3fms stmtHitRate=%.1f%%",
+                active, idle, open, maxSize, borrows, getAverageWaitMillis(), getStatementHitRate() * 100);
+    }
+}
@@ -0,0 +1,91 @@
+package Bank;
+
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A connection borrowed from the ConnectionPool. Closing it returns it to the pool.
+// Statements handed out by prepare() are cached by SQL text and owned by this
+// connection, so callers must not close them.
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection conn;
+    private final Map<String, PreparedStatement> statementCache;
+    private boolean broken = false;
+
+    PooledConnection(ConnectionPool pool, Connection conn, int statementCacheSize) {
+        this.pool = pool;
+        this.conn = conn;
+        // Access-ordered map so the least recently used statement is evicted first
+        this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    closeStatement(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return conn;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statementCache.get(sql);
+        if (pstmt != null) {
+            pool.recordStatementLookup(true);
+            pstmt.clearParameters();
+            return pstmt;
+        }
+        pool.recordStatementLookup(false);
+        pstmt = conn.prepareStatement(sql);
+        statementCache.put(sql, pstmt);
+        return pstmt;
+    }
+
+    // Start a transaction; close() rolls back anything left uncommitted
+    public void begin() throws SQLException {
+        conn.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            broken = true;
+        }
+        pool.release(this, broken);
+    }
+
+    void closeQuietly() {
+        for (PreparedStatement pstmt : statementCache.values()) {
+            closeStatement(pstmt);
+        }
+        statementCache.clear();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Nothing useful to do while discarding the connection
+        }
+    }
+
+    private static void closeStatement(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            // Ignore, the statement is being discarded
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package Bank;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// How often a compare-and-swap update is retried after losing to another writer,
+// and how long to back off in between. The pause grows exponentially from
+// baseBackoffMillis up to maxBackoffMillis, and a random share of it is used
+// ("full jitter") so writers that collided once don't collide again in lockstep.
+public final class RetryPolicy {
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 1, 50);
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts <= 0 || baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis) {
+            throw new IllegalArgumentException("Need at least one attempt and 0 <= base backoff <= max backoff");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseBackoffMillis() {
+        return baseBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    // Sleep before the attempt after the given (1-based) failed one. Returns false
+    // if the thread was interrupted, with its interrupt flag restored.
+    public boolean pause(int failedAttempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(failedAttempt - 1, 20));
+        if (ceiling <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "maxAttempts=" + maxAttempts + " backoff=" + baseBackoffMillis + ".." + maxBackoffMillis + "ms";
+    }
+}
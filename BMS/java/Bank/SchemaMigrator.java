@@ -0,0 +1,367 @@
+package Bank;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Versioned schema migrations. The schema version lives in SQLite's PRAGMA
+// user_version; every migration newer than it runs in its own transaction
+// together with the version bump, so a failed migration leaves the database
+// at the previous version. Append new migrations, never edit applied ones.
+public class SchemaMigrator {
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        MIGRATIONS.add(new Migration(1, "Base tables",
+                "CREATE TABLE IF NOT EXISTS accounts (" +
+                        "account_number TEXT PRIMARY KEY, " +
+                        "name TEXT NOT NULL, " +
+                        "password TEXT NOT NULL, " +
+                        "balance REAL DEFAULT 0.0, " +
+                        "is_blocked BOOLEAN DEFAULT FALSE, " +
+                        "date_of_birth TEXT, " +
+                        "address TEXT, " +
+                        "nationality TEXT, " +
+                        "nid_number TEXT, " +
+                        "phone_number TEXT)",
+                "CREATE TABLE IF NOT EXISTS transactions (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "account_number TEXT, " +
+                        "type TEXT, " +
+                        "amount REAL, " +
+                        "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (account_number) REFERENCES accounts(account_number))",
+                "CREATE TABLE IF NOT EXISTS admins (" +
+                        "account_number TEXT PRIMARY KEY, " +
+                        "password TEXT NOT NULL)",
+                "CREATE TABLE IF NOT EXISTS loans (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "account_number TEXT, " +
+                        "loan_amount REAL, " +
+                        "remaining_amount REAL, " +
+                        "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (account_number) REFERENCES accounts(account_number))",
+                "CREATE TABLE IF NOT EXISTS interest_runs (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "rate REAL NOT NULL, " +
+                        "status TEXT NOT NULL, " +
+                        "last_account TEXT NOT NULL, " +
+                        "accounts_posted INTEGER DEFAULT 0, " +
+                        "total_accounts INTEGER DEFAULT 0, " +
+                        "started_at DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                        "finished_at DATETIME)"));
+
+        MIGRATIONS.add(new Migration(2, "Indexes for history, activity and loan lookups",
+                // Per-account history and the dashboard's latest-activity query
+                "CREATE INDEX IF NOT EXISTS idx_transactions_account_time ON transactions (account_number, timestamp)",
+                // Bank-wide history ordered by time
+                "CREATE INDEX IF NOT EXISTS idx_transactions_time ON transactions (timestamp)",
+                // Active-loan lookup and per-account outstanding loan total
+                "CREATE INDEX IF NOT EXISTS idx_loans_account_remaining ON loans (account_number, remaining_amount)"));
+
+        MIGRATIONS.add(new Migration(3, "Running bank totals maintained by triggers",
+                "CREATE TABLE IF NOT EXISTS bank_totals (" +
+                        "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                        "total_balance REAL NOT NULL DEFAULT 0, " +
+                        "total_loans REAL NOT NULL DEFAULT 0, " +
+                        "account_count INTEGER NOT NULL DEFAULT 0, " +
+                        "reconciled_at DATETIME)",
+                // Seed from the current data; the triggers keep it current from here on
+                "INSERT OR REPLACE INTO bank_totals (id, total_balance, total_loans, account_count) SELECT 1, " +
+                        "(SELECT COALESCE(SUM(balance), 0) FROM accounts), " +
+                        "(SELECT COALESCE(SUM(remaining_amount), 0) FROM loans), " +
+                        "(SELECT COUNT(*) FROM accounts)",
+                "CREATE TRIGGER IF NOT EXISTS trg_accounts_totals_insert AFTER INSERT ON accounts BEGIN " +
+                        "UPDATE bank_totals SET total_balance = total_balance + COALESCE(NEW.balance, 0), account_count = account_count + 1 WHERE id = 1; END",
+                "CREATE TRIGGER IF NOT EXISTS trg_accounts_totals_delete AFTER DELETE ON accounts BEGIN " +
+                        "UPDATE bank_totals SET total_balance = total_balance - COALESCE(OLD.balance, 0), account_count = account_count - 1 WHERE id = 1; END",
+                "CREATE TRIGGER IF NOT EXISTS trg_accounts_totals_update AFTER UPDATE OF balance ON accounts " +
+                        "WHEN NEW.balance IS NOT OLD.balance BEGIN " +
+                        "UPDATE bank_totals SET total_balance = total_balance + COALESCE(NEW.balance, 0) - COALESCE(OLD.balance, 0) WHERE id = 1; END",
+                "CREATE TRIGGER IF NOT EXISTS trg_loans_totals_insert AFTER INSERT ON loans BEGIN " +
+                        "UPDATE bank_totals SET total_loans = total_loans + COALESCE(NEW.remaining_amount, 0) WHERE id = 1; END",
+                "CREATE TRIGGER IF NOT EXISTS trg_loans_totals_delete AFTER DELETE ON loans BEGIN " +
+                        "UPDATE bank_totals SET total_loans = total_loans - COALESCE(OLD.remaining_amount, 0) WHERE id = 1; END",
+                "CREATE TRIGGER IF NOT EXISTS trg_loans_totals_update AFTER UPDATE OF remaining_amount ON loans " +
+                        "WHEN NEW.remaining_amount IS NOT OLD.remaining_amount BEGIN " +
+                        "UPDATE bank_totals SET total_loans = total_loans + COALESCE(NEW.remaining_amount, 0) - COALESCE(OLD.remaining_amount, 0) WHERE id = 1; END"));
+
+        // SQLite cannot change a column's type in place, so each money table is
+        // rebuilt with INTEGER cents columns and its rows copied across. Dropping the
+        // old tables drops their indexes and triggers, which are recreated here.
+        MIGRATIONS.add(new Migration(4, "Store money as INTEGER cents",
+                "CREATE TABLE accounts_cents (" +
+                        "account_number TEXT PRIMARY KEY, " +
+                        "name TEXT NOT NULL, " +
+                        "password TEXT NOT NULL, " +
+                        "balance_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "is_blocked BOOLEAN DEFAULT FALSE, " +
+                        "date_of_birth TEXT, " +
+                        "address TEXT, " +
+                        "nationality TEXT, " +
+                        "nid_number TEXT, " +
+                        "phone_number TEXT)",
+                "INSERT INTO accounts_cents (account_number, name, password, balance_cents, is_blocked, date_of_birth, address, nationality, nid_number, phone_number) " +
+                        "SELECT account_number, name, password, CAST(ROUND(COALESCE(balance, 0) * 100) AS INTEGER), is_blocked, date_of_birth, address, nationality, nid_number, phone_number FROM accounts",
+                "DROP TABLE accounts",
+                "ALTER TABLE accounts_cents RENAME TO accounts",
+
+                "CREATE TABLE transactions_cents (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "account_number TEXT, " +
+                        "type TEXT, " +
+                        "amount_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (account_number) REFERENCES accounts(account_number))",
+                "INSERT INTO transactions_cents (id, account_number, type, amount_cents, timestamp) " +
+                        "SELECT id, account_number, type, CAST(ROUND(COALESCE(amount, 0) * 100) AS INTEGER), timestamp FROM transactions",
+                "DROP TABLE transactions",
+                "ALTER TABLE transactions_cents RENAME TO transactions",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_account_time ON transactions (account_number, timestamp)",
+                "CREATE INDEX IF NOT EXISTS idx_transactions_time ON transactions (timestamp)",
+
+                "CREATE TABLE loans_cents (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "account_number TEXT, " +
+                        "loan_amount_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "remaining_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (account_number) REFERENCES accounts(account_number))",
+                "INSERT INTO loans_cents (id, account_number, loan_amount_cents, remaining_cents, timestamp) " +
+                        "SELECT id, account_number, CAST(ROUND(COALESCE(loan_amount, 0) * 100) AS INTEGER), " +
+                        "CAST(ROUND(COALESCE(remaining_amount, 0) * 100) AS INTEGER), timestamp FROM loans",
+                "DROP TABLE loans",
+                "ALTER TABLE loans_cents RENAME TO loans",
+                "CREATE INDEX IF NOT EXISTS idx_loans_account_remaining ON loans (account_number, remaining_cents)",
+
+                // The totals are reseeded from the converted rows, so they start exact
+                "DROP TABLE bank_totals",
+                "CREATE TABLE bank_totals (" +
+                        "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                        "total_balance_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "total_loans_cents INTEGER NOT NULL DEFAULT 0, " +
+                        "account_count INTEGER NOT NULL DEFAULT 0, " +
+                        "reconciled_at DATETIME)",
+                "INSERT INTO bank_totals (id, total_balance_cents, total_loans_cents, account_count) SELECT 1, " +
+                        "(SELECT COALESCE(SUM(balance_cents), 0) FROM accounts), " +
+                        "(SELECT COALESCE(SUM(remaining_cents), 0) FROM loans), " +
+                        "(SELECT COUNT(*) FROM accounts)",
+                "CREATE TRIGGER trg_accounts_totals_insert AFTER INSERT ON accounts BEGIN " +
+                        "UPDATE bank_totals SET total_balance_cents = total_balance_cents + NEW.balance_cents, account_count = account_count + 1 WHERE id = 1; END",
+                "CREATE TRIGGER trg_accounts_totals_delete AFTER DELETE ON accounts BEGIN " +
+                        "UPDATE bank_totals SET total_balance_cents = total_balance_cents - OLD.balance_cents, account_count = account_count - 1 WHERE id = 1; END",
+                "CREATE TRIGGER trg_accounts_totals_update AFTER UPDATE OF balance_cents ON accounts " +
+                        "WHEN NEW.balance_cents != OLD.balance_cents BEGIN " +
+                        "UPDATE bank_totals SET total_balance_cents = total_balance_cents + NEW.balance_cents - OLD.balance_cents WHERE id = 1; END",
+                "CREATE TRIGGER trg_loans_totals_insert AFTER INSERT ON loans BEGIN " +
+                        "UPDATE bank_totals SET total_loans_cents = total_loans_cents + NEW.remaining_cents WHERE id = 1; END",
+                "CREATE TRIGGER trg_loans_totals_delete AFTER DELETE ON loans BEGIN " +
+                        "UPDATE bank_totals SET total_loans_cents = total_loans_cents - OLD.remaining_cents WHERE id = 1; END",
+                "CREATE TRIGGER trg_loans_totals_update AFTER UPDATE OF remaining_cents ON loans " +
+                        "WHEN NEW.remaining_cents != OLD.remaining_cents BEGIN " +
+                        "UPDATE bank_totals SET total_loans_cents = total_loans_cents + NEW.remaining_cents - OLD.remaining_cents WHERE id = 1; END"));
+
+        // Every write to a row bumps its version, so a writer that read the row
+        // can make its update conditional on nobody having changed it since
+        MIGRATIONS.add(new Migration(5, "Row versions for optimistic concurrency",
+                "ALTER TABLE accounts ADD COLUMN version INTEGER NOT NULL DEFAULT 0",
+                "ALTER TABLE loans ADD COLUMN version INTEGER NOT NULL DEFAULT 0"));
+
+        // Sequence number of the last MemoryLedger operation written to the tables,
+        // updated in the same transaction as the operations themselves
+        MIGRATIONS.add(new Migration(6, "Applied position of the in-memory ledger journal",
+                "CREATE TABLE ledger_journal_state (" +
+                        "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                        "applied_seq INTEGER NOT NULL DEFAULT 0)",
+                "INSERT INTO ledger_journal_state (id, applied_seq) VALUES (1, 0)"));
+
+        // Substring search over account identifiers and names for the admin
+        // screen: a trigram full-text index turns '%x%' into index lookups. Rows
+        // are found by account number rather than rowid, which accounts doesn't
+        // keep stable across a table rebuild. Only the searched columns fire the
+        // update trigger, so balance writes never touch the index.
+        MIGRATIONS.add(new Migration(7, "Trigram search index over accounts",
+                "CREATE VIRTUAL TABLE accounts_search USING fts5(" +
+                        "account_number, name, phone_number, nid_number, tokenize = 'trigram')",
+                "INSERT INTO accounts_search (account_number, name, phone_number, nid_number) " +
+                        "SELECT account_number, name, phone_number, nid_number FROM accounts",
+                "CREATE TRIGGER trg_accounts_search_insert AFTER INSERT ON accounts BEGIN " +
+                        "INSERT INTO accounts_search (account_number, name, phone_number, nid_number) " +
+                        "VALUES (NEW.account_number, NEW.name, NEW.phone_number, NEW.nid_number); END",
+                "CREATE TRIGGER trg_accounts_search_delete AFTER DELETE ON accounts BEGIN " +
+                        "DELETE FROM accounts_search WHERE accounts_search MATCH " + searchKey("OLD") +
+                        " AND account_number = OLD.account_number; END",
+                "CREATE TRIGGER trg_accounts_search_update AFTER UPDATE OF account_number, name, phone_number, nid_number ON accounts BEGIN " +
+                        "UPDATE accounts_search SET account_number = NEW.account_number, name = NEW.name, " +
+                        "phone_number = NEW.phone_number, nid_number = NEW.nid_number " +
+                        "WHERE accounts_search MATCH " + searchKey("OLD") + " AND account_number = OLD.account_number; END"));
+
+        // Transaction counts and sums by type in hourly, daily and monthly buckets,
+        // per account and bank-wide, kept by triggers like bank_totals. A bucket is
+        // a prefix of the UTC timestamp text ("2024-03-05 14", "2024-03-05",
+        // "2024-03"). Rows older than this migration are summed by the chunked
+        // backfill in TransactionRollups; rollup_backfill records how far it got,
+        // and the delete trigger only subtracts rows that are already counted.
+        MIGRATIONS.add(new Migration(8, "Time-bucketed transaction rollups", rollupStatements()));
+
+        // Number of accounts per balance bin for the analytics chart, kept by
+        // triggers. Bins run 1-2-5 per decade of cents; a balance change only
+        // writes here when it moves the account into another bin.
+        MIGRATIONS.add(new Migration(9, "Balance distribution maintained by triggers",
+                "CREATE TABLE balance_histogram (" +
+                        "bin INTEGER PRIMARY KEY, " +
+                        "accounts INTEGER NOT NULL)",
+                "INSERT INTO balance_histogram (bin, accounts) " +
+                        "SELECT " + balanceBin("balance_cents") + " AS bin, COUNT(*) FROM accounts GROUP BY bin",
+                "CREATE TRIGGER trg_accounts_histogram_insert AFTER INSERT ON accounts BEGIN " +
+                        histogramAdd("NEW") + " END",
+                "CREATE TRIGGER trg_accounts_histogram_delete AFTER DELETE ON accounts BEGIN " +
+                        histogramRemove("OLD") + " END",
+                "CREATE TRIGGER trg_accounts_histogram_update AFTER UPDATE OF balance_cents ON accounts " +
+                        "WHEN " + balanceBin("NEW.balance_cents") + " != " + balanceBin("OLD.balance_cents") + " BEGIN " +
+                        histogramRemove("OLD") + " " + histogramAdd("NEW") + " END"));
+
+        // Account search looks the whole query up as an exact phone or NID number
+        // before ranking, so those lookups must not scan accounts
+        MIGRATIONS.add(new Migration(10, "Indexes for exact phone and NID lookups",
+                "CREATE INDEX idx_accounts_phone ON accounts (phone_number)",
+                "CREATE INDEX idx_accounts_nid ON accounts (nid_number)"));
+    }
+
+    // 0 for no money, else digits * 10 + 1, 2 or 5 by the leading digit: the bin
+    // of 12345 cents is 51, [10000, 20000)
+    private static String balanceBin(String cents) {
+        return "(CASE WHEN " + cents + " <= 0 THEN 0 ELSE length(" + cents + ") * 10 + " +
+                "CASE WHEN substr(" + cents + ", 1, 1) = '1' THEN 1 WHEN substr(" + cents + ", 1, 1) < '5' THEN 2 ELSE 5 END END)";
+    }
+
+    private static String histogramAdd(String row) {
+        return "INSERT INTO balance_histogram (bin, accounts) VALUES (" + balanceBin(row + ".balance_cents") + ", 1) " +
+                "ON CONFLICT (bin) DO UPDATE SET accounts = accounts + 1;";
+    }
+
+    private static String histogramRemove(String row) {
+        return "UPDATE balance_histogram SET accounts = accounts - 1 WHERE bin = " + balanceBin(row + ".balance_cents") + ";";
+    }
+
+    // Table suffix and timestamp prefix length of each bucket size
+    private static String[] rollupStatements() {
+        String[][] grains = {{"hourly", "13"}, {"daily", "10"}, {"monthly", "7"}};
+        List<String> statements = new ArrayList<>();
+        StringBuilder onInsert = new StringBuilder();
+        StringBuilder onDelete = new StringBuilder();
+        for (String[] grain : grains) {
+            for (boolean perAccount : new boolean[]{true, false}) {
+                String table = (perAccount ? "account_rollups_" : "bank_rollups_") + grain[0];
+                String key = perAccount ? "account_number, bucket, type" : "bucket, type";
+                statements.add("CREATE TABLE " + table + " (" +
+                        (perAccount ? "account_number TEXT NOT NULL, " : "") +
+                        "bucket TEXT NOT NULL, " +
+                        "type TEXT NOT NULL, " +
+                        "tx_count INTEGER NOT NULL, " +
+                        "amount_cents INTEGER NOT NULL, " +
+                        "PRIMARY KEY (" + key + ")) WITHOUT ROWID");
+
+                String newKey = (perAccount ? "NEW.account_number, " : "") + "substr(NEW.timestamp, 1, " + grain[1] + "), NEW.type";
+                onInsert.append("INSERT INTO ").append(table).append(" (").append(key).append(", tx_count, amount_cents) ")
+                        .append("VALUES (").append(newKey).append(", 1, NEW.amount_cents) ")
+                        .append("ON CONFLICT (").append(key).append(") DO UPDATE SET tx_count = tx_count + 1, ")
+                        .append("amount_cents = amount_cents + excluded.amount_cents; ");
+
+                String oldMatch = (perAccount ? "account_number = OLD.account_number AND " : "") +
+                        "bucket = substr(OLD.timestamp, 1, " + grain[1] + ") AND type = OLD.type";
+                onDelete.append("UPDATE ").append(table).append(" SET tx_count = tx_count - 1, ")
+                        .append("amount_cents = amount_cents - OLD.amount_cents WHERE ").append(oldMatch).append("; ")
+                        .append("DELETE FROM ").append(table).append(" WHERE ").append(oldMatch).append(" AND tx_count = 0; ");
+            }
+        }
+        String counted = "NEW.timestamp IS NOT NULL AND NEW.type IS NOT NULL AND NEW.account_number IS NOT NULL";
+        statements.add("CREATE TABLE rollup_backfill (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                "last_id INTEGER NOT NULL, " + // Rows up to here are summed
+                "max_id INTEGER NOT NULL, " + // Rows after here were summed by the triggers
+                "updated_at DATETIME)");
+        statements.add("INSERT INTO rollup_backfill (id, last_id, max_id) SELECT 1, 0, COALESCE(MAX(id), 0) FROM transactions");
+        statements.add("CREATE TRIGGER trg_transactions_rollup_insert AFTER INSERT ON transactions " +
+                "WHEN " + counted + " BEGIN " + onInsert + "END");
+        statements.add("CREATE TRIGGER trg_transactions_rollup_delete AFTER DELETE ON transactions " +
+                "WHEN " + counted.replace("NEW.", "OLD.") + " AND (OLD.id > (SELECT max_id FROM rollup_backfill) " +
+                "OR OLD.id <= (SELECT last_id FROM rollup_backfill)) BEGIN " + onDelete + "END");
+        return statements.toArray(new String[0]);
+    }
+
+    // FTS5 query for a row's account number as a quoted phrase in its column
+    private static String searchKey(String row) {
+        return "'account_number : \"' || replace(" + row + ".account_number, '\"', '\"\"') || '\"'";
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    public static List<Migration> migrations() {
+        return Collections.unmodifiableList(MIGRATIONS);
+    }
+
+    // Bring the database up to the latest version; returns the number of migrations applied
+    public int migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+        if (current > latestVersion()) {
+            throw new SQLException("Database schema version " + current + " is newer than this application (" + latestVersion() + ")");
+        }
+
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : migration.statements) {
+                        stmt.execute(sql);
+                    }
+                    stmt.execute("PRAGMA user_version = " + migration.version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version + " (" + migration.description + ") failed: " + e.getMessage(), e);
+                }
+                System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    public int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
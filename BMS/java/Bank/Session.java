@@ -0,0 +1,70 @@
+package Bank;
+
+// One logged-in user of a SessionManager: a customer account or an admin. The
+// token is all a front-end has to keep. A session ends once it has been idle for
+// its idle timeout, reaches its maximum age or is closed; from then on touch()
+// fails and the manager's sweeper drops it.
+public final class Session {
+    private final String token;
+    private final String accountNumber;
+    private final boolean admin;
+    private final long createdAtMillis;
+    private final long expiresAtMillis; // Maximum age, however active
+    private final long idleTimeoutMillis;
+    private volatile long lastAccessMillis;
+    private volatile boolean closed;
+
+    Session(String token, String accountNumber, boolean admin, long nowMillis, long maxAgeMillis, long idleTimeoutMillis) {
+        this.token = token;
+        this.accountNumber = accountNumber;
+        this.admin = admin;
+        this.createdAtMillis = nowMillis;
+        this.expiresAtMillis = nowMillis + maxAgeMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.lastAccessMillis = nowMillis;
+    }
+
+    // Record a use; false if the session has already ended
+    public boolean touch() {
+        long now = System.currentTimeMillis();
+        if (!isActive(now)) {
+            return false;
+        }
+        lastAccessMillis = now;
+        return true;
+    }
+
+    public boolean isActive(long nowMillis) {
+        return !closed && nowMillis < expiresAtMillis && nowMillis - lastAccessMillis < idleTimeoutMillis;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    @Override
+    public String toString() {
+        // Never the token
+        return (admin ? "admin " : "account ") + accountNumber;
+    }
+}
@@ -0,0 +1,121 @@
+package Bank;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Maps session tokens to logged-in users so one process can serve many at once.
+// Tokens are 256 random bits, URL-safe. Sessions live in a concurrent map sized
+// up front for EXPECTED_SESSIONS so it doesn't rehash while users sign in, and a
+// sweeper thread drops ended sessions every sweep interval; get() treats an
+// ended session as gone even before the sweeper reaches it.
+public class SessionManager implements AutoCloseable {
+    public static final int EXPECTED_SESSIONS = 100_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(12);
+    public static final long DEFAULT_SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>(EXPECTED_SESSIONS);
+    private final long idleTimeoutMillis;
+    private final long maxAgeMillis;
+    private final ScheduledExecutorService sweeper;
+
+    public SessionManager() {
+        this(DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_AGE_MILLIS, DEFAULT_SWEEP_INTERVAL_MILLIS);
+    }
+
+    public SessionManager(long idleTimeoutMillis, long maxAgeMillis, long sweepIntervalMillis) {
+        if (idleTimeoutMillis <= 0 || maxAgeMillis <= 0 || sweepIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Timeouts and sweep interval must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Start a session for a customer account, or for an admin
+    public Session open(String accountNumber, boolean admin) {
+        while (true) {
+            Session session = new Session(newToken(), accountNumber, admin, System.currentTimeMillis(),
+                    maxAgeMillis, idleTimeoutMillis);
+            if (sessions.putIfAbsent(session.getToken(), session) == null) {
+                return session;
+            }
+        }
+    }
+
+    // The active session for token, marked as used; null if there is none
+    public Session get(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (!session.touch()) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session;
+    }
+
+    // Log out
+    public void close(String token) {
+        Session session = sessions.remove(token);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    // End every session of an account, e.g. once it is blocked or deleted.
+    // Returns how many there were.
+    public int closeAccount(String accountNumber) {
+        int closed = 0;
+        for (Session session : sessions.values()) {
+            if (!session.isAdmin() && session.getAccountNumber().equals(accountNumber)
+                    && sessions.remove(session.getToken(), session)) {
+                session.close();
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    // Drop every ended session; the sweeper calls this. Returns how many went.
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Session session : sessions.values()) {
+            if (!session.isActive(now) && sessions.remove(session.getToken(), session)) {
+                session.close();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Sessions held, including ended ones not yet swept
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,79 @@
+package Bank;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// The original scheme: unsalted SHA-256 as 64 lowercase hex digits. Far too fast
+// to slow down guessing, so it is kept to verify passwords stored before PBKDF2
+// and to seed throwaway data quickly. The digest is reused per thread, and the
+// hex is compared against the stored text without building a string.
+public final class Sha256PasswordKdf implements PasswordKdf {
+    public static final Sha256PasswordKdf INSTANCE = new Sha256PasswordKdf();
+
+    private static final int HEX_LENGTH = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private Sha256PasswordKdf() {
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] digest = digest(password);
+        char[] hex = new char[HEX_LENGTH];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean recognizes(String stored) {
+        if (stored.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            char c = stored.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean verify(String password, String stored) {
+        if (stored.length() != HEX_LENGTH) {
+            return false;
+        }
+        byte[] digest = digest(password);
+        int difference = 0; // Accumulated so every digit is compared
+        for (int i = 0; i < digest.length; i++) {
+            difference |= HEX[(digest[i] >> 4) & 0xF] ^ stored.charAt(2 * i);
+            difference |= HEX[digest[i] & 0xF] ^ stored.charAt(2 * i + 1);
+        }
+        return difference == 0;
+    }
+
+    @Override
+    public boolean isCurrent(String stored) {
+        return recognizes(stored);
+    }
+
+    @Override
+    public String getName() {
+        return "sha256";
+    }
+
+    private static byte[] digest(String password) {
+        // The platform charset, as the stored hashes were made with it
+        return DIGEST.get().digest(password.getBytes());
+    }
+}
@@ -0,0 +1,168 @@
+package Bank;
+
+import java.sql.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The SQLite pragmas every pooled connection is opened with. A profile is picked
+// by name with -Dbank.storage.profile=<name>, and single pragmas can be
+// overridden on top of it with -Dbank.storage.<pragma>=<value>, e.g.
+// -Dbank.storage.synchronous=NORMAL.
+//
+//   durable   WAL, synchronous=FULL: every commit is on disk before it returns
+//   balanced  WAL, synchronous=NORMAL: commits survive an app crash, but a power
+//             loss can roll back the last few; the database is never corrupted
+//   legacy    rollback journal with SQLite's default sync, cache and memory
+//             settings, as the app ran before; only busy_timeout is added, so
+//             pooled connections wait for each other instead of failing
+//
+// In WAL mode readers work from a snapshot and never block the single writer or
+// each other, and a commit appends to the log instead of rewriting pages.
+public final class StorageProfile {
+    public static final String PROFILE_PROPERTY = "bank.storage.profile";
+
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+    private static final String[] PRAGMAS = {"busy_timeout", "journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store"};
+
+    public static final StorageProfile DURABLE = new StorageProfile("durable", pragmas("WAL", "FULL"));
+    public static final StorageProfile BALANCED = new StorageProfile("balanced", pragmas("WAL", "NORMAL"));
+    public static final StorageProfile LEGACY = new StorageProfile("legacy", legacyPragmas());
+    public static final StorageProfile DEFAULT = DURABLE;
+
+    private final String name;
+    private final Map<String, String> pragmas; // In the order they are applied
+
+    private StorageProfile(String name, Map<String, String> pragmas) {
+        this.name = name;
+        this.pragmas = Collections.unmodifiableMap(pragmas);
+    }
+
+    private static Map<String, String> pragmas(String journalMode, String synchronous) {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        // busy_timeout first so switching the journal mode waits for other connections
+        pragmas.put("busy_timeout", String.valueOf(BUSY_TIMEOUT_MILLIS));
+        pragmas.put("journal_mode", journalMode);
+        pragmas.put("synchronous", synchronous);
+        pragmas.put("cache_size", "-65536"); // 64 MiB per connection; negative means KiB
+        pragmas.put("mmap_size", String.valueOf(256L * 1024 * 1024));
+        pragmas.put("temp_store", "MEMORY"); // Sorts and temp indexes never touch disk
+        return pragmas;
+    }
+
+    private static Map<String, String> legacyPragmas() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        pragmas.put("busy_timeout", String.valueOf(BUSY_TIMEOUT_MILLIS)); // Not a default; see the legacy profile above
+        pragmas.put("journal_mode", "DELETE");
+        pragmas.put("synchronous", "FULL");
+        pragmas.put("cache_size", "-2000");
+        pragmas.put("mmap_size", "0");
+        pragmas.put("temp_store", "DEFAULT");
+        return pragmas;
+    }
+
+    public static StorageProfile named(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "durable":
+                return DURABLE;
+            case "balanced":
+                return BALANCED;
+            case "legacy":
+                return LEGACY;
+            default:
+                throw new IllegalArgumentException("Unknown storage profile '" + name + "', expected durable, balanced or legacy");
+        }
+    }
+
+    // The profile named by -Dbank.storage.profile (durable if unset) with any
+    // -Dbank.storage.<pragma> overrides applied
+    public static StorageProfile fromSystemProperties() {
+        StorageProfile profile = named(System.getProperty(PROFILE_PROPERTY, DEFAULT.name));
+        for (String pragma : PRAGMAS) {
+            String value = System.getProperty("bank.storage." + pragma);
+            if (value != null) {
+                profile = profile.with(pragma, value);
+            }
+        }
+        return profile;
+    }
+
+    // A copy of this profile with one pragma changed
+    public StorageProfile with(String pragma, String value) {
+        if (!pragmas.containsKey(pragma)) {
+            throw new IllegalArgumentException("Unsupported storage pragma '" + pragma + "'");
+        }
+        // Values are spliced into the PRAGMA statement, so keep them to plain words and numbers
+        if (!value.matches("-?[A-Za-z0-9]+")) {
+            throw new IllegalArgumentException("Invalid value '" + value + "' for pragma " + pragma);
+        }
+        Map<String, String> changed = new LinkedHashMap<>(pragmas);
+        changed.put(pragma, value);
+        return new StorageProfile(name.endsWith("*") ? name : name + "*", changed);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
+    // The settings the connection actually ended up with. SQLite silently ignores
+    // some requests (WAL on an in-memory database, mmap beyond the compiled
+    // limit), so any setting that differs from the profile is marked.
+    public String report(Connection conn) throws SQLException {
+        StringBuilder report = new StringBuilder("profile=").append(name);
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                String effective;
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma.getKey())) {
+                    effective = rs.next() ? rs.getString(1) : "?";
+                }
+                String shown = describe(pragma.getKey(), effective);
+                report.append(", ").append(pragma.getKey()).append('=').append(shown);
+                if (!shown.equalsIgnoreCase(describe(pragma.getKey(), pragma.getValue()))) {
+                    report.append(" (requested ").append(pragma.getValue()).append(')');
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    // Show enumerated pragmas by name whichever form they were given in
+    private static String describe(String pragma, String value) {
+        switch (pragma) {
+            case "synchronous":
+                return enumName(value, "OFF", "NORMAL", "FULL", "EXTRA");
+            case "temp_store":
+                return enumName(value, "DEFAULT", "FILE", "MEMORY");
+            case "journal_mode":
+                return value.toLowerCase();
+            default:
+                return value;
+        }
+    }
+
+    private static String enumName(String value, String... names) {
+        try {
+            int index = Integer.parseInt(value);
+            return index >= 0 && index < names.length ? names[index] : value;
+        } catch (NumberFormatException e) {
+            return value.toUpperCase();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + pragmas;
+    }
+}
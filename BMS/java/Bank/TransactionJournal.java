@@ -0,0 +1,265 @@
+package Bank;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for single-account balance changes. Credits and debits from
+// concurrent callers are queued and applied by a single flusher thread, each
+// balance update together with its ledger row, in one transaction and one
+// commit per batch. A batch is flushed as soon as it is full or the oldest entry
+// has waited maxDelayMillis. An entry's future completes once its batch is
+// committed, so a change is either fully written, balance and ledger row
+// together, or not written at all. The flusher owns a dedicated connection, so
+// callers waiting on it can never starve it of a pooled one.
+public class TransactionJournal implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2;
+
+    private static final String CREDIT_SQL = "UPDATE accounts SET balance_cents = balance_cents + ?, version = version + 1 WHERE account_number = ?";
+    private static final String DEBIT_SQL = "UPDATE accounts SET balance_cents = balance_cents - ?, version = version + 1 WHERE account_number = ? AND balance_cents >= ?";
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO transactions (account_number, type, amount_cents) VALUES (?, ?, ?)";
+
+    private final ConnectionPool pool;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private Connection conn; // Only touched by the flusher thread
+    private PreparedStatement creditStmt;
+    private PreparedStatement debitStmt;
+    private PreparedStatement insertStmt;
+    private volatile boolean running = true;
+
+    public TransactionJournal(ConnectionPool pool) {
+        this(pool, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public TransactionJournal(ConnectionPool pool, int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.flusher = new Thread(this::runFlusher, "transaction-journal");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Queue adding amount to the account with a ledger row of the given type; the
+    // future completes with false if there is no such account
+    public CompletableFuture<Boolean> credit(String accountNumber, String type, long amount) {
+        return append(new Entry(accountNumber, type, amount, false));
+    }
+
+    // Queue taking amount from the account; false if there is no such account or
+    // its balance is short
+    public CompletableFuture<Boolean> debit(String accountNumber, String type, long amount) {
+        return append(new Entry(accountNumber, type, amount, true));
+    }
+
+    private CompletableFuture<Boolean> append(Entry entry) {
+        if (!running) {
+            entry.done.completeExceptionally(new SQLException("Transaction journal is closed"));
+            return entry.done;
+        }
+        queue.add(entry);
+        return entry.done;
+    }
+
+    // Wait until a queued change is committed or refused
+    public static boolean await(CompletableFuture<Boolean> applied) throws SQLException {
+        try {
+            return applied.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the transaction journal", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error writing transaction journal", e.getCause());
+        }
+    }
+
+    private void runFlusher() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            Entry first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // close() interrupts an idle flusher; loop around to drain what is left
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+
+            // Keep collecting until the batch is full or the oldest entry's deadline passes
+            long deadline = first.enqueuedAt + maxDelayNanos;
+            while (batch.size() < maxBatchSize) {
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= maxBatchSize || remaining <= 0) {
+                    break;
+                }
+                Entry next;
+                try {
+                    next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+
+            writeBatch(batch);
+            batch.clear();
+        }
+        closeConnection();
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            applyAndCommit(batch);
+        } catch (StatementException e) {
+            // Nothing was committed. Apply the entries one at a time so a single
+            // bad one fails alone instead of taking the whole batch with it.
+            closeConnection();
+            if (batch.size() == 1) {
+                batch.get(0).done.completeExceptionally(e.getCause());
+                return;
+            }
+            for (Entry entry : batch) {
+                try {
+                    applyAndCommit(List.of(entry));
+                } catch (StatementException | SQLException single) {
+                    closeConnection();
+                    entry.done.completeExceptionally(single instanceof StatementException ? single.getCause() : single);
+                }
+            }
+        } catch (SQLException e) {
+            // The commit itself failed; it is rolled back and nothing is retried
+            closeConnection();
+            for (Entry entry : batch) {
+                entry.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Apply every entry in one transaction and complete their futures once it
+    // commits. A failing statement is thrown as a StatementException, a failing
+    // commit as itself.
+    private void applyAndCommit(List<Entry> batch) throws StatementException, SQLException {
+        boolean[] applied = new boolean[batch.size()];
+        try {
+            if (conn == null) {
+                conn = pool.openConnection();
+                conn.setAutoCommit(false);
+                creditStmt = conn.prepareStatement(CREDIT_SQL);
+                debitStmt = conn.prepareStatement(DEBIT_SQL);
+                insertStmt = conn.prepareStatement(INSERT_TRANSACTION_SQL);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Entry entry = batch.get(i);
+                PreparedStatement update = entry.debit ? debitStmt : creditStmt;
+                update.setLong(1, entry.amount);
+                update.setString(2, entry.accountNumber);
+                if (entry.debit) {
+                    update.setLong(3, entry.amount);
+                }
+                if (update.executeUpdate() > 0) {
+                    insertStmt.setString(1, entry.accountNumber);
+                    insertStmt.setString(2, entry.type);
+                    insertStmt.setLong(3, entry.amount);
+                    insertStmt.addBatch();
+                    applied[i] = true;
+                }
+            }
+            insertStmt.executeBatch();
+        } catch (SQLException e) {
+            throw new StatementException(e);
+        }
+        conn.commit();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).done.complete(applied[i]);
+        }
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.rollback();
+                conn.close();
+            } catch (SQLException e) {
+                // The connection is being discarded anyway
+            }
+            conn = null;
+            creditStmt = null;
+            debitStmt = null;
+            insertStmt = null;
+        }
+    }
+
+    // Stop accepting changes, write everything already queued, then stop the flusher
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Anything that slipped in after the flusher's last drain is rejected
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.done.completeExceptionally(new SQLException("Transaction journal is closed"));
+        }
+    }
+
+    // A statement failed before the commit, so the batch may be retried entry by entry
+    private static final class StatementException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        StatementException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private static final class Entry {
+        final String accountNumber;
+        final String type;
+        final long amount; // Cents
+        final boolean debit;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        Entry(String accountNumber, String type, long amount, boolean debit) {
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.amount = amount;
+            this.debit = debit;
+        }
+    }
+}
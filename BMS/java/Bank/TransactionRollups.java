@@ -0,0 +1,310 @@
+package Bank;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Transaction counts and sums by type in hourly, daily and monthly buckets, per
+// account and bank-wide. Triggers on transactions (schema migration 8) add every
+// new row to its six buckets in the same transaction that writes it, whoever
+// writes it; history older than the migration is summed by backfill(), a chunk
+// of ids at a time. Reports read a few hundred bucket rows instead of scanning
+// the transactions they summarize.
+public class TransactionRollups implements AutoCloseable {
+    public static final int DEFAULT_BACKFILL_CHUNK = 5000; // Transaction ids per backfill transaction
+    public static final long DEFAULT_BACKFILL_PAUSE_MILLIS = 20; // Lets ledger writers in between chunks
+
+    private static final String PROGRESS_SQL = "SELECT last_id, max_id FROM rollup_backfill WHERE id = 1";
+    private static final String MARK_BACKFILL_SQL = "UPDATE rollup_backfill SET updated_at = CURRENT_TIMESTAMP WHERE id = 1";
+    private static final String ADVANCE_BACKFILL_SQL = "UPDATE rollup_backfill SET last_id = ? WHERE id = 1";
+
+    public enum Granularity {
+        HOURLY("hourly", 13),
+        DAILY("daily", 10),
+        MONTHLY("monthly", 7);
+
+        private final String suffix;
+        private final int prefixLength; // Of the "yyyy-MM-dd HH:mm:ss" timestamp
+
+        Granularity(String suffix, int prefixLength) {
+            this.suffix = suffix;
+            this.prefixLength = prefixLength;
+        }
+
+        String table(boolean perAccount) {
+            return (perAccount ? "account_rollups_" : "bank_rollups_") + suffix;
+        }
+
+        // The bucket a timestamp or date falls in
+        public String bucketOf(String timestamp) {
+            return timestamp.length() > prefixLength ? timestamp.substring(0, prefixLength) : timestamp;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private ScheduledExecutorService backfiller;
+
+    public TransactionRollups(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Bucket rows overlapping the range, oldest first; bank-wide when accountNumber is null
+    public List<Bucket> series(Granularity granularity, String accountNumber, DateRange range) throws SQLException {
+        boolean perAccount = accountNumber != null;
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(seriesSql(granularity, perAccount));
+            int i = 1;
+            if (perAccount) {
+                pstmt.setString(i++, accountNumber);
+            }
+            pstmt.setString(i++, granularity.bucketOf(range.getLowerBound()));
+            pstmt.setString(i, range.getUpperBound()); // Every bucket starting on a later day sorts after it
+            List<Bucket> buckets = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    buckets.add(new Bucket(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getLong(4)));
+                }
+            }
+            return buckets;
+        }
+    }
+
+    // Exact count and sum by type over the range: monthly rows for the whole
+    // months inside it, daily rows for the days either side. Bank-wide when
+    // accountNumber is null.
+    public Map<String, Totals> totals(String accountNumber, DateRange range) throws SQLException {
+        LocalDate end = range.getTo().plusDays(1); // Exclusive
+        LocalDate firstMonth = range.getFrom().getDayOfMonth() == 1 ? range.getFrom() : range.getFrom().plusMonths(1).withDayOfMonth(1);
+        LocalDate endMonth = end.withDayOfMonth(1);
+        if (!firstMonth.isBefore(endMonth)) {
+            firstMonth = endMonth = end; // No whole month; the days cover it all
+        }
+
+        boolean perAccount = accountNumber != null;
+        String account = perAccount ? "account_number = ? AND " : "";
+        String sql = "SELECT type, SUM(tx_count), SUM(amount_cents) FROM (" +
+                "SELECT type, tx_count, amount_cents FROM " + Granularity.MONTHLY.table(perAccount) +
+                " WHERE " + account + "bucket >= ? AND bucket < ? " +
+                "UNION ALL SELECT type, tx_count, amount_cents FROM " + Granularity.DAILY.table(perAccount) +
+                " WHERE " + account + "bucket >= ? AND bucket < ? " +
+                "UNION ALL SELECT type, tx_count, amount_cents FROM " + Granularity.DAILY.table(perAccount) +
+                " WHERE " + account + "bucket >= ? AND bucket < ?) GROUP BY type";
+        String[] bounds = {
+                Granularity.MONTHLY.bucketOf(firstMonth.toString()), Granularity.MONTHLY.bucketOf(endMonth.toString()),
+                range.getLowerBound(), firstMonth.toString(),
+                endMonth.toString(), end.toString()};
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql);
+            int i = 1;
+            for (int arm = 0; arm < 3; arm++) {
+                if (perAccount) {
+                    pstmt.setString(i++, accountNumber);
+                }
+                pstmt.setString(i++, bounds[2 * arm]);
+                pstmt.setString(i++, bounds[2 * arm + 1]);
+            }
+            Map<String, Totals> totals = new TreeMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(rs.getString(1), new Totals(rs.getLong(2), rs.getLong(3)));
+                }
+            }
+            return Collections.unmodifiableMap(totals);
+        }
+    }
+
+    public BackfillProgress progress() throws SQLException {
+        try (PooledConnection pc = pool.borrow()) {
+            return readProgress(pc);
+        }
+    }
+
+    // Sum the next chunk of pre-migration transactions into the rollups and move
+    // the mark past them, all in one transaction, so an interrupted backfill
+    // resumes where it stopped and never counts a row twice
+    public BackfillProgress backfillChunk(int chunk) throws SQLException {
+        try (PooledConnection pc = pool.borrow()) {
+            pc.begin(); // close() rolls back if a statement fails
+            // Write first so the transaction holds the write lock from the start
+            // and no delete can slip in between reading the mark and moving it
+            pc.prepare(MARK_BACKFILL_SQL).executeUpdate();
+            BackfillProgress progress = readProgress(pc);
+            if (progress.isComplete()) {
+                pc.commit();
+                return progress;
+            }
+            long upTo = Math.min(progress.getLastId() + chunk, progress.getMaxId());
+            for (Granularity granularity : Granularity.values()) {
+                for (boolean perAccount : new boolean[]{true, false}) {
+                    PreparedStatement pstmt = pc.prepare(backfillSql(granularity, perAccount));
+                    pstmt.setLong(1, progress.getLastId());
+                    pstmt.setLong(2, upTo);
+                    pstmt.executeUpdate();
+                }
+            }
+            PreparedStatement advance = pc.prepare(ADVANCE_BACKFILL_SQL);
+            advance.setLong(1, upTo);
+            advance.executeUpdate();
+            pc.commit();
+            return new BackfillProgress(upTo, progress.getMaxId());
+        }
+    }
+
+    // Backfill to the end on the calling thread
+    public BackfillProgress backfill(int chunk) throws SQLException {
+        BackfillProgress progress;
+        do {
+            progress = backfillChunk(chunk);
+        } while (!progress.isComplete());
+        return progress;
+    }
+
+    // Run the backfill on a background thread, a chunk at a time with a pause in
+    // between, until it completes or close() is called
+    public synchronized void startBackfill(int chunk, long pauseMillis) throws SQLException {
+        if (backfiller != null || progress().isComplete()) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transaction-rollup-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backfiller = executor;
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                BackfillProgress progress = backfillChunk(chunk);
+                if (progress.isComplete()) {
+                    System.out.println("Transaction rollup backfill complete: " + progress);
+                    executor.shutdown();
+                }
+            } catch (SQLException e) {
+                System.err.println("Transaction rollup backfill failed, will retry: " + e.getMessage());
+            }
+        }, 0, pauseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (backfiller != null) {
+            backfiller.shutdownNow();
+            backfiller = null;
+        }
+    }
+
+    // Walks the primary key in order, so no sort
+    static String seriesSql(Granularity granularity, boolean perAccount) {
+        return "SELECT bucket, type, tx_count, amount_cents FROM " + granularity.table(perAccount) +
+                " WHERE " + (perAccount ? "account_number = ? AND " : "") +
+                "bucket >= ? AND bucket < ? ORDER BY bucket, type";
+    }
+
+    private static String backfillSql(Granularity granularity, boolean perAccount) {
+        String key = perAccount ? "account_number, bucket, type" : "bucket, type";
+        String bucket = "substr(timestamp, 1, " + granularity.prefixLength + ")";
+        String group = (perAccount ? "account_number, " : "") + bucket + ", type";
+        return "INSERT INTO " + granularity.table(perAccount) + " (" + key + ", tx_count, amount_cents) " +
+                "SELECT " + group + ", COUNT(*), SUM(amount_cents) FROM transactions " +
+                "WHERE id > ? AND id <= ? AND timestamp IS NOT NULL AND type IS NOT NULL AND account_number IS NOT NULL " +
+                "GROUP BY " + group + " " +
+                "ON CONFLICT (" + key + ") DO UPDATE SET tx_count = tx_count + excluded.tx_count, " +
+                "amount_cents = amount_cents + excluded.amount_cents";
+    }
+
+    private static BackfillProgress readProgress(PooledConnection pc) throws SQLException {
+        try (ResultSet rs = pc.prepare(PROGRESS_SQL).executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("rollup_backfill row is missing");
+            }
+            return new BackfillProgress(rs.getLong("last_id"), rs.getLong("max_id"));
+        }
+    }
+
+    public static final class Bucket {
+        private final String bucket;
+        private final String type;
+        private final long count;
+        private final long amount; // Cents
+
+        Bucket(String bucket, String type, long count, long amount) {
+            this.bucket = bucket;
+            this.type = type;
+            this.count = count;
+            this.amount = amount;
+        }
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+    }
+
+    public static final class Totals {
+        private final long count;
+        private final long amount; // Cents
+
+        Totals(long count, long amount) {
+            this.count = count;
+            this.amount = amount;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        @Override
+        public String toString() {
+            return count + " for " + Money.format(amount);
+        }
+    }
+
+    public static final class BackfillProgress {
+        private final long lastId;
+        private final long maxId;
+
+        BackfillProgress(long lastId, long maxId) {
+            this.lastId = lastId;
+            this.maxId = maxId;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+
+        public long getMaxId() {
+            return maxId;
+        }
+
+        // Until then, totals leave out the older history still to be summed
+        public boolean isComplete() {
+            return lastId >= maxId;
+        }
+
+        @Override
+        public String toString() {
+            return lastId + " of " + maxId + " transactions summed";
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package Bank;
+
+import javax.swing.table.AbstractTableModel;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Table model over the transactions table, newest first, fetched a page at a time
+// as the table asks for rows. Pages are found by keyset on (timestamp, id) rather
+// than OFFSET, so every page costs one index seek however deep the user scrolls.
+// Only a bounded number of pages is kept; an evicted page is fetched again from
+// its start key, of which the model keeps one per page. Must be used on the EDT.
+public class TransactionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int DEFAULT_CACHED_PAGES = 10;
+
+    private static final String[] COLUMNS = {"Account Number", "Type", "Amount", "Timestamp"};
+    private static final String SELECT_SQL = "SELECT id, account_number, type, amount_cents, timestamp FROM transactions";
+    private static final String ORDER_SQL = " ORDER BY timestamp DESC, id DESC LIMIT ?";
+
+    private final ConnectionPool pool;
+    private final int pageSize;
+    private final Map<Integer, List<TransactionRow>> pages;
+    // Start key of every page reached so far; the first page's is null
+    private final List<TransactionRow> pageStarts = new ArrayList<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private String filterSql = "";
+    private List<Object> filterParams = new ArrayList<>();
+    private DateRange filterRange; // Null for all dates
+    private int rowCount = 0;
+    private boolean complete = false;
+    private long generation = 0;
+    private Consumer<Exception> errorListener = e -> { };
+
+    public TransactionTableModel(ConnectionPool pool) {
+        this(pool, DEFAULT_PAGE_SIZE, DEFAULT_CACHED_PAGES);
+    }
+
+    public TransactionTableModel(ConnectionPool pool, int pageSize, int cachedPages) {
+        if (pageSize <= 0 || cachedPages <= 0) {
+            throw new IllegalArgumentException("Page size and cached pages must be positive");
+        }
+        this.pool = pool;
+        this.pageSize = pageSize;
+        // Access-ordered so the least recently viewed page is evicted first
+        this.pages = new LinkedHashMap<Integer, List<TransactionRow>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<TransactionRow>> eldest) {
+                return size() > cachedPages;
+            }
+        };
+    }
+
+    public TransactionTableModel onError(Consumer<Exception> listener) {
+        this.errorListener = listener;
+        return this;
+    }
+
+    // Show only rows matching the given condition ("" for all rows), e.g.
+    // "account_number LIKE ? AND type LIKE ?" with its parameters in order
+    public void setFilter(String condition, List<Object> params) {
+        setFilter(condition, params, null);
+    }
+
+    // The same, limited to the days of range (null for all dates)
+    public void setFilter(String condition, List<Object> params, DateRange range) {
+        generation++; // Pages still in flight belong to the old filter
+        filterSql = condition.isEmpty() ? "" : "(" + condition + ")";
+        filterParams = new ArrayList<>(params);
+        filterRange = range;
+        pages.clear();
+        pageStarts.clear();
+        pageStarts.add(null);
+        loading.clear();
+        rowCount = 0;
+        complete = false;
+        fireTableDataChanged();
+        requestPage(0);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int page = rowIndex / pageSize;
+        // Reaching the last page loaded so far pulls in the next one
+        if (!complete && page + 1 == pageStarts.size() - 1) {
+            requestPage(page + 1);
+        }
+
+        List<TransactionRow> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null; // Drawn blank until the page arrives
+        }
+        int offset = rowIndex % pageSize;
+        if (offset >= rows.size()) {
+            return null;
+        }
+        TransactionRow row = rows.get(offset);
+        switch (columnIndex) {
+            case 0:
+                return row.getAccountNumber();
+            case 1:
+                return row.getType();
+            case 2:
+                return Money.appendTo(new StringBuilder("$"), row.getAmount()).toString();
+            default:
+                return row.getTimestamp();
+        }
+    }
+
+    private void requestPage(int page) {
+        if (page >= pageStarts.size() || !loading.add(page)) {
+            return;
+        }
+        long requestGeneration = generation;
+        TransactionRow after = pageStarts.get(page);
+        String condition = filterSql;
+        List<Object> params = filterParams;
+        DateRange range = filterRange;
+        AsyncRunner.submit(() -> fetchPage(pool, condition, params, range, after, pageSize), rows -> {
+            if (requestGeneration == generation) {
+                loading.remove(page);
+                pageLoaded(page, rows);
+            }
+        }, ex -> {
+            if (requestGeneration == generation) {
+                loading.remove(page);
+                errorListener.accept(ex);
+            }
+        });
+    }
+
+    private void pageLoaded(int page, List<TransactionRow> rows) {
+        pages.put(page, rows);
+        if (page == pageStarts.size() - 1) {
+            // First visit to the furthest page: extend the table
+            int firstRow = page * pageSize;
+            if (rows.size() == pageSize) {
+                pageStarts.add(rows.get(rows.size() - 1));
+            } else {
+                complete = true;
+            }
+            rowCount = firstRow + rows.size();
+            if (!rows.isEmpty()) {
+                fireTableRowsInserted(firstRow, rowCount - 1);
+            }
+        } else if (!rows.isEmpty()) {
+            fireTableRowsUpdated(page * pageSize, page * pageSize + rows.size() - 1);
+        }
+    }
+
+    // Up to pageSize rows matching condition within range (null for all dates)
+    // that come after the given row (null for the newest). Past the first page
+    // the range's end is left out: the keyset row lies inside the range, so its
+    // key is the tighter bound, and given both SQLite seeks from the range's end
+    // and walks down to the key. Runs off the EDT.
+    static List<TransactionRow> fetchPage(ConnectionPool pool, String condition, List<Object> params,
+                                          DateRange range, TransactionRow after, int pageSize) throws SQLException {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<String> where = new ArrayList<>();
+        if (!condition.isEmpty()) {
+            where.add(condition);
+        }
+        if (range != null) {
+            where.add(after == null ? DateRange.CONDITION : "timestamp >= ?");
+        }
+        if (after != null) {
+            where.add("(timestamp, id) < (?, ?)");
+        }
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        sql.append(ORDER_SQL);
+
+        try (PooledConnection pc = pool.borrow()) {
+            PreparedStatement pstmt = pc.prepare(sql.toString());
+            int index = 1;
+            for (Object param : params) {
+                pstmt.setObject(index++, param);
+            }
+            if (range != null) {
+                pstmt.setString(index++, range.getLowerBound());
+                if (after == null) {
+                    pstmt.setString(index++, range.getUpperBound());
+                }
+            }
+            if (after != null) {
+                pstmt.setString(index++, after.getTimestamp());
+                pstmt.setLong(index++, after.getId());
+            }
+            pstmt.setInt(index, pageSize);
+
+            List<TransactionRow> rows = new ArrayList<>(pageSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new TransactionRow(rs.getLong("id"), rs.getString("account_number"),
+                            rs.getString("type"), rs.getLong("amount_cents"), rs.getString("timestamp")));
+                }
+            }
+            return rows;
+        }
+    }
+
+    public static final class TransactionRow {
+        private final long id;
+        private final String accountNumber;
+        private final String type;
+        private final long amount; // Cents
+        private final String timestamp;
+
+        TransactionRow(long id, String accountNumber, String type, long amount, String timestamp) {
+            this.id = id;
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.amount = amount;
+            this.timestamp = timestamp;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package Bank;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A thread per task: virtual threads when the JVM has them (Java 21+), otherwise
+// a fixed pool of daemon platform threads. Looked up reflectively so the app
+// still builds for 17.
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static ExecutorService newPerTaskExecutor(int platformThreads, String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(platformThreads, r -> {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package Bank;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+// Search ranks only a capped slice of the index's hits, so an exact identifier
+// has to be found by its own lookup even when the slice leaves it out.
+public class AccountServiceTest {
+    private static final int BROAD_MATCHES = AccountService.SEARCH_CANDIDATES + 100;
+
+    private Path directory;
+    private ConnectionPool pool;
+    private AccountService accounts;
+
+    @BeforeClass
+    public void seed() throws IOException, SQLException {
+        directory = Files.createTempDirectory("account-service");
+        pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("bank.db"));
+        try (PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.getConnection();
+            new SchemaMigrator().migrate(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO accounts (account_number, name, password, phone_number, nid_number) VALUES (?, ?, 'x', ?, ?)")) {
+                for (int i = 0; i < BROAD_MATCHES; i++) {
+                    pstmt.setString(1, String.format("acct%05d", i));
+                    pstmt.setString(2, "Holder " + i);
+                    pstmt.setString(3, String.format("0%09d", i));
+                    pstmt.setString(4, "NID7788" + i); // Every one contains 7788
+                    pstmt.executeUpdate();
+                }
+                // Added last, so the index lists it after all the others
+                pstmt.setString(1, "exact");
+                pstmt.setString(2, "Exact Holder");
+                pstmt.setString(3, "7788");
+                pstmt.setString(4, "NIDEXACT");
+                pstmt.executeUpdate();
+            }
+        }
+        accounts = new AccountService(pool, new Authenticator(pool, Sha256PasswordKdf.INSTANCE));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @Test
+    public void exactPhoneComesFirstPastTheCandidateCap() throws SQLException {
+        AccountService.AccountSearchPage page = accounts.search("7788", 10, 0);
+        assertEquals(page.getAccounts().get(0).getAccountNumber(), "exact");
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    public void exactAccountNumberIsFound() throws SQLException {
+        AccountService.AccountSearchPage page = accounts.search("ACCT00042", 10, 0);
+        assertEquals(page.getAccounts().get(0).getAccountNumber(), "acct00042");
+    }
+
+    @Test
+    public void shortTermsOnlyFilterIndexedOnes() throws SQLException {
+        AccountService.AccountSearchPage page = accounts.search("exact ho", 10, 0);
+        assertEquals(page.getAccounts().size(), 1);
+        assertEquals(page.getAccounts().get(0).getAccountNumber(), "exact");
+    }
+
+    @Test
+    public void refusesQueriesTooShortForTheIndex() {
+        assertFalse(AccountService.isSearchable("ab c"));
+        assertTrue(AccountService.isSearchable("ab cde"));
+        assertThrows(IllegalArgumentException.class, () -> accounts.search("ab", 10, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package Bank;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+// Every failed login must cost a hash at the configured cost, whether the
+// account is unknown or its stored hash is a cheap legacy one. Counting the
+// configured scheme's verifications stands in for timing them.
+public class AuthenticatorTest {
+    private Path directory;
+    private ConnectionPool pool;
+    private CountingKdf kdf;
+    private Authenticator authenticator;
+
+    @BeforeMethod
+    public void seed() throws IOException, SQLException {
+        directory = Files.createTempDirectory("authenticator");
+        pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("bank.db"));
+        kdf = new CountingKdf(new Pbkdf2PasswordKdf(1000));
+        authenticator = new Authenticator(pool, kdf);
+        try (PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.getConnection();
+            new SchemaMigrator().migrate(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO accounts (account_number, name, password) VALUES (?, 'Holder', ?)")) {
+                pstmt.setString(1, "legacy");
+                pstmt.setString(2, Sha256PasswordKdf.INSTANCE.hash("secret"));
+                pstmt.executeUpdate();
+                pstmt.setString(1, "current");
+                pstmt.setString(2, authenticator.hash("secret"));
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO admins (account_number, password) VALUES (?, ?)")) {
+                pstmt.setString(1, "root");
+                pstmt.setString(2, Sha256PasswordKdf.INSTANCE.hash("secret"));
+                pstmt.executeUpdate();
+            }
+        }
+        kdf.verifications.set(0);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @Test
+    public void everyFailedLoginCostsACurrentHash() throws SQLException {
+        for (String account : new String[]{"missing", "legacy", "current"}) {
+            kdf.verifications.set(0);
+            assertEquals(authenticator.login(account, "wrong"), Authenticator.INVALID_CREDENTIALS, account);
+            assertEquals(kdf.verifications.get(), 1, account);
+        }
+    }
+
+    @Test
+    public void everyFailedAdminLoginCostsACurrentHash() throws SQLException {
+        for (String account : new String[]{"missing", "root"}) {
+            kdf.verifications.set(0);
+            assertEquals(authenticator.adminLogin(account, "wrong"), false, account);
+            assertEquals(kdf.verifications.get(), 1, account);
+        }
+    }
+
+    @Test
+    public void legacyHashStillSignsIn() throws SQLException {
+        assertNull(authenticator.login("legacy", "secret"));
+        assertNull(authenticator.login("legacy", "secret")); // Now against the upgraded hash
+    }
+
+    private static final class CountingKdf implements PasswordKdf {
+        final AtomicInteger verifications = new AtomicInteger();
+        private final PasswordKdf delegate;
+
+        CountingKdf(PasswordKdf delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String hash(String password) {
+            return delegate.hash(password);
+        }
+
+        @Override
+        public boolean recognizes(String stored) {
+            return delegate.recognizes(stored);
+        }
+
+        @Override
+        public boolean verify(String password, String stored) {
+            verifications.incrementAndGet();
+            return delegate.verify(password, stored);
+        }
+
+        @Override
+        public boolean isCurrent(String stored) {
+            return delegate.isCurrent(stored);
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+    }
+}
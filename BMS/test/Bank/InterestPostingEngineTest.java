@@ -0,0 +1,87 @@
+package Bank;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+// Starting a run abandons the unfinished one, which must then post nothing more,
+// so no account is credited by both.
+public class InterestPostingEngineTest {
+    private Path directory;
+    private ConnectionPool pool;
+    private InterestPostingEngine engine;
+
+    @BeforeMethod
+    public void seed() throws IOException, SQLException {
+        directory = Files.createTempDirectory("interest-posting");
+        pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("bank.db"));
+        try (PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.getConnection();
+            new SchemaMigrator().migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO accounts (account_number, name, password, balance_cents) " +
+                        "VALUES ('a1', 'A', 'x', 10000), ('b2', 'B', 'x', 20000), ('c3', 'C', 'x', 30000)");
+            }
+        }
+        engine = new InterestPostingEngine(pool, 1, null);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @Test
+    public void newRunAbandonsTheUnfinishedOne() throws SQLException {
+        InterestPostingEngine.InterestRun first = engine.startRun(10);
+        InterestPostingEngine.InterestRun second = engine.startRun(1);
+
+        assertEquals(engine.findUnfinishedRun().getId(), second.getId());
+        assertEquals(queryLong("SELECT COUNT(*) FROM interest_runs WHERE status = 'RUNNING'"), 1);
+        assertEquals(queryString("SELECT status FROM interest_runs WHERE id = " + first.getId()), "ABANDONED");
+    }
+
+    @Test
+    public void abandonedRunPostsNothing() throws SQLException {
+        InterestPostingEngine.InterestRun first = engine.startRun(10);
+        InterestPostingEngine.InterestRun second = engine.startRun(1);
+
+        assertThrows(SQLException.class, () -> engine.run(first, null));
+        assertEquals(queryLong("SELECT SUM(balance_cents) FROM accounts"), 60000);
+        assertEquals(queryLong("SELECT COUNT(*) FROM transactions"), 0);
+
+        assertTrue(engine.run(second, null));
+        assertEquals(queryLong("SELECT SUM(balance_cents) FROM accounts"), 60600);
+        assertEquals(queryString("SELECT status FROM interest_runs WHERE id = " + second.getId()), "COMPLETED");
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (PooledConnection pc = pool.borrow();
+             Statement stmt = pc.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getLong(1);
+        }
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (PooledConnection pc = pool.borrow();
+             Statement stmt = pc.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package Bank;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+// A crash can leave the last record of the journal half written. Reading stops
+// cleanly in front of it, and the MemoryLedger replays everything before it and
+// numbers new operations after the last intact one. Damage anywhere else is not
+// a crash and must be reported.
+public class OperationJournalTest {
+    private static final long SMALL_SEGMENT = 1 << 17;
+    private static final long MIN_SEGMENT = (1 << 16) + 8; // One largest record and its header
+
+    private Path directory;
+    private Path journalPath;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("operation-journal");
+        journalPath = directory.resolve("journal");
+        Files.createDirectory(journalPath);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @Test
+    public void readerStopsAtGarbledLastRecord() throws IOException, SQLException {
+        writeJournal(3, SMALL_SEGMENT);
+        Path segment = onlySegment();
+        flipByte(segment, recordOffsets(segment).get(2) + 12); // Inside the checksummed payload
+
+        List<Long> seqs = new ArrayList<>();
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            OperationJournal.Operation operation;
+            while ((operation = reader.next()) != null) {
+                seqs.add(operation.getSeq());
+            }
+            assertTrue(reader.hasTornTail());
+        }
+        assertEquals(seqs, List.of(1L, 2L));
+    }
+
+    @Test
+    public void readerStopsAtHeaderWithoutPayload() throws IOException, SQLException {
+        writeJournal(2, SMALL_SEGMENT);
+        Path segment = onlySegment();
+        List<Long> offsets = recordOffsets(segment);
+        int end = (int) (offsets.get(1) + 8 + readInt(segment, offsets.get(1)));
+        // The header of a third record made it to disk, its payload did not
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(40).putInt(0x5eed);
+        header.flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(header, end);
+        }
+
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            assertEquals(reader.next().getSeq(), 1);
+            assertEquals(reader.next().getSeq(), 2);
+            assertNull(reader.next());
+            assertTrue(reader.hasTornTail());
+        }
+    }
+
+    @Test
+    public void intactJournalHasNoTornTail() throws IOException, SQLException {
+        writeJournal(3, SMALL_SEGMENT);
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            int read = 0;
+            while (reader.next() != null) {
+                read++;
+            }
+            assertEquals(read, 3);
+            assertFalse(reader.hasTornTail());
+        }
+    }
+
+    @Test
+    public void damageBeforeTheLastSegmentIsAnError() throws IOException, SQLException {
+        writeJournal(6000, MIN_SEGMENT); // About 45 bytes each, so several segments
+        List<Path> segments = OperationJournal.listSegments(journalPath);
+        assertTrue(segments.size() > 1, "expected the journal to roll over");
+        flipByte(segments.get(0), 12);
+
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            assertThrows(IOException.class, () -> {
+                while (reader.next() != null) {
+                    // Read until the damage
+                }
+            });
+        }
+    }
+
+    @Test
+    public void memoryLedgerReplaysUpToTheTornRecord() throws IOException, SQLException {
+        String url = "jdbc:sqlite:" + directory.resolve("bank.db");
+        try (ConnectionPool pool = new ConnectionPool(url)) {
+            try (PooledConnection pc = pool.borrow(); Statement stmt = pc.getConnection().createStatement()) {
+                new SchemaMigrator().migrate(pc.getConnection());
+                stmt.execute("INSERT INTO accounts (account_number, name, password, balance_cents) VALUES ('a1', 'A', 'x', 1000)");
+            }
+
+            try (OperationJournal journal = new OperationJournal(journalPath, 0, SMALL_SEGMENT, JournalSyncPolicy.ALWAYS, written -> {
+            })) {
+                OperationJournal.await(journal.append(OperationJournal.Kind.DEPOSIT, "a1", "", 100));
+                OperationJournal.await(journal.append(OperationJournal.Kind.WITHDRAWAL, "a1", "", 30));
+                OperationJournal.await(journal.append(OperationJournal.Kind.DEPOSIT, "a1", "", 500));
+            }
+            Path segment = onlySegment();
+            flipByte(segment, recordOffsets(segment).get(2) + 12);
+
+            try (MemoryLedger ledger = new MemoryLedger(pool, journalPath, JournalSyncPolicy.ALWAYS, SMALL_SEGMENT)) {
+                assertEquals(ledger.balance("a1").longValue(), 1070);
+                assertEquals(ledger.getAppliedSeq(), 2);
+                try (PooledConnection pc = pool.borrow(); Statement stmt = pc.getConnection().createStatement()) {
+                    assertEquals(queryLong(stmt, "SELECT balance_cents FROM accounts WHERE account_number = 'a1'"), 1070);
+                    assertEquals(queryLong(stmt, "SELECT COUNT(*) FROM transactions"), 2);
+                    assertEquals(queryLong(stmt, "SELECT applied_seq FROM ledger_journal_state WHERE id = 1"), 2);
+                }
+
+                // The torn record's number is reused, not skipped
+                OperationJournal.await(ledger.deposit("a1", 5));
+                assertEquals(ledger.getJournal().getLastSeq(), 3);
+                ledger.awaitApplied();
+                assertEquals(ledger.getAppliedSeq(), 3);
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] failedBatches() {
+        return new Object[][]{
+                {50, SMALL_SEGMENT}, // Fails inside one segment
+                {2047, MIN_SEGMENT}}; // The failing batch has rolled into a new segment first
+    }
+
+    // A record too large for the journal fails the batch it lands in after the
+    // records in front of it are already in the mapping. None of them may be
+    // readable afterwards, not even before the journal is closed.
+    @Test(dataProvider = "failedBatches", timeOut = 30_000)
+    public void failedBatchLeavesNothingBehind(int smallOperations, long segmentBytes) throws Exception {
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long lastWritten = 0;
+        try (OperationJournal journal = new OperationJournal(journalPath, 0, segmentBytes, JournalSyncPolicy.ALWAYS, written -> {
+            firstWritten.countDown();
+            try {
+                release.await(); // Holds the writer so everything below queues up behind it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            futures.add(journal.append(OperationJournal.Kind.DEPOSIT, "first", "", 1));
+            firstWritten.await();
+            for (int i = 0; i < smallOperations; i++) {
+                futures.add(journal.append(OperationJournal.Kind.DEPOSIT, "a" + i, "", i + 1));
+            }
+            futures.add(journal.append(OperationJournal.Kind.DEPOSIT, "h".repeat(70_000), "", 1));
+            release.countDown();
+
+            int failed = 0;
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    OperationJournal.await(future);
+                    lastWritten++;
+                } catch (SQLException e) {
+                    failed++;
+                }
+            }
+            assertTrue(failed > 1, "the failure should have taken records already in the mapping with it");
+            assertEquals(readSeqs(), seqsUpTo(lastWritten));
+            assertEquals(journal.getWrittenSeq(), lastWritten);
+        }
+        assertEquals(readSeqs(), seqsUpTo(lastWritten));
+    }
+
+    @Test(timeOut = 10_000)
+    public void awaitAppliedIgnoresOperationsTheJournalRefused() throws IOException, SQLException {
+        String huge = "h".repeat(70_000); // Too large for one record, so its write fails the journal
+        String url = "jdbc:sqlite:" + directory.resolve("bank.db");
+        try (ConnectionPool pool = new ConnectionPool(url)) {
+            try (PooledConnection pc = pool.borrow(); Statement stmt = pc.getConnection().createStatement()) {
+                new SchemaMigrator().migrate(pc.getConnection());
+                stmt.execute("INSERT INTO accounts (account_number, name, password, balance_cents) VALUES ('a1', 'A', 'x', 0), " +
+                        "('" + huge + "', 'H', 'x', 0)");
+            }
+            try (MemoryLedger ledger = new MemoryLedger(pool, journalPath, JournalSyncPolicy.ALWAYS, SMALL_SEGMENT)) {
+                OperationJournal.await(ledger.deposit("a1", 5));
+                assertThrows(SQLException.class, () -> OperationJournal.await(ledger.deposit(huge, 5)));
+                ledger.undo(OperationJournal.Kind.DEPOSIT, huge, "", 5);
+
+                long start = System.nanoTime();
+                ledger.awaitApplied();
+                assertTrue(System.nanoTime() - start < 5_000_000_000L, "waited for an operation that was never written");
+                assertEquals(ledger.getAppliedSeq(), 1);
+            }
+        }
+    }
+
+    private void writeJournal(int operations, long segmentBytes) throws IOException, SQLException {
+        try (OperationJournal journal = new OperationJournal(journalPath, 0, segmentBytes, JournalSyncPolicy.ALWAYS, written -> {
+        })) {
+            List<CompletableFuture<Void>> pending = new ArrayList<>(operations);
+            for (int i = 0; i < operations; i++) {
+                pending.add(journal.append(OperationJournal.Kind.DEPOSIT, "a" + i, "", i + 1));
+            }
+            for (CompletableFuture<Void> written : pending) {
+                OperationJournal.await(written);
+            }
+        }
+    }
+
+    private List<Long> readSeqs() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (OperationJournal.Reader reader = new OperationJournal.Reader(journalPath)) {
+            OperationJournal.Operation operation;
+            while ((operation = reader.next()) != null) {
+                seqs.add(operation.getSeq());
+            }
+            assertFalse(reader.hasTornTail());
+        }
+        return seqs;
+    }
+
+    private static List<Long> seqsUpTo(long last) {
+        List<Long> seqs = new ArrayList<>();
+        for (long seq = 1; seq <= last; seq++) {
+            seqs.add(seq);
+        }
+        return seqs;
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = OperationJournal.listSegments(journalPath);
+        assertEquals(segments.size(), 1);
+        return segments.get(0);
+    }
+
+    // Where each record starts, following the length fields up to the zero fill
+    private static List<Long> recordOffsets(Path segment) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        long offset = 0;
+        int length;
+        while ((length = readInt(segment, offset)) != 0) {
+            offsets.add(offset);
+            offset += 8 + length;
+        }
+        return offsets;
+    }
+
+    private static int readInt(Path segment, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            channel.read(buffer, offset);
+        }
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    private static void flipByte(Path segment, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.read(buffer, offset);
+            buffer.put(0, (byte) ~buffer.get(0));
+            buffer.rewind();
+            channel.write(buffer, offset);
+        }
+    }
+
+    private static long queryLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package Bank;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+// Runs EXPLAIN QUERY PLAN over the hot queries on a freshly migrated database and
+// fails any of them that scans a table without an index or sorts through a
+// temporary b-tree. Add a query here when it becomes hot.
+public class QueryPlanTest {
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("dashboard latest activity",
+                "SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC LIMIT 5");
+        HOT_QUERIES.put("user transaction history",
+                "SELECT type, amount_cents, timestamp FROM transactions WHERE account_number = ? ORDER BY timestamp DESC");
+        HOT_QUERIES.put("admin transaction history",
+                "SELECT account_number, type, amount_cents, timestamp FROM transactions ORDER BY timestamp DESC");
+        HOT_QUERIES.put("admin transaction page",
+                "SELECT id, account_number, type, amount_cents, timestamp FROM transactions WHERE (timestamp, id) < (?, ?) ORDER BY timestamp DESC, id DESC LIMIT ?");
+        HOT_QUERIES.put("admin transaction date range",
+                "SELECT id, account_number, type, amount_cents, timestamp FROM transactions WHERE " + DateRange.CONDITION +
+                        " ORDER BY timestamp DESC, id DESC LIMIT ?");
+        HOT_QUERIES.put("admin transaction date range page",
+                "SELECT id, account_number, type, amount_cents, timestamp FROM transactions WHERE timestamp >= ? " +
+                        "AND (timestamp, id) < (?, ?) ORDER BY timestamp DESC, id DESC LIMIT ?");
+        HOT_QUERIES.put("active loan lookup",
+                "SELECT id, remaining_cents FROM loans WHERE account_number = ? AND remaining_cents > 0");
+        HOT_QUERIES.put("outstanding loan total",
+                "SELECT SUM(remaining_cents) AS total_loans FROM loans WHERE account_number = ?");
+        HOT_QUERIES.put("bank totals",
+                "SELECT total_balance_cents, total_loans_cents, account_count FROM bank_totals WHERE id = 1");
+        HOT_QUERIES.put("bank rollup series",
+                TransactionRollups.seriesSql(TransactionRollups.Granularity.DAILY, false));
+        HOT_QUERIES.put("account rollup series",
+                TransactionRollups.seriesSql(TransactionRollups.Granularity.DAILY, true));
+        HOT_QUERIES.put("account balance",
+                "SELECT balance_cents FROM accounts WHERE account_number = ?");
+        HOT_QUERIES.put("account search exact match",
+                "SELECT account_number, name, phone_number, nid_number FROM accounts " +
+                        "WHERE account_number = ?1 OR phone_number = ?1 OR nid_number = ?1");
+    }
+
+    private Path directory;
+    private Connection conn;
+
+    // The plan's detail lines, one per step
+    private static List<String> explain(Connection conn, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            int params = pstmt.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= params; i++) {
+                pstmt.setString(i, "");
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString("detail"));
+                }
+            }
+        }
+        return plan;
+    }
+
+    // A plan is indexed when every table access goes through an index (or the
+    // rowid/primary key) and no ordering needs a temporary b-tree
+    private static boolean isIndexed(List<String> plan) {
+        for (String step : plan) {
+            if (step.contains("TEMP B-TREE")) {
+                return false;
+            }
+            if (step.startsWith("SCAN") && !step.contains("INDEX")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @BeforeClass
+    public void migrate() throws IOException, SQLException {
+        directory = Files.createTempDirectory("query-plan");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + directory.resolve("bank.db"));
+        new SchemaMigrator().migrate(conn);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void close() throws IOException, SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @DataProvider
+    public Object[][] hotQueries() {
+        Object[][] rows = new Object[HOT_QUERIES.size()][];
+        int i = 0;
+        for (Map.Entry<String, String> query : HOT_QUERIES.entrySet()) {
+            rows[i++] = new Object[]{query.getKey(), query.getValue()};
+        }
+        return rows;
+    }
+
+    @Test(dataProvider = "hotQueries")
+    public void hotQueryUsesAnIndex(String name, String sql) throws SQLException {
+        List<String> plan = explain(conn, sql);
+        assertTrue(isIndexed(plan), name + " is not indexed: " + plan);
+    }
+
+    // The check itself has to notice a scan, or every query above would pass
+    @Test
+    public void unindexedQueryIsReported() throws SQLException {
+        assertFalse(isIndexed(explain(conn, "SELECT account_number FROM accounts WHERE address = ?")));
+        assertFalse(isIndexed(explain(conn, "SELECT account_number FROM transactions ORDER BY type")));
+    }
+}
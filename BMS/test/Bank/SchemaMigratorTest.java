@@ -0,0 +1,138 @@
+package Bank;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+// Upgrades a database laid out the way the application created it before it had
+// migrations: REAL money columns, no user_version and none of the derived tables.
+public class SchemaMigratorTest {
+    private static final String[] BASELINE_SCHEMA = {
+            "CREATE TABLE accounts (account_number TEXT PRIMARY KEY, name TEXT NOT NULL, password TEXT NOT NULL, " +
+                    "balance REAL DEFAULT 0.0, is_blocked BOOLEAN DEFAULT FALSE, date_of_birth TEXT, address TEXT, " +
+                    "nationality TEXT, nid_number TEXT, phone_number TEXT)",
+            "CREATE TABLE transactions (id INTEGER PRIMARY KEY AUTOINCREMENT, account_number TEXT, type TEXT, amount REAL, " +
+                    "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (account_number) REFERENCES accounts(account_number))",
+            "CREATE TABLE admins (account_number TEXT PRIMARY KEY, password TEXT NOT NULL)",
+            "CREATE TABLE loans (id INTEGER PRIMARY KEY AUTOINCREMENT, account_number TEXT, loan_amount REAL, remaining_amount REAL, " +
+                    "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (account_number) REFERENCES accounts(account_number))"};
+
+    private Path directory;
+    private String url;
+    private Connection conn;
+
+    @BeforeMethod
+    public void createBaseline() throws IOException, SQLException {
+        directory = Files.createTempDirectory("schema-migrator");
+        url = "jdbc:sqlite:" + directory.resolve("bank.db");
+        conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : BASELINE_SCHEMA) {
+                stmt.execute(sql);
+            }
+            stmt.execute("INSERT INTO accounts (account_number, name, password, balance, phone_number, nid_number) " +
+                    "VALUES ('a1', 'Alice Rahman', 'x', 12.34, '01711000000', 'NID1')");
+            stmt.execute("INSERT INTO accounts (account_number, name, password, balance) VALUES ('b2', 'Bob Das', 'x', 0.1 + 0.2)");
+            stmt.execute("INSERT INTO transactions (account_number, type, amount, timestamp) VALUES ('a1', 'DEPOSIT', 12.34, '2024-03-05 14:00:00')");
+            stmt.execute("INSERT INTO transactions (account_number, type, amount, timestamp) VALUES ('b2', 'DEPOSIT', 0.3, '2024-03-06 09:30:00')");
+            stmt.execute("INSERT INTO loans (account_number, loan_amount, remaining_amount) VALUES ('a1', 100.0, 40.5)");
+            stmt.execute("INSERT INTO admins (account_number, password) VALUES ('admin', 'x')");
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void close() throws IOException, SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @Test
+    public void upgradesBaselineToLatest() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator();
+        assertEquals(migrator.currentVersion(conn), 0);
+
+        assertEquals(migrator.migrate(conn), SchemaMigrator.latestVersion());
+        assertEquals(migrator.currentVersion(conn), SchemaMigrator.latestVersion());
+
+        // Money is rounded to whole cents, not truncated
+        assertEquals(queryLong("SELECT balance_cents FROM accounts WHERE account_number = 'a1'"), 1234);
+        assertEquals(queryLong("SELECT balance_cents FROM accounts WHERE account_number = 'b2'"), 30);
+        assertEquals(queryLong("SELECT SUM(amount_cents) FROM transactions"), 1264);
+        assertEquals(queryLong("SELECT loan_amount_cents FROM loans"), 10000);
+        assertEquals(queryLong("SELECT remaining_cents FROM loans"), 4050);
+
+        // Derived tables start out matching the converted rows
+        assertEquals(queryLong("SELECT total_balance_cents FROM bank_totals WHERE id = 1"), 1264);
+        assertEquals(queryLong("SELECT total_loans_cents FROM bank_totals WHERE id = 1"), 4050);
+        assertEquals(queryLong("SELECT account_count FROM bank_totals WHERE id = 1"), 2);
+        assertEquals(queryLong("SELECT SUM(accounts) FROM balance_histogram"), 2);
+        assertEquals(queryLong("SELECT COUNT(*) FROM accounts_search WHERE accounts_search MATCH '\"rahma\"'"), 1);
+        assertEquals(queryLong("SELECT applied_seq FROM ledger_journal_state WHERE id = 1"), 0);
+        assertEquals(queryLong("SELECT COUNT(*) FROM admins"), 1);
+    }
+
+    @Test
+    public void existingHistoryIsLeftForTheBackfill() throws SQLException {
+        new SchemaMigrator().migrate(conn);
+        assertEquals(queryLong("SELECT max_id FROM rollup_backfill WHERE id = 1"), 2);
+        assertEquals(queryLong("SELECT COUNT(*) FROM bank_rollups_daily"), 0);
+
+        try (ConnectionPool pool = new ConnectionPool(url)) {
+            TransactionRollups rollups = new TransactionRollups(pool);
+            assertTrue(rollups.backfill(1).isComplete());
+            Map<String, TransactionRollups.Totals> totals =
+                    rollups.totals(null, DateRange.between(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)));
+            assertEquals(totals.get("DEPOSIT").getCount(), 2);
+            assertEquals(totals.get("DEPOSIT").getAmount(), 1264);
+        }
+    }
+
+    @Test
+    public void migratingTwiceChangesNothing() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator();
+        migrator.migrate(conn);
+        assertEquals(migrator.migrate(conn), 0);
+        assertEquals(queryLong("SELECT total_balance_cents FROM bank_totals WHERE id = 1"), 1264);
+    }
+
+    @Test
+    public void failedMigrationKeepsThePreviousVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE accounts_cents (stray INTEGER)"); // Migration 4 creates this table
+        }
+        SchemaMigrator migrator = new SchemaMigrator();
+        assertThrows(SQLException.class, () -> migrator.migrate(conn));
+        assertEquals(migrator.currentVersion(conn), 3);
+        assertEquals(queryLong("SELECT CAST(ROUND(balance * 100) AS INTEGER) FROM accounts WHERE account_number = 'a1'"), 1234);
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    public void refusesNewerSchema() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + (SchemaMigrator.latestVersion() + 1));
+        }
+        assertThrows(SQLException.class, () -> new SchemaMigrator().migrate(conn));
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Bank;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.testng.Assert.assertEquals;
+
+// totals() stitches monthly rollups for the whole months in a range to daily
+// rollups for the days either side. Each range is checked against summing the
+// transactions themselves, around month ends, a leap day and a year end.
+public class TransactionRollupsTest {
+    private static final String[][] TRANSACTIONS = {
+            {"a1", "DEPOSIT", "100", "2023-12-31 23:59:59"},
+            {"a1", "DEPOSIT", "200", "2024-01-01 00:00:00"},
+            {"b2", "DEPOSIT", "300", "2024-01-31 23:59:59"},
+            {"a1", "DEPOSIT", "400", "2024-02-01 00:00:00"},
+            {"b2", "WITHDRAWAL", "50", "2024-02-15 12:00:00"},
+            {"a1", "DEPOSIT", "800", "2024-02-29 23:59:59"},
+            {"b2", "DEPOSIT", "1600", "2024-03-01 00:00:00"},
+            {"a1", "WITHDRAWAL", "70", "2024-03-31 10:00:00"},
+            {"b2", "DEPOSIT", "3200", "2024-04-01 00:00:00"}};
+
+    private Path directory;
+    private ConnectionPool pool;
+    private TransactionRollups rollups;
+
+    @BeforeClass
+    public void seed() throws IOException, SQLException {
+        directory = Files.createTempDirectory("transaction-rollups");
+        pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("bank.db"));
+        try (PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.getConnection();
+            new SchemaMigrator().migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO accounts (account_number, name, password) VALUES ('a1', 'A', 'x'), ('b2', 'B', 'x')");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO transactions (account_number, type, amount_cents, timestamp) VALUES (?, ?, ?, ?)")) {
+                for (String[] row : TRANSACTIONS) {
+                    pstmt.setString(1, row[0]);
+                    pstmt.setString(2, row[1]);
+                    pstmt.setLong(3, Long.parseLong(row[2]));
+                    pstmt.setString(4, row[3]);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+        rollups = new TransactionRollups(pool);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        TestFiles.deleteRecursively(directory);
+    }
+
+    @DataProvider
+    public Object[][] ranges() {
+        return new Object[][]{
+                {"2024-02-01", "2024-02-29"}, // Exactly one month
+                {"2024-01-31", "2024-03-01"}, // A month with a day either side
+                {"2024-02-02", "2024-02-28"}, // Inside one month, no whole month
+                {"2024-01-31", "2024-02-01"}, // Across a month end, no whole month
+                {"2024-02-29", "2024-02-29"}, // The leap day alone
+                {"2023-12-31", "2024-01-01"}, // Across the year end
+                {"2023-12-01", "2024-03-31"}, // Several whole months
+                {"2024-01-15", "2024-04-01"}, // Whole months with partial ones either side
+                {"2024-04-02", "2024-04-30"}}; // Nothing in it
+    }
+
+    @Test(dataProvider = "ranges")
+    public void bankTotalsMatchTheTransactions(String from, String to) throws SQLException {
+        DateRange range = DateRange.between(LocalDate.parse(from), LocalDate.parse(to));
+        assertEquals(flatten(rollups.totals(null, range)), sumTransactions(null, range));
+    }
+
+    @Test(dataProvider = "ranges")
+    public void accountTotalsMatchTheTransactions(String from, String to) throws SQLException {
+        DateRange range = DateRange.between(LocalDate.parse(from), LocalDate.parse(to));
+        for (String account : new String[]{"a1", "b2"}) {
+            assertEquals(flatten(rollups.totals(account, range)), sumTransactions(account, range), account);
+        }
+    }
+
+    @Test
+    public void monthWithADayEitherSide() throws SQLException {
+        Map<String, TransactionRollups.Totals> totals =
+                rollups.totals(null, DateRange.between(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 3, 1)));
+        assertEquals(totals.get("DEPOSIT").getCount(), 4);
+        assertEquals(totals.get("DEPOSIT").getAmount(), 300 + 400 + 800 + 1600);
+        assertEquals(totals.get("WITHDRAWAL").getCount(), 1);
+        assertEquals(totals.get("WITHDRAWAL").getAmount(), 50);
+    }
+
+    private static Map<String, String> flatten(Map<String, TransactionRollups.Totals> totals) {
+        Map<String, String> flat = new TreeMap<>();
+        for (Map.Entry<String, TransactionRollups.Totals> entry : totals.entrySet()) {
+            flat.put(entry.getKey(), entry.getValue().getCount() + "/" + entry.getValue().getAmount());
+        }
+        return flat;
+    }
+
+    private Map<String, String> sumTransactions(String accountNumber, DateRange range) throws SQLException {
+        String sql = "SELECT type, COUNT(*), SUM(amount_cents) FROM transactions WHERE " + DateRange.CONDITION +
+                (accountNumber == null ? "" : " AND account_number = ?") + " GROUP BY type";
+        Map<String, String> sums = new TreeMap<>();
+        try (PooledConnection pc = pool.borrow();
+             PreparedStatement pstmt = pc.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, range.getLowerBound());
+            pstmt.setString(2, range.getUpperBound());
+            if (accountNumber != null) {
+                pstmt.setString(3, accountNumber);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    sums.put(rs.getString(1), rs.getLong(2) + "/" + rs.getLong(3));
+                }
+            }
+        }
+        return sums;
+    }
+}